@@ -32,6 +32,7 @@ val executables = listOf(
     "org.example.app.BasinDemo",
     "org.example.app.ManagedReadSessionDemo",
     "org.example.app.ManagedAppendSessionDemo",
+    "org.example.app.CompressionBenchmark",
 )
 
 executables.forEach { mainClassName ->
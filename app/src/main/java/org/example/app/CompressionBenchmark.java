@@ -0,0 +1,116 @@
+package org.example.app;
+
+import io.grpc.Codec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the compression ratio and throughput of gRPC codecs on record-like payloads, to help
+ * choose a {@link s2.config.CompressionPolicy}.
+ *
+ * <p>gzip is always measured. Additional codecs, such as zstd or lz4 implementations of {@link
+ * Codec}, can be measured by passing their class names as arguments, with the classes on the
+ * classpath.
+ */
+public class CompressionBenchmark {
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(CompressionBenchmark.class.getName());
+
+  private static final int[] PAYLOAD_SIZES = {256, 4 * 1024, 64 * 1024, 1024 * 1024};
+  private static final long TARGET_BYTES = 256L * 1024 * 1024;
+
+  public static void main(String[] args) throws Exception {
+    final List<Codec> codecs = new ArrayList<>();
+    codecs.add(new Codec.Gzip());
+    for (final String className : args) {
+      codecs.add((Codec) Class.forName(className).getDeclaredConstructor().newInstance());
+    }
+
+    final Random random = new Random(0);
+    for (final int size : PAYLOAD_SIZES) {
+      final byte[] text = textPayload(random, size);
+      final byte[] binary = new byte[size];
+      random.nextBytes(binary);
+      for (final Codec codec : codecs) {
+        measure(codec, "text", text);
+        measure(codec, "random", binary);
+      }
+    }
+  }
+
+  private static void measure(Codec codec, String kind, byte[] payload) throws IOException {
+    final int iterations = (int) Math.max(1, TARGET_BYTES / payload.length);
+    byte[] compressed = compress(codec, payload);
+    // Warm up, then measure.
+    for (int i = 0; i < iterations / 10; i++) {
+      compressed = compress(codec, payload);
+    }
+    final long compressStart = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      compressed = compress(codec, payload);
+    }
+    final long compressNanos = System.nanoTime() - compressStart;
+
+    final long decompressStart = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      decompress(codec, compressed);
+    }
+    final long decompressNanos = System.nanoTime() - decompressStart;
+
+    logger.info(
+        "codec={}, payload={}, bytes={}, ratio={}, compressMiBps={}, decompressMiBps={}",
+        codec.getMessageEncoding(),
+        kind,
+        payload.length,
+        String.format("%.3f", (double) compressed.length / payload.length),
+        String.format("%.1f", mibPerSecond(payload.length, iterations, compressNanos)),
+        String.format("%.1f", mibPerSecond(payload.length, iterations, decompressNanos)));
+  }
+
+  private static byte[] compress(Codec codec, byte[] payload) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length);
+    try (final OutputStream compressing = codec.compress(out)) {
+      compressing.write(payload);
+    }
+    return out.toByteArray();
+  }
+
+  private static void decompress(Codec codec, byte[] compressed) throws IOException {
+    try (final InputStream in = codec.decompress(new ByteArrayInputStream(compressed))) {
+      in.readAllBytes();
+    }
+  }
+
+  private static double mibPerSecond(int bytes, int iterations, long nanos) {
+    return (double) bytes * iterations / (1024 * 1024) / (nanos / 1e9);
+  }
+
+  /** Log-line-like text, which is typical of what is appended to streams. */
+  private static byte[] textPayload(Random random, int size) {
+    final String[] levels = {"INFO", "WARN", "DEBUG", "ERROR"};
+    final StringBuilder builder = new StringBuilder(size + 256);
+    while (builder.length() < size) {
+      builder
+          .append("{\"ts\":")
+          .append(1700000000000L + random.nextInt(1_000_000))
+          .append(",\"level\":\"")
+          .append(levels[random.nextInt(levels.length)])
+          .append("\",\"user\":")
+          .append(random.nextInt(10_000))
+          .append(",\"msg\":\"request completed\",\"latency_ms\":")
+          .append(random.nextInt(500))
+          .append("}\n");
+    }
+    return builder.substring(0, size).getBytes(StandardCharsets.UTF_8);
+  }
+}
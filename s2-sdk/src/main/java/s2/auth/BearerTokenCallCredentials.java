@@ -3,20 +3,52 @@ package s2.auth;
 import io.grpc.CallCredentials;
 import io.grpc.Metadata;
 import io.grpc.Status;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Implementation of CallCredentials that adds a bearer token to request metadata. This class is
  * used to authenticate gRPC requests using a bearer token in the Authorization header with the
  * "Bearer" scheme.
+ *
+ * <p>Tokens are obtained from a {@link TokenProvider}, and the resulting header metadata is cached
+ * and applied inline on the calling thread. The provider is only consulted (on the executor
+ * supplied by gRPC) when no token has been fetched yet, when the cached token is about to expire,
+ * or after {@link #refresh()}. Since metadata is attached when a call starts, rotating a token
+ * never affects append or read sessions which are already established; they pick up the new token
+ * when they next reconnect.
  */
 public class BearerTokenCallCredentials extends CallCredentials {
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(BearerTokenCallCredentials.class.getName());
+
   /** Metadata key for the Authorization header. */
   private static final Metadata.Key<String> AUTHORIZATION_HEADER =
       Metadata.Key.of("Authorization", Metadata.ASCII_STRING_MARSHALLER);
 
-  /** The bearer token value. */
-  private final String token;
+  /** How long before a token expires that a replacement is fetched in the background. */
+  static final Duration REFRESH_MARGIN = Duration.ofSeconds(30);
+
+  /**
+   * Minimum time between fetches from the provider, so that a provider handing out tokens which
+   * have already expired (or are about to) is not invoked on every request.
+   */
+  static final Duration MIN_REFRESH_INTERVAL = Duration.ofSeconds(1);
+
+  /** Source of bearer tokens. */
+  private final TokenProvider tokenProvider;
+
+  /** Headers for the most recently fetched token, or null if a fetch is required. */
+  private volatile CachedHeaders cached;
+
+  /** Whether a background refresh is currently running. */
+  private final AtomicBoolean refreshing = new AtomicBoolean(false);
 
   /**
    * Creates new bearer token credentials.
@@ -25,16 +57,35 @@ public class BearerTokenCallCredentials extends CallCredentials {
    * @throws IllegalArgumentException if token is null or empty
    */
   public BearerTokenCallCredentials(String token) {
-    if (token == null || token.trim().isEmpty()) {
-      throw new IllegalArgumentException("Token cannot be null or empty");
+    this.tokenProvider = TokenProvider.fixed(token);
+    this.cached = CachedHeaders.from(Token.of(token));
+  }
+
+  private BearerTokenCallCredentials(TokenProvider tokenProvider) {
+    this.tokenProvider = tokenProvider;
+  }
+
+  /**
+   * Creates new bearer token credentials, backed by a token provider.
+   *
+   * @param tokenProvider The provider of bearer tokens to use for authentication
+   * @return the credentials
+   * @throws IllegalArgumentException if tokenProvider is null
+   */
+  public static BearerTokenCallCredentials fromProvider(TokenProvider tokenProvider) {
+    if (tokenProvider == null) {
+      throw new IllegalArgumentException("Token provider cannot be null");
     }
-    this.token = token;
+    return new BearerTokenCallCredentials(tokenProvider);
   }
 
   /**
    * Applies the bearer token to the request metadata. This method is called by the gRPC framework
    * before each request.
    *
+   * <p>If a usable token is cached, its precomputed headers are applied directly on the calling
+   * thread. Otherwise, a token is fetched from the provider using the supplied executor.
+   *
    * @param requestInfo Information about the RPC being called
    * @param executor The executor to use for any asynchronous operations
    * @param metadataApplier Interface for applying the resulting metadata
@@ -42,18 +93,62 @@ public class BearerTokenCallCredentials extends CallCredentials {
   @Override
   public void applyRequestMetadata(
       RequestInfo requestInfo, Executor executor, MetadataApplier metadataApplier) {
+    final CachedHeaders current = this.cached;
+    final long now = System.nanoTime();
+    if (current != null && !current.isExpired(now)) {
+      metadataApplier.apply(current.headers);
+      if (current.needsRefresh(now)) {
+        refreshInBackground(executor);
+      }
+      return;
+    }
+
     executor.execute(
         () -> {
           try {
-            Metadata headers = new Metadata();
-            headers.put(AUTHORIZATION_HEADER, "Bearer " + token);
-            metadataApplier.apply(headers);
+            metadataApplier.apply(fetch().headers);
           } catch (Throwable e) {
             metadataApplier.fail(Status.UNAUTHENTICATED.withCause(e));
           }
         });
   }
 
+  /**
+   * Discard the cached token. The next request will obtain a new one from the token provider.
+   *
+   * <p>This is useful when a token is known to have been rotated or revoked before its expiry.
+   */
+  public void refresh() {
+    this.cached = null;
+  }
+
+  private void refreshInBackground(Executor executor) {
+    if (!refreshing.compareAndSet(false, true)) {
+      return;
+    }
+    executor.execute(
+        () -> {
+          try {
+            fetch();
+          } catch (Throwable e) {
+            logger.warn("Failed to refresh token, continuing with the current one.", e);
+          } finally {
+            refreshing.set(false);
+          }
+        });
+  }
+
+  private synchronized CachedHeaders fetch() throws Exception {
+    // Another thread may have fetched a token while we were waiting for the lock.
+    final CachedHeaders current = this.cached;
+    if (current != null && !current.needsRefresh(System.nanoTime())) {
+      return current;
+    }
+    final CachedHeaders fetched = CachedHeaders.from(tokenProvider.getToken());
+    this.cached = fetched;
+    return fetched;
+  }
+
   /**
    * Returns a hash code value for this credentials implementation.
    *
@@ -61,12 +156,13 @@ public class BearerTokenCallCredentials extends CallCredentials {
    */
   @Override
   public int hashCode() {
-    return token.hashCode();
+    return tokenProvider.hashCode();
   }
 
   /**
    * Returns whether this credentials implementation is equal to another object. Two
-   * BearerTokenCallCredentials are equal if they have the same token.
+   * BearerTokenCallCredentials are equal if they have equal token providers, which is the case for
+   * credentials constructed from the same fixed token.
    *
    * @param other The object to compare with
    * @return true if the objects are equal, false otherwise
@@ -79,6 +175,47 @@ public class BearerTokenCallCredentials extends CallCredentials {
     if (!(other instanceof BearerTokenCallCredentials)) {
       return false;
     }
-    return token.equals(((BearerTokenCallCredentials) other).token);
+    return tokenProvider.equals(((BearerTokenCallCredentials) other).tokenProvider);
+  }
+
+  /** Precomputed header metadata for a token, along with when it should be refreshed. */
+  static final class CachedHeaders {
+    final Metadata headers;
+    final boolean expires;
+    final long refreshAtNanos;
+    final long expiresAtNanos;
+
+    private CachedHeaders(
+        Metadata headers, boolean expires, long refreshAtNanos, long expiresAtNanos) {
+      this.headers = headers;
+      this.expires = expires;
+      this.refreshAtNanos = refreshAtNanos;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+
+    static CachedHeaders from(Token token) {
+      final Metadata headers = new Metadata();
+      headers.put(AUTHORIZATION_HEADER, "Bearer " + token.value);
+      if (token.expiresAt.isEmpty()) {
+        return new CachedHeaders(headers, false, 0, 0);
+      }
+      final long now = System.nanoTime();
+      final long validForNanos =
+          TimeUnit.MILLISECONDS.toNanos(
+              token.expiresAt.get().toEpochMilli() - Instant.now().toEpochMilli());
+      final long minValidNanos = MIN_REFRESH_INTERVAL.toNanos();
+      final long expiresAtNanos = now + Math.max(validForNanos, minValidNanos);
+      final long refreshAtNanos =
+          now + Math.max(validForNanos - REFRESH_MARGIN.toNanos(), minValidNanos);
+      return new CachedHeaders(headers, true, refreshAtNanos, expiresAtNanos);
+    }
+
+    boolean needsRefresh(long nowNanos) {
+      return expires && nowNanos - refreshAtNanos >= 0;
+    }
+
+    boolean isExpired(long nowNanos) {
+      return expires && nowNanos - expiresAtNanos >= 0;
+    }
   }
 }
@@ -0,0 +1,31 @@
+package s2.auth;
+
+/** Token provider which always returns the same token. */
+final class FixedTokenProvider implements TokenProvider {
+  final Token token;
+
+  FixedTokenProvider(Token token) {
+    this.token = token;
+  }
+
+  @Override
+  public Token getToken() {
+    return token;
+  }
+
+  @Override
+  public int hashCode() {
+    return token.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof FixedTokenProvider)) {
+      return false;
+    }
+    return token.equals(((FixedTokenProvider) other).token);
+  }
+}
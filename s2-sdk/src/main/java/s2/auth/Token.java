@@ -0,0 +1,60 @@
+package s2.auth;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+/** A bearer token, along with an optional instant after which it should no longer be used. */
+public final class Token {
+  /** The bearer token value. */
+  public final String value;
+
+  /** When the token expires, if it does. */
+  public final Optional<Instant> expiresAt;
+
+  private Token(String value, Optional<Instant> expiresAt) {
+    if (value == null || value.trim().isEmpty()) {
+      throw new IllegalArgumentException("Token cannot be null or empty");
+    }
+    this.value = value;
+    this.expiresAt = expiresAt;
+  }
+
+  /**
+   * Create a token that never expires.
+   *
+   * @param value the bearer token value
+   * @return the token
+   */
+  public static Token of(String value) {
+    return new Token(value, Optional.empty());
+  }
+
+  /**
+   * Create a token that expires at the provided instant.
+   *
+   * @param value the bearer token value
+   * @param expiresAt instant after which the token is no longer valid
+   * @return the token
+   */
+  public static Token expiringAt(String value, Instant expiresAt) {
+    return new Token(value, Optional.of(expiresAt));
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(value, expiresAt);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof Token)) {
+      return false;
+    }
+    Token that = (Token) other;
+    return value.equals(that.value) && expiresAt.equals(that.expiresAt);
+  }
+}
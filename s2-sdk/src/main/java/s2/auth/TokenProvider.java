@@ -0,0 +1,32 @@
+package s2.auth;
+
+/**
+ * Source of bearer tokens used to authenticate requests.
+ *
+ * <p>Implementations may block (for instance, to fetch a token from a secrets manager), as they are
+ * only ever invoked off of the RPC calling thread, and only when no cached token is usable: either
+ * because none has been fetched yet, the current one is close to its {@link Token#expiresAt}, or
+ * {@link BearerTokenCallCredentials#refresh()} was called.
+ */
+@FunctionalInterface
+public interface TokenProvider {
+
+  /**
+   * Provider which always returns the same, non-expiring token.
+   *
+   * @param token the bearer token value
+   * @return the token provider
+   * @throws IllegalArgumentException if token is null or empty
+   */
+  static TokenProvider fixed(String token) {
+    return new FixedTokenProvider(Token.of(token));
+  }
+
+  /**
+   * Fetch the token to use for subsequent requests.
+   *
+   * @return the token
+   * @throws Exception if a token could not be obtained
+   */
+  Token getToken() throws Exception;
+}
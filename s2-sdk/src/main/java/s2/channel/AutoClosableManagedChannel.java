@@ -4,16 +4,35 @@ import io.grpc.ManagedChannel;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import s2.config.CircuitBreakerPolicy;
+import s2.metrics.Metrics;
 
 public class AutoClosableManagedChannel implements AutoCloseable {
 
   private static final Logger logger = LoggerFactory.getLogger(AutoClosableManagedChannel.class);
   public final ManagedChannel managedChannel;
 
+  private CircuitBreaker circuitBreaker;
+
   public AutoClosableManagedChannel(ManagedChannel managedChannel) {
     this.managedChannel = managedChannel;
   }
 
+  /**
+   * Circuit breaker for this channel's endpoint, created by the first caller with the provided
+   * policy and metrics, and shared by every client using the channel.
+   *
+   * @param policy the policy, if the breaker has not been created yet
+   * @param metrics metrics to report the breaker's state to, if it has not been created yet
+   * @return the circuit breaker
+   */
+  public synchronized CircuitBreaker circuitBreaker(CircuitBreakerPolicy policy, Metrics metrics) {
+    if (circuitBreaker == null) {
+      circuitBreaker = new CircuitBreaker(policy, managedChannel.authority(), metrics);
+    }
+    return circuitBreaker;
+  }
+
   @Override
   public void close() {
     managedChannel.shutdown();
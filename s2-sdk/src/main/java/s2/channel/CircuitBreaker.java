@@ -0,0 +1,198 @@
+package s2.channel;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import s2.config.CircuitBreakerPolicy;
+import s2.metrics.Metrics;
+
+/**
+ * Circuit breaker shared by all clients using the same channel.
+ *
+ * <p>Callers obtain a permit before each call, which identifies the state the call was admitted
+ * under, and report the call's outcome against that permit. Outcomes of calls admitted before the
+ * latest state transition are ignored.
+ *
+ * <p>State transitions and rejected calls are reported to the {@link Metrics} of the client which
+ * created the breaker.
+ *
+ * @see CircuitBreakerPolicy
+ */
+public final class CircuitBreaker {
+
+  private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class.getName());
+
+  /** Permit returned when a call is rejected. */
+  public static final long REJECTED = -1;
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  public enum Outcome {
+    SUCCESS,
+    FAILURE,
+    /** The call says nothing about the endpoint's health, e.g. it was cancelled locally. */
+    IGNORED
+  }
+
+  private final CircuitBreakerPolicy policy;
+  private final String endpoint;
+  private final Metrics metrics;
+  private final long slowCallNanos;
+  private final long openNanos;
+
+  // Outcomes of the most recent calls, as a ring buffer.
+  private final boolean[] failed;
+  private final boolean[] slow;
+  private int calls = 0;
+  private int next = 0;
+  private int failures = 0;
+  private int slowCalls = 0;
+
+  private State state = State.CLOSED;
+  private long generation = 0;
+  private long openedAtNanos;
+  private int probesAdmitted;
+  private int probesSucceeded;
+
+  private final LongAdder rejectedCalls = new LongAdder();
+
+  CircuitBreaker(CircuitBreakerPolicy policy, String endpoint, Metrics metrics) {
+    this.policy = policy;
+    this.endpoint = endpoint;
+    this.metrics = metrics;
+    this.slowCallNanos = policy.slowCallDuration.map(Duration::toNanos).orElse(Long.MAX_VALUE);
+    this.openNanos = policy.openDuration.toNanos();
+    this.failed = new boolean[policy.windowSize];
+    this.slow = new boolean[policy.windowSize];
+  }
+
+  /**
+   * Ask to make a call.
+   *
+   * @return a permit to report the call's outcome against, or {@link #REJECTED}
+   */
+  public synchronized long tryAcquire() {
+    switch (state) {
+      case OPEN:
+        if (System.nanoTime() - openedAtNanos < openNanos) {
+          return reject();
+        }
+        transition(State.HALF_OPEN);
+        // Fall through, to admit the first probe.
+      case HALF_OPEN:
+        if (probesAdmitted >= policy.halfOpenProbes) {
+          return reject();
+        }
+        probesAdmitted++;
+        return generation;
+      default:
+        return generation;
+    }
+  }
+
+  /**
+   * Report the outcome of a call.
+   *
+   * @param permit the permit the call was admitted with
+   * @param outcome the outcome
+   * @param latencyNanos how long the call took
+   */
+  public synchronized void onComplete(long permit, Outcome outcome, long latencyNanos) {
+    if (permit != generation) {
+      return;
+    }
+    switch (state) {
+      case CLOSED:
+        if (outcome != Outcome.IGNORED) {
+          record(outcome == Outcome.FAILURE, latencyNanos >= slowCallNanos);
+          if (calls >= policy.minimumCalls
+              && ((double) failures / calls >= policy.failureRateThreshold
+                  || (double) slowCalls / calls >= policy.slowCallRateThreshold)) {
+            logger.warn(
+                "opening circuit breaker, failures={}, slowCalls={}, calls={}",
+                failures,
+                slowCalls,
+                calls);
+            transition(State.OPEN);
+          }
+        }
+        break;
+      case HALF_OPEN:
+        if (outcome == Outcome.IGNORED) {
+          // However long it ran, a cancelled probe frees its slot for another.
+          probesAdmitted--;
+        } else if (outcome == Outcome.FAILURE || latencyNanos >= slowCallNanos) {
+          logger.warn("circuit breaker probe failed, reopening");
+          transition(State.OPEN);
+        } else if (++probesSucceeded >= policy.halfOpenProbes) {
+          logger.info("closing circuit breaker");
+          transition(State.CLOSED);
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  public synchronized State state() {
+    if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openNanos) {
+      // Probing begins with the next call, but the breaker is no longer rejecting.
+      return State.HALF_OPEN;
+    }
+    return state;
+  }
+
+  /** Number of calls rejected without being attempted. */
+  public long rejectedCalls() {
+    return rejectedCalls.sum();
+  }
+
+  private long reject() {
+    rejectedCalls.increment();
+    metrics.circuitBreakerRejected(endpoint);
+    return REJECTED;
+  }
+
+  private void record(boolean isFailure, boolean isSlow) {
+    if (calls == failed.length) {
+      failures -= failed[next] ? 1 : 0;
+      slowCalls -= slow[next] ? 1 : 0;
+    } else {
+      calls++;
+    }
+    failed[next] = isFailure;
+    slow[next] = isSlow;
+    failures += isFailure ? 1 : 0;
+    slowCalls += isSlow ? 1 : 0;
+    next = (next + 1) % failed.length;
+  }
+
+  private void transition(State to) {
+    state = to;
+    generation++;
+    calls = 0;
+    next = 0;
+    failures = 0;
+    slowCalls = 0;
+    probesAdmitted = 0;
+    probesSucceeded = 0;
+    if (to == State.OPEN) {
+      openedAtNanos = System.nanoTime();
+    }
+    metrics.circuitBreakerStateChanged(endpoint, to);
+  }
+
+  /** Failure of a call which was rejected by an open circuit breaker. */
+  public static final class OpenException extends StatusRuntimeException {
+    public OpenException() {
+      super(Status.UNAVAILABLE.withDescription("circuit breaker is open"));
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package s2.channel;
 
+import io.grpc.DecompressorRegistry;
 import io.grpc.ManagedChannelBuilder;
 import s2.config.Config;
 
@@ -12,8 +13,20 @@ public class ManagedChannelFactory {
   }
 
   public static BasinChannel forBasinOrStreamService(Config config, String basinName) {
-    return new BasinChannel(
-        ManagedChannelBuilder.forTarget(config.endpoints.basin.toTarget(basinName)).build());
+    var builder = ManagedChannelBuilder.forTarget(config.endpoints.basin.toTarget(basinName));
+    if (config.hedgingPolicy.isPresent()) {
+      // Spread requests across all resolved backends, so that a hedged request is likely to be
+      // served by a different one than the request it duplicates.
+      builder = builder.defaultLoadBalancingPolicy("round_robin");
+    }
+    if (config.compressionPolicy.isPresent()) {
+      // Accept, and advertise, the policy's codec for responses as well as for requests.
+      builder =
+          builder.decompressorRegistry(
+              DecompressorRegistry.getDefaultInstance()
+                  .with(config.compressionPolicy.get().codec, true));
+    }
+    return new BasinChannel(builder.build());
   }
 
   public static CombinedChannel forCombinedChannel(Config config) {
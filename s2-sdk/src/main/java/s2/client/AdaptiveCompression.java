@@ -0,0 +1,101 @@
+package s2.client;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.CompressorRegistry;
+import io.grpc.ForwardingClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import s2.config.CompressionPolicy;
+
+/**
+ * Interceptor which decides, message by message, whether to compress according to a {@link
+ * CompressionPolicy}.
+ *
+ * <p>The ratio achieved by compressed messages is measured by a {@link ClientStreamTracer}. A
+ * message whose size on the wire differs from its uncompressed size is taken to have been
+ * compressed.
+ */
+final class AdaptiveCompression implements ClientInterceptor {
+
+  /**
+   * While compression is not worthwhile, one in this many eligible messages is still compressed.
+   */
+  static final int PROBE_INTERVAL = 64;
+
+  /** Weight of each new observation in the running average ratio. */
+  static final double SMOOTHING = 0.1;
+
+  private final CompressionPolicy policy;
+  private final String encoding;
+
+  /** Running average of compressed to uncompressed size, optimistic until measured. */
+  private double ratio = 0;
+
+  private long skipped = 0;
+
+  AdaptiveCompression(CompressionPolicy policy) {
+    this.policy = policy;
+    this.encoding = policy.codec.getMessageEncoding();
+    // Decompression of responses is enabled per channel, by ManagedChannelFactory.
+    CompressorRegistry.getDefaultInstance().register(policy.codec);
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    final CallOptions options =
+        callOptions.withCompression(encoding).withStreamTracerFactory(new Tracer());
+    return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, options)) {
+      @Override
+      public void sendMessage(ReqT message) {
+        final int size =
+            message instanceof MessageLite
+                ? ((MessageLite) message).getSerializedSize()
+                : Integer.MAX_VALUE;
+        setMessageCompression(shouldCompress(size));
+        super.sendMessage(message);
+      }
+    };
+  }
+
+  synchronized boolean shouldCompress(int messageBytes) {
+    if (messageBytes < policy.minMessageBytes) {
+      return false;
+    }
+    if (ratio <= policy.maxCompressionRatio) {
+      return true;
+    }
+    return ++skipped % PROBE_INTERVAL == 0;
+  }
+
+  synchronized void observe(long wireBytes, long uncompressedBytes) {
+    ratio += SMOOTHING * ((double) wireBytes / uncompressedBytes - ratio);
+  }
+
+  synchronized double ratio() {
+    return ratio;
+  }
+
+  private final class Tracer extends ClientStreamTracer.Factory {
+    @Override
+    public ClientStreamTracer newClientStreamTracer(
+        ClientStreamTracer.StreamInfo info, Metadata headers) {
+      return new ClientStreamTracer() {
+        @Override
+        public void outboundMessageSent(
+            int seqNo, long optionalWireSize, long optionalUncompressedSize) {
+          if (optionalWireSize >= 0
+              && optionalUncompressedSize > 0
+              && optionalWireSize != optionalUncompressedSize) {
+            observe(optionalWireSize, optionalUncompressedSize);
+          }
+        }
+      };
+    }
+  }
+}
@@ -2,25 +2,45 @@ package s2.client;
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
 import io.grpc.Status;
+import io.grpc.stub.AbstractStub;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeoutException;
-import java.util.function.Supplier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import s2.channel.AutoClosableManagedChannel;
+import s2.channel.CircuitBreaker;
 import s2.config.Config;
+import s2.metrics.WireMetricsInterceptor;
+import s2.types.BulkResult;
 
 public abstract class BaseClient implements AutoCloseable {
 
   private static final Logger logger = LoggerFactory.getLogger(BaseClient.class.getName());
+
+  private static final Metadata.Key<String> RETRY_PUSHBACK_KEY =
+      Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+  private static final int THROTTLED_BACKOFF_MULTIPLIER = 4;
+  private static final Duration MAX_THROTTLED_BACKOFF = Duration.ofSeconds(10);
   final Config config;
   final AutoClosableManagedChannel channel;
   final ScheduledExecutorService executor;
   final boolean ownedChannel;
   final boolean ownedExecutor;
+  final Optional<CircuitBreaker> circuitBreaker;
 
   BaseClient(
       Config config,
@@ -33,6 +53,8 @@ public abstract class BaseClient implements AutoCloseable {
     this.executor = executor;
     this.ownedChannel = ownedChannel;
     this.ownedExecutor = ownedExecutor;
+    this.circuitBreaker =
+        config.circuitBreakerPolicy.map(policy -> channel.circuitBreaker(policy, config.metrics));
   }
 
   static ScheduledExecutorService defaultExecutor(String name) {
@@ -63,6 +85,16 @@ public abstract class BaseClient implements AutoCloseable {
     }
   }
 
+  /**
+   * State of the circuit breaker guarding this client's endpoint, if one is configured.
+   *
+   * @see Config#circuitBreakerPolicy
+   * @return the circuit breaker state
+   */
+  public Optional<CircuitBreaker.State> circuitBreakerState() {
+    return circuitBreaker.map(CircuitBreaker::state);
+  }
+
   public void close() {
     if (this.ownedChannel) {
       this.channel.close();
@@ -72,34 +104,92 @@ public abstract class BaseClient implements AutoCloseable {
     }
   }
 
-  <T> ListenableFuture<T> withTimeout(Supplier<ListenableFuture<T>> op) {
-    return Futures.catchingAsync(
-        Futures.withTimeout(op.get(), config.requestTimeout, executor),
-        TimeoutException.class,
-        t -> {
-          throw Status.DEADLINE_EXCEEDED
-              .withDescription("sdk hit local timeout")
-              .asRuntimeException();
-        },
-        executor);
+  /**
+   * Run an operation for each input, with at most {@code maxConcurrency} in flight at once.
+   *
+   * <p>The returned future collects one result per input, in input order, and does not fail if
+   * individual operations do. Cancelling it cancels every operation which has not completed.
+   */
+  static <I, R> ListenableFuture<List<BulkResult<I, R>>> bulk(
+      Collection<I> inputs, int maxConcurrency, Function<I, ListenableFuture<R>> op) {
+    final var limiter = new ConcurrencyLimiter(maxConcurrency);
+    final List<ListenableFuture<BulkResult<I, R>>> results = new ArrayList<>(inputs.size());
+    for (final I input : inputs) {
+      final ListenableFuture<BulkResult<I, R>> result =
+          Futures.transform(
+              limiter.submit(() -> op.apply(input)),
+              output -> BulkResult.success(input, output),
+              MoreExecutors.directExecutor());
+      results.add(
+          Futures.catching(
+              result,
+              Throwable.class,
+              t -> BulkResult.failure(input, t),
+              MoreExecutors.directExecutor()));
+    }
+    return Futures.allAsList(results);
+  }
+
+  /** Attach interceptors to a stub according to the config. */
+  <S extends AbstractStub<S>> S instrumented(S stub) {
+    return config.wireMetrics
+        ? stub.withInterceptors(new WireMetricsInterceptor(config.metrics))
+        : stub;
   }
 
+  /** Deadline for a request, or sequence of retried requests, starting now. */
+  Deadline requestDeadline() {
+    return Deadline.after(config.requestTimeout.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Run a unary operation, retrying retryable failures after {@link Config#retryDelay}.
+   *
+   * <p>Every attempt is given the same gRPC deadline, covering the entire retry sequence, so that
+   * the server stops working on a call as soon as the client gives up on it. A retry is only
+   * scheduled if its delay fits within the time remaining before that deadline. Cancelling the
+   * returned future cancels the in-progress RPC, or any pending retry.
+   *
+   * <p>If a {@link Config#circuitBreakerPolicy} is configured, attempts rejected by the circuit
+   * breaker fail immediately, and are not retried.
+   */
   <T> ListenableFuture<T> withStaticRetries(
-      int remainingAttempts, Supplier<ListenableFuture<T>> op) {
+      int remainingAttempts, Function<Deadline, ListenableFuture<T>> op) {
+    return withStaticRetries(remainingAttempts, requestDeadline(), op);
+  }
+
+  private <T> ListenableFuture<T> withStaticRetries(
+      int remainingAttempts, Deadline deadline, Function<Deadline, ListenableFuture<T>> op) {
     return Futures.catchingAsync(
-        op.get(),
+        guarded(op, deadline),
         Throwable.class,
         t -> {
           var status = Status.fromThrowable(t);
-          if (remainingAttempts > 0 && retryableStatus(status)) {
+          if (remainingAttempts > 0
+              && retryableStatus(status)
+              && !(t instanceof CircuitBreaker.OpenException)) {
+            final Optional<Duration> delay =
+                retryDelay(t, Math.max(0, config.maxRetries - remainingAttempts));
+            if (delay.isEmpty()) {
+              logger.debug("not retrying err={}, as the server asked not to", status.getCode());
+              return Futures.immediateFailedFuture(t);
+            }
+            if (deadline.timeRemaining(TimeUnit.NANOSECONDS) <= delay.get().toNanos()) {
+              logger.debug(
+                  "not retrying err={}, as {} delay would exceed the request deadline",
+                  status.getCode(),
+                  delay.get());
+              return Futures.immediateFailedFuture(t);
+            }
             logger.debug(
                 "retrying err={} after {} delay, remainingAttempts={}",
                 status.getCode(),
-                config.retryDelay,
+                delay.get(),
                 remainingAttempts);
+            config.metrics.requestRetried();
             return Futures.scheduleAsync(
-                () -> withStaticRetries(remainingAttempts - 1, op),
-                config.retryDelay,
+                () -> withStaticRetries(remainingAttempts - 1, deadline, op),
+                delay.get(),
                 this.executor);
           } else {
             return Futures.immediateFailedFuture(t);
@@ -107,4 +197,79 @@ public abstract class BaseClient implements AutoCloseable {
         },
         executor);
   }
+
+  /**
+   * Delay before retrying a failed attempt.
+   *
+   * <p>A delay requested by the server, via the {@code grpc-retry-pushback-ms} trailer, takes
+   * precedence; a negative pushback means the request should not be retried. Otherwise, {@code
+   * RESOURCE_EXHAUSTED} backs off exponentially with jitter, starting from a multiple of {@link
+   * Config#retryDelay}, while other errors are retried after {@link Config#retryDelay}.
+   *
+   * @param t the failure
+   * @param attempt number of retries already made, starting from zero
+   * @return the delay, or empty if the request should not be retried
+   */
+  Optional<Duration> retryDelay(Throwable t, int attempt) {
+    final Metadata trailers = Status.trailersFromThrowable(t);
+    final String pushback = trailers == null ? null : trailers.get(RETRY_PUSHBACK_KEY);
+    if (pushback != null) {
+      try {
+        final long pushbackMillis = Long.parseLong(pushback.trim());
+        return pushbackMillis < 0
+            ? Optional.empty()
+            : Optional.of(Duration.ofMillis(pushbackMillis));
+      } catch (NumberFormatException e) {
+        logger.warn("not retrying, malformed retry pushback={}", pushback);
+        return Optional.empty();
+      }
+    }
+    if (Status.fromThrowable(t).getCode() != Status.Code.RESOURCE_EXHAUSTED) {
+      return Optional.of(config.retryDelay);
+    }
+    final long baseNanos = config.retryDelay.toNanos() * THROTTLED_BACKOFF_MULTIPLIER;
+    final long ceilingNanos =
+        Math.min(MAX_THROTTLED_BACKOFF.toNanos(), baseNanos << Math.min(attempt, 20));
+    // Jitter, so that throttled clients spread out their retries.
+    return Optional.of(
+        Duration.ofNanos(ThreadLocalRandom.current().nextLong(ceilingNanos / 2, ceilingNanos + 1)));
+  }
+
+  /** Run a single attempt of an operation, subject to the circuit breaker, if any. */
+  private <T> ListenableFuture<T> guarded(
+      Function<Deadline, ListenableFuture<T>> op, Deadline deadline) {
+    if (circuitBreaker.isEmpty()) {
+      return op.apply(deadline);
+    }
+    final CircuitBreaker breaker = circuitBreaker.get();
+    final long permit = breaker.tryAcquire();
+    if (permit == CircuitBreaker.REJECTED) {
+      return Futures.immediateFailedFuture(new CircuitBreaker.OpenException());
+    }
+    final long startNanos = System.nanoTime();
+    final ListenableFuture<T> attempt = op.apply(deadline);
+    attempt.addListener(
+        () -> breaker.onComplete(permit, outcome(attempt), System.nanoTime() - startNanos),
+        MoreExecutors.directExecutor());
+    return attempt;
+  }
+
+  private static CircuitBreaker.Outcome outcome(ListenableFuture<?> attempt) {
+    if (attempt.isCancelled()) {
+      return CircuitBreaker.Outcome.IGNORED;
+    }
+    try {
+      Futures.getDone(attempt);
+      return CircuitBreaker.Outcome.SUCCESS;
+    } catch (ExecutionException e) {
+      final Status status = Status.fromThrowable(e.getCause());
+      if (status.getCode() == Status.Code.CANCELLED) {
+        return CircuitBreaker.Outcome.IGNORED;
+      }
+      // Errors such as NOT_FOUND are evidence of a healthy endpoint.
+      return retryableStatus(status)
+          ? CircuitBreaker.Outcome.FAILURE
+          : CircuitBreaker.Outcome.SUCCESS;
+    }
+  }
 }
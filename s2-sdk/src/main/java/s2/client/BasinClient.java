@@ -2,25 +2,35 @@ package s2.client;
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.grpc.Metadata;
 import io.grpc.Metadata.Key;
 import io.grpc.stub.MetadataUtils;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import s2.auth.BearerTokenCallCredentials;
+import java.util.stream.Stream;
 import s2.channel.BasinCompatibleChannel;
 import s2.channel.ManagedChannelFactory;
 import s2.config.Config;
+import s2.jfr.UnaryRpcInterceptor;
+import s2.types.BulkResult;
 import s2.types.CreateStreamRequest;
 import s2.types.Paginated;
 import s2.types.ReconfigureStreamRequest;
 import s2.types.StreamConfig;
 import s2.types.StreamInfo;
+import s2.types.StreamPosition;
 import s2.v1alpha.BasinServiceGrpc;
+import s2.v1alpha.CheckTailRequest;
 import s2.v1alpha.DeleteStreamRequest;
 import s2.v1alpha.GetStreamConfigRequest;
+import s2.v1alpha.StreamServiceGrpc;
 
 /** Client for basin-level operations. */
 public class BasinClient extends BaseClient {
@@ -28,6 +38,11 @@ public class BasinClient extends BaseClient {
   final String basin;
 
   private final BasinServiceGrpc.BasinServiceFutureStub futureStub;
+  private final MetadataCache<String, StreamConfig> streamConfigCache;
+  private final MetadataCache<List<String>, Paginated<StreamInfo>> listStreamsCache;
+
+  /** Stream service stub which is not bound to a stream, for operations spanning many streams. */
+  private final StreamServiceGrpc.StreamServiceFutureStub streamServiceStub;
 
   BasinClient(
       Config config,
@@ -41,9 +56,21 @@ public class BasinClient extends BaseClient {
     meta.put(Key.of("s2-basin", Metadata.ASCII_STRING_MARSHALLER), basin);
     this.basin = basin;
     this.futureStub =
-        BasinServiceGrpc.newFutureStub(channel.getChannel().managedChannel)
-            .withCallCredentials(new BearerTokenCallCredentials(config.token))
-            .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(meta));
+        instrumented(
+            BasinServiceGrpc.newFutureStub(channel.getChannel().managedChannel)
+                .withCallCredentials(config.credentials)
+                .withInterceptors(
+                    MetadataUtils.newAttachHeadersInterceptor(meta), UnaryRpcInterceptor.INSTANCE));
+    this.streamServiceStub =
+        instrumented(
+            StreamServiceGrpc.newFutureStub(channel.getChannel().managedChannel)
+                .withCallCredentials(config.credentials)
+                .withInterceptors(
+                    MetadataUtils.newAttachHeadersInterceptor(meta), UnaryRpcInterceptor.INSTANCE));
+    this.streamConfigCache =
+        new MetadataCache<>(config.metadataCacheTtl, config.metadataCacheMaxEntries);
+    this.listStreamsCache =
+        new MetadataCache<>(config.metadataCacheTtl, config.metadataCacheMaxEntries);
   }
 
   public static BasinClientBuilder newBuilder(Config config, String basin) {
@@ -53,17 +80,27 @@ public class BasinClient extends BaseClient {
   /**
    * List streams within the basin.
    *
+   * <p>If a {@link Config#metadataCacheTtl} is configured, listings are cached by request, and
+   * invalidated by stream mutations issued through this client.
+   *
    * @param listStreamsRequest the list streams request
    * @return future of a paginated list of stream infos
    */
   public ListenableFuture<Paginated<StreamInfo>> listStreams(
       s2.types.ListStreamsRequest listStreamsRequest) {
-    return withTimeout(
+    return listStreamsCache.get(
+        List.of(
+            listStreamsRequest.prefix,
+            listStreamsRequest.startAfter,
+            listStreamsRequest.limit.map(String::valueOf).orElse("")),
         () ->
             Futures.transform(
                 withStaticRetries(
                     config.maxRetries,
-                    () -> this.futureStub.listStreams(listStreamsRequest.toProto())),
+                    deadline ->
+                        this.futureStub
+                            .withDeadline(deadline)
+                            .listStreams(listStreamsRequest.toProto())),
                 resp ->
                     new Paginated<>(
                         resp.getHasMore(),
@@ -73,6 +110,163 @@ public class BasinClient extends BaseClient {
                 executor));
   }
 
+  /**
+   * Lazily list every stream within the basin matching a request, fetching up to {@code
+   * prefetchPages} pages ahead of the one being consumed.
+   *
+   * <p>Pages are sized by the request's limit, and the listing starts after its {@code startAfter}.
+   * The returned stream should be closed if it is not fully consumed, to cancel outstanding page
+   * fetches. Errors are thrown from the stream as runtime exceptions.
+   *
+   * @param listStreamsRequest the list streams request
+   * @param prefetchPages number of pages to fetch ahead, which may be 0
+   * @return stream of stream infos
+   */
+  public Stream<StreamInfo> listAllStreams(
+      s2.types.ListStreamsRequest listStreamsRequest, int prefetchPages) {
+    return PrefetchingIterator.stream(
+        new PrefetchingIterator<>(
+            startAfter -> listStreams(nextPageRequest(listStreamsRequest, startAfter)),
+            info -> info.name,
+            listStreamsRequest.startAfter,
+            prefetchPages));
+  }
+
+  /**
+   * Check the tail of every stream within the basin matching a request, reporting each position as
+   * it becomes available.
+   *
+   * <p>Streams are listed a page at a time, sized by the request's limit, with the next page
+   * fetched, and its checks queued, while the current one is being checked. Streams which are being
+   * deleted are skipped. Tail checks share this client's channel, and are issued with at most
+   * {@code maxConcurrency} in flight and no more than {@code maxChecksPerSecond} started per
+   * second.
+   *
+   * @param listStreamsRequest the list streams request, whose prefix selects streams to check
+   * @param maxConcurrency maximum number of concurrent tail checks
+   * @param maxChecksPerSecond maximum rate at which tail checks are started
+   * @param onResult invoked with the outcome of each tail check
+   * @return future which completes once every matching stream has been checked, or fails if listing
+   *     streams fails
+   */
+  public ListenableFuture<Void> checkTails(
+      s2.types.ListStreamsRequest listStreamsRequest,
+      int maxConcurrency,
+      double maxChecksPerSecond,
+      Consumer<BulkResult<String, StreamPosition>> onResult) {
+    final var limiter = new ConcurrencyLimiter(maxConcurrency);
+    final var rateLimit = new TokenBucket(maxChecksPerSecond, 1);
+    return checkTailsFrom(
+        listStreams(listStreamsRequest),
+        Futures.immediateVoidFuture(),
+        listStreamsRequest,
+        limiter,
+        rateLimit,
+        onResult);
+  }
+
+  /**
+   * Check the tails of the streams on a page, and those on every page after it.
+   *
+   * <p>Checks are submitted a page at a time, once the checks of the page before the previous one
+   * have completed. Tail checks of up to two pages are therefore outstanding, so the limiter has
+   * streams queued as a page drains, without buffering the entire listing.
+   */
+  private ListenableFuture<Void> checkTailsFrom(
+      ListenableFuture<Paginated<StreamInfo>> page,
+      ListenableFuture<Void> previousChecks,
+      s2.types.ListStreamsRequest listStreamsRequest,
+      ConcurrencyLimiter limiter,
+      TokenBucket rateLimit,
+      Consumer<BulkResult<String, StreamPosition>> onResult) {
+    return Futures.transformAsync(
+        page,
+        streams -> {
+          final Optional<ListenableFuture<Paginated<StreamInfo>>> nextPage =
+              streams.hasMore && !streams.elems.isEmpty()
+                  ? Optional.of(
+                      listStreams(
+                          nextPageRequest(
+                              listStreamsRequest,
+                              streams.elems.get(streams.elems.size() - 1).name)))
+                  : Optional.empty();
+          final List<ListenableFuture<Void>> checks =
+              streams.elems.stream()
+                  .filter(info -> info.deletedAt.isEmpty())
+                  .map(
+                      info ->
+                          Futures.transform(
+                              limiter.submit(() -> rateLimitedCheckTail(info.name, rateLimit)),
+                              result -> {
+                                onResult.accept(result);
+                                return (Void) null;
+                              },
+                              executor))
+                  .collect(Collectors.toList());
+          final ListenableFuture<Void> pageChecks =
+              Futures.whenAllSucceed(checks).call(() -> null, MoreExecutors.directExecutor());
+          final ListenableFuture<Void> remaining =
+              nextPage
+                  .map(
+                      next ->
+                          Futures.transformAsync(
+                              previousChecks,
+                              ignored ->
+                                  checkTailsFrom(
+                                      next,
+                                      pageChecks,
+                                      listStreamsRequest,
+                                      limiter,
+                                      rateLimit,
+                                      onResult),
+                              MoreExecutors.directExecutor()))
+                  .orElseGet(Futures::immediateVoidFuture);
+          return Futures.whenAllSucceed(pageChecks, remaining)
+              .call(() -> null, MoreExecutors.directExecutor());
+        },
+        MoreExecutors.directExecutor());
+  }
+
+  private ListenableFuture<BulkResult<String, StreamPosition>> rateLimitedCheckTail(
+      String streamName, TokenBucket rateLimit) {
+    final long delayNanos = rateLimit.reserve(1);
+    final ListenableFuture<StreamPosition> tail =
+        delayNanos == 0
+            ? checkTailOf(streamName)
+            : Futures.scheduleAsync(
+                () -> checkTailOf(streamName), delayNanos, TimeUnit.NANOSECONDS, executor);
+    return Futures.catching(
+        Futures.transform(
+            tail,
+            position -> BulkResult.success(streamName, position),
+            MoreExecutors.directExecutor()),
+        Throwable.class,
+        t -> BulkResult.failure(streamName, t),
+        MoreExecutors.directExecutor());
+  }
+
+  private ListenableFuture<StreamPosition> checkTailOf(String streamName) {
+    return Futures.transform(
+        withStaticRetries(
+            config.maxRetries,
+            deadline ->
+                this.streamServiceStub
+                    .withDeadline(deadline)
+                    .checkTail(CheckTailRequest.newBuilder().setStream(streamName).build())),
+        resp -> new StreamPosition(resp.getNextSeqNum(), resp.getLastTimestamp()),
+        MoreExecutors.directExecutor());
+  }
+
+  private static s2.types.ListStreamsRequest nextPageRequest(
+      s2.types.ListStreamsRequest listStreamsRequest, String startAfter) {
+    var builder =
+        s2.types.ListStreamsRequest.newBuilder()
+            .withPrefix(listStreamsRequest.prefix)
+            .withStartAfter(startAfter);
+    listStreamsRequest.limit.ifPresent(builder::withLimit);
+    return builder.build();
+  }
+
   /**
    * Create a new stream within this basin.
    *
@@ -83,17 +277,33 @@ public class BasinClient extends BaseClient {
     final var meta = new Metadata();
     final var token = UUID.randomUUID().toString();
     meta.put(Key.of("s2-request-token", Metadata.ASCII_STRING_MARSHALLER), token);
-    return withTimeout(
-        () ->
-            Futures.transform(
-                withStaticRetries(
-                    config.maxRetries,
-                    () ->
-                        this.futureStub
-                            .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(meta))
-                            .createStream(createStreamRequest.toProto())),
-                resp -> StreamInfo.fromProto(resp.getInfo()),
-                executor));
+    return invalidatingStream(
+        createStreamRequest.streamName,
+        Futures.transform(
+            withStaticRetries(
+                config.maxRetries,
+                deadline ->
+                    this.futureStub
+                        .withDeadline(deadline)
+                        .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(meta))
+                        .createStream(createStreamRequest.toProto())),
+            resp -> StreamInfo.fromProto(resp.getInfo()),
+            executor));
+  }
+
+  /**
+   * Create many streams within this basin, with at most {@code maxConcurrency} requests in flight.
+   *
+   * <p>Each creation is retried independently, and safely, as with {@link
+   * #createStream(CreateStreamRequest)}.
+   *
+   * @param createStreamRequests the create stream requests
+   * @param maxConcurrency maximum number of concurrent requests
+   * @return future of a result per request, in request order
+   */
+  public ListenableFuture<List<BulkResult<CreateStreamRequest, StreamInfo>>> createStreams(
+      Collection<CreateStreamRequest> createStreamRequests, int maxConcurrency) {
+    return bulk(createStreamRequests, maxConcurrency, this::createStream);
   }
 
   /**
@@ -105,16 +315,30 @@ public class BasinClient extends BaseClient {
    * @return future representing the completion of this action
    */
   public ListenableFuture<Void> deleteStream(String streamName) {
-    return withTimeout(
-        () ->
-            Futures.transform(
-                withStaticRetries(
-                    config.maxRetries,
-                    () ->
-                        this.futureStub.deleteStream(
+    return invalidatingStream(
+        streamName,
+        Futures.transform(
+            withStaticRetries(
+                config.maxRetries,
+                deadline ->
+                    this.futureStub
+                        .withDeadline(deadline)
+                        .deleteStream(
                             DeleteStreamRequest.newBuilder().setStream(streamName).build())),
-                resp -> null,
-                executor));
+            resp -> null,
+            executor));
+  }
+
+  /**
+   * Delete many streams, with at most {@code maxConcurrency} requests in flight.
+   *
+   * @param streamNames the stream names
+   * @param maxConcurrency maximum number of concurrent requests
+   * @return future of a result per stream, in input order
+   */
+  public ListenableFuture<List<BulkResult<String, Void>>> deleteStreams(
+      Collection<String> streamNames, int maxConcurrency) {
+    return bulk(streamNames, maxConcurrency, this::deleteStream);
   }
 
   /**
@@ -124,14 +348,17 @@ public class BasinClient extends BaseClient {
    * @return future of the stream config
    */
   public ListenableFuture<StreamConfig> getStreamConfig(String streamName) {
-    return withTimeout(
+    return streamConfigCache.get(
+        streamName,
         () ->
             Futures.transform(
                 withStaticRetries(
                     config.maxRetries,
-                    () ->
-                        this.futureStub.getStreamConfig(
-                            GetStreamConfigRequest.newBuilder().setStream(streamName).build())),
+                    deadline ->
+                        this.futureStub
+                            .withDeadline(deadline)
+                            .getStreamConfig(
+                                GetStreamConfigRequest.newBuilder().setStream(streamName).build())),
                 resp -> StreamConfig.fromProto(resp.getConfig()),
                 executor));
   }
@@ -144,14 +371,39 @@ public class BasinClient extends BaseClient {
    */
   public ListenableFuture<StreamConfig> reconfigureStream(
       ReconfigureStreamRequest reconfigureStreamRequest) {
-    return withTimeout(
-        () ->
+    final var streamName = reconfigureStreamRequest.stream;
+    return Futures.transform(
+        invalidatingStream(
+            streamName,
             Futures.transform(
                 withStaticRetries(
                     config.maxRetries,
-                    () -> this.futureStub.reconfigureStream(reconfigureStreamRequest.toProto())),
+                    deadline ->
+                        this.futureStub
+                            .withDeadline(deadline)
+                            .reconfigureStream(reconfigureStreamRequest.toProto())),
                 resp -> StreamConfig.fromProto(resp.getConfig()),
-                executor));
+                executor)),
+        streamConfig -> {
+          streamConfigCache.put(streamName, streamConfig);
+          return streamConfig;
+        },
+        MoreExecutors.directExecutor());
+  }
+
+  /**
+   * Invalidate the cached config of a stream, and all cached listings, when a mutation is issued,
+   * and again once its outcome is known.
+   */
+  private <T> ListenableFuture<T> invalidatingStream(
+      String streamName, ListenableFuture<T> mutation) {
+    final Runnable invalidation =
+        () -> {
+          streamConfigCache.invalidate(streamName);
+          listStreamsCache.invalidateIf(key -> true);
+        };
+    invalidation.run();
+    return MetadataCache.afterMutation(mutation, invalidation);
   }
 
   public static class BasinClientBuilder {
@@ -0,0 +1,69 @@
+package s2.client;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Pool of growable buffers, which values are serialized into before being wrapped as record bodies
+ * without copying.
+ *
+ * <p>A buffer must only be released once nothing refers to the bodies wrapping it. Buffers which
+ * are never released are simply garbage collected, so the pool only ever saves allocations.
+ */
+final class BufferPool {
+
+  static final int INITIAL_BYTES = 1024;
+
+  /** Records are at most 1MiB, so larger buffers are not worth keeping. */
+  static final int MAX_POOLED_BYTES = 1024 * 1024;
+
+  private final ArrayBlockingQueue<Buffer> free;
+
+  BufferPool(int maxBuffers) {
+    this.free = new ArrayBlockingQueue<>(maxBuffers);
+  }
+
+  Buffer acquire() {
+    final Buffer buffer = free.poll();
+    return buffer == null ? new Buffer() : buffer;
+  }
+
+  void release(Buffer buffer) {
+    if (buffer.bytes.length <= MAX_POOLED_BYTES) {
+      buffer.size = 0;
+      free.offer(buffer);
+    }
+  }
+
+  static final class Buffer extends OutputStream {
+    private byte[] bytes = new byte[INITIAL_BYTES];
+    private int size = 0;
+
+    @Override
+    public void write(int b) {
+      ensureCapacity(size + 1);
+      bytes[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      ensureCapacity(size + len);
+      System.arraycopy(b, off, bytes, size, len);
+      size += len;
+    }
+
+    /** The buffer's contents, which are only valid until the buffer is released. */
+    ByteString wrap() {
+      return UnsafeByteOperations.unsafeWrap(bytes, 0, size);
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+      }
+    }
+  }
+}
@@ -2,21 +2,26 @@ package s2.client;
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.grpc.Metadata;
 import io.grpc.Metadata.Key;
 import io.grpc.stub.MetadataUtils;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import s2.auth.BearerTokenCallCredentials;
 import s2.channel.AccountCompatibleChannel;
 import s2.channel.ManagedChannelFactory;
 import s2.config.Config;
+import s2.jfr.UnaryRpcInterceptor;
 import s2.types.BasinConfig;
 import s2.types.BasinInfo;
+import s2.types.BulkResult;
 import s2.types.CreateBasinRequest;
 import s2.types.Paginated;
 import s2.types.ReconfigureBasinRequest;
@@ -29,6 +34,7 @@ public class Client extends BaseClient {
 
   private static final Logger logger = LoggerFactory.getLogger(Client.class.getName());
   private final AccountServiceGrpc.AccountServiceFutureStub futureStub;
+  private final MetadataCache<String, BasinConfig> basinConfigCache;
 
   private Client(
       Config config,
@@ -38,8 +44,12 @@ public class Client extends BaseClient {
       boolean ownedClient) {
     super(config, channel.getChannel(), executor, ownedChannel, ownedClient);
     this.futureStub =
-        AccountServiceGrpc.newFutureStub(channel.getChannel().managedChannel)
-            .withCallCredentials(new BearerTokenCallCredentials(config.token));
+        instrumented(
+            AccountServiceGrpc.newFutureStub(channel.getChannel().managedChannel)
+                .withCallCredentials(config.credentials)
+                .withInterceptors(UnaryRpcInterceptor.INSTANCE));
+    this.basinConfigCache =
+        new MetadataCache<>(config.metadataCacheTtl, config.metadataCacheMaxEntries);
   }
 
   public static ClientBuilder newBuilder(Config config) {
@@ -53,18 +63,45 @@ public class Client extends BaseClient {
    * @return future of a paginated list of basin infos
    */
   public ListenableFuture<Paginated<BasinInfo>> listBasins(s2.types.ListBasinsRequest request) {
-    return withTimeout(
-        () ->
-            Futures.transform(
-                withStaticRetries(
-                    config.maxRetries, () -> this.futureStub.listBasins(request.toProto())),
-                resp ->
-                    new Paginated<>(
-                        resp.getHasMore(),
-                        resp.getBasinsList().stream()
-                            .map(BasinInfo::fromProto)
-                            .collect(Collectors.toList())),
-                executor));
+    return Futures.transform(
+        withStaticRetries(
+            config.maxRetries,
+            deadline -> this.futureStub.withDeadline(deadline).listBasins(request.toProto())),
+        resp ->
+            new Paginated<>(
+                resp.getHasMore(),
+                resp.getBasinsList().stream()
+                    .map(BasinInfo::fromProto)
+                    .collect(Collectors.toList())),
+        executor);
+  }
+
+  /**
+   * Lazily list every basin matching a request, fetching up to {@code prefetchPages} pages ahead of
+   * the one being consumed.
+   *
+   * <p>Pages are sized by the request's limit, and the listing starts after its {@code startAfter}.
+   * The returned stream should be closed if it is not fully consumed, to cancel outstanding page
+   * fetches. Errors are thrown from the stream as runtime exceptions.
+   *
+   * @param request the request
+   * @param prefetchPages number of pages to fetch ahead, which may be 0
+   * @return stream of basin infos
+   */
+  public Stream<BasinInfo> listAllBasins(s2.types.ListBasinsRequest request, int prefetchPages) {
+    return PrefetchingIterator.stream(
+        new PrefetchingIterator<>(
+            startAfter -> {
+              var builder =
+                  s2.types.ListBasinsRequest.newBuilder()
+                      .withPrefix(request.prefix)
+                      .withStartAfter(startAfter);
+              request.limit.ifPresent(builder::withLimit);
+              return listBasins(builder.build());
+            },
+            info -> info.name,
+            request.startAfter,
+            prefetchPages));
   }
 
   /**
@@ -77,17 +114,33 @@ public class Client extends BaseClient {
     final var meta = new Metadata();
     final var token = UUID.randomUUID().toString();
     meta.put(Key.of("s2-request-token", Metadata.ASCII_STRING_MARSHALLER), token);
-    return withTimeout(
-        () ->
-            Futures.transform(
-                withStaticRetries(
-                    config.maxRetries,
-                    () ->
-                        this.futureStub
-                            .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(meta))
-                            .createBasin(request.toProto())),
-                resp -> BasinInfo.fromProto(resp.getInfo()),
-                executor));
+    final ListenableFuture<BasinInfo> info =
+        Futures.transform(
+            withStaticRetries(
+                config.maxRetries,
+                deadline ->
+                    this.futureStub
+                        .withDeadline(deadline)
+                        .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(meta))
+                        .createBasin(request.toProto())),
+            resp -> BasinInfo.fromProto(resp.getInfo()),
+            executor);
+    return request.basin.isPresent() ? invalidatingBasin(request.basin.get(), info) : info;
+  }
+
+  /**
+   * Create many basins, with at most {@code maxConcurrency} requests in flight.
+   *
+   * <p>Each creation is retried independently, and safely, as with {@link
+   * #createBasin(CreateBasinRequest)}.
+   *
+   * @param requests the creation requests
+   * @param maxConcurrency maximum number of concurrent requests
+   * @return future of a result per request, in request order
+   */
+  public ListenableFuture<List<BulkResult<CreateBasinRequest, BasinInfo>>> createBasins(
+      Collection<CreateBasinRequest> requests, int maxConcurrency) {
+    return bulk(requests, maxConcurrency, this::createBasin);
   }
 
   /**
@@ -99,16 +152,29 @@ public class Client extends BaseClient {
    * @return future representing the completion of the delete call
    */
   public ListenableFuture<Void> deleteBasin(String basin) {
-    return withTimeout(
-        () ->
-            Futures.transform(
-                withStaticRetries(
-                    config.maxRetries,
-                    () ->
-                        this.futureStub.deleteBasin(
-                            DeleteBasinRequest.newBuilder().setBasin(basin).build())),
-                resp -> null,
-                executor));
+    return invalidatingBasin(
+        basin,
+        Futures.transform(
+            withStaticRetries(
+                config.maxRetries,
+                deadline ->
+                    this.futureStub
+                        .withDeadline(deadline)
+                        .deleteBasin(DeleteBasinRequest.newBuilder().setBasin(basin).build())),
+            resp -> null,
+            executor));
+  }
+
+  /**
+   * Delete many basins, with at most {@code maxConcurrency} requests in flight.
+   *
+   * @param basins the basins
+   * @param maxConcurrency maximum number of concurrent requests
+   * @return future of a result per basin, in input order
+   */
+  public ListenableFuture<List<BulkResult<String, Void>>> deleteBasins(
+      Collection<String> basins, int maxConcurrency) {
+    return bulk(basins, maxConcurrency, this::deleteBasin);
   }
 
   /**
@@ -118,14 +184,23 @@ public class Client extends BaseClient {
    * @return future of the updated configuration
    */
   public ListenableFuture<BasinConfig> reconfigureBasin(ReconfigureBasinRequest reconfigure) {
-    return withTimeout(
-        () ->
+    return Futures.transform(
+        invalidatingBasin(
+            reconfigure.basin,
             Futures.transform(
                 withStaticRetries(
                     config.maxRetries,
-                    () -> this.futureStub.reconfigureBasin(reconfigure.toProto())),
+                    deadline ->
+                        this.futureStub
+                            .withDeadline(deadline)
+                            .reconfigureBasin(reconfigure.toProto())),
                 resp -> BasinConfig.fromProto(resp.getConfig()),
-                executor));
+                executor)),
+        basinConfig -> {
+          basinConfigCache.put(reconfigure.basin, basinConfig);
+          return basinConfig;
+        },
+        MoreExecutors.directExecutor());
   }
 
   /**
@@ -135,18 +210,30 @@ public class Client extends BaseClient {
    * @return future of the basin configuration
    */
   public ListenableFuture<BasinConfig> getBasinConfig(String basin) {
-    return withTimeout(
+    return basinConfigCache.get(
+        basin,
         () ->
             Futures.transform(
                 withStaticRetries(
                     config.maxRetries,
-                    () ->
-                        this.futureStub.getBasinConfig(
-                            GetBasinConfigRequest.newBuilder().setBasin(basin).build())),
+                    deadline ->
+                        this.futureStub
+                            .withDeadline(deadline)
+                            .getBasinConfig(
+                                GetBasinConfigRequest.newBuilder().setBasin(basin).build())),
                 resp -> BasinConfig.fromProto(resp.getConfig()),
                 executor));
   }
 
+  /**
+   * Invalidate the cached config of a basin when a mutation is issued, and again once its outcome
+   * is known.
+   */
+  private <T> ListenableFuture<T> invalidatingBasin(String basin, ListenableFuture<T> mutation) {
+    basinConfigCache.invalidate(basin);
+    return MetadataCache.afterMutation(mutation, () -> basinConfigCache.invalidate(basin));
+  }
+
   public static class ClientBuilder {
 
     private final Config config;
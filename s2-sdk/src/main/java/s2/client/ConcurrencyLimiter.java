@@ -0,0 +1,84 @@
+package s2.client;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.function.Supplier;
+
+/**
+ * Runs asynchronous tasks with at most a fixed number in flight at once. Tasks beyond that limit
+ * are queued, and started in submission order as earlier tasks complete.
+ */
+final class ConcurrencyLimiter {
+
+  private final int maxConcurrency;
+  private final Queue<Runnable> pending = new ArrayDeque<>();
+  private int inflight = 0;
+  private boolean draining = false;
+
+  ConcurrencyLimiter(int maxConcurrency) {
+    if (maxConcurrency <= 0) {
+      throw new IllegalArgumentException("maxConcurrency must be a positive integer");
+    }
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  /**
+   * Submit a task, which is started once fewer than {@code maxConcurrency} tasks are in flight.
+   * Cancelling the returned future before the task starts removes it from the queue.
+   */
+  <R> ListenableFuture<R> submit(Supplier<ListenableFuture<R>> task) {
+    final SettableFuture<R> result = SettableFuture.create();
+    synchronized (this) {
+      pending.add(
+          () -> {
+            if (result.isCancelled()) {
+              release();
+              return;
+            }
+            try {
+              final ListenableFuture<R> future = task.get();
+              future.addListener(this::release, MoreExecutors.directExecutor());
+              result.setFuture(future);
+            } catch (RuntimeException e) {
+              result.setException(e);
+              release();
+            }
+          });
+    }
+    drain();
+    return result;
+  }
+
+  private void release() {
+    synchronized (this) {
+      inflight--;
+    }
+    drain();
+  }
+
+  // Tasks may complete synchronously, so tasks are started from a loop rather than recursively
+  // from completion callbacks.
+  private void drain() {
+    synchronized (this) {
+      if (draining) {
+        return;
+      }
+      draining = true;
+    }
+    while (true) {
+      final Runnable next;
+      synchronized (this) {
+        if (inflight >= maxConcurrency || pending.isEmpty()) {
+          draining = false;
+          return;
+        }
+        next = pending.poll();
+        inflight++;
+      }
+      next.run();
+    }
+  }
+}
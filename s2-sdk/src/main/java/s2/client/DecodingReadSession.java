@@ -0,0 +1,200 @@
+package s2.client;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import javax.management.ObjectName;
+import s2.jmx.DecodingReadSessionMXBean;
+import s2.types.Batch;
+import s2.types.ReadOutput;
+import s2.types.ReadSessionRequest;
+import s2.types.RecordCursor;
+
+/**
+ * Read session which decodes batches on a pool of worker threads, and returns the decoded values in
+ * the order their batches were read, via an iterator-like API like {@link ManagedReadSession}'s.
+ *
+ * <p>Each batch is handed to a worker as soon as it is received, still in its protobuf form, and
+ * queued in read order alongside the future of its decoding. Workers convert the batch, undo any
+ * record compression and tracing, and apply the decoder, so all of that proceeds in parallel while
+ * values are returned in sequence number order. Batches count against the buffer from when they are
+ * received until their value is returned, so a slow consumer, or slow decoding, applies
+ * backpressure to the read.
+ *
+ * <p>Outputs other than batches, which only report the stream's bounds, are not returned.
+ *
+ * <p>Closing the session cancels decoding which has not finished, and waiting for a cancelled value
+ * throws {@link java.util.concurrent.CancellationException}.
+ *
+ * @param <T> type of the decoded values
+ */
+public class DecodingReadSession<T> implements AutoCloseable {
+
+  private final ReadBuffer<ListenableFuture<T>> buffer;
+  private final AtomicBoolean closed = new AtomicBoolean(false);
+  private final ListeningExecutorService workers;
+  private final Set<ListenableFuture<T>> decoding = ConcurrentHashMap.newKeySet();
+  private final ReadSession readSession;
+  private final StreamClient streamClient;
+  private final Optional<ObjectName> mbeanName;
+
+  DecodingReadSession(
+      StreamClient streamClient,
+      ReadSessionRequest readSessionRequest,
+      Integer maxBufferBytes,
+      Function<Batch, T> decoder,
+      int workers) {
+    if (workers <= 0) {
+      throw new IllegalArgumentException("workers must be a positive integer");
+    }
+    this.streamClient = streamClient;
+    this.buffer = new ReadBuffer<>(streamClient, maxBufferBytes);
+    final AtomicInteger threads = new AtomicInteger();
+    this.workers =
+        MoreExecutors.listeningDecorator(
+            Executors.newFixedThreadPool(
+                workers,
+                runnable -> {
+                  final Thread thread =
+                      new Thread(runnable, "s2-read-decoder-" + threads.getAndIncrement());
+                  thread.setDaemon(true);
+                  return thread;
+                }));
+    // Registered before the read session starts, so that its completion always unregisters it.
+    this.mbeanName = SessionMBeans.register(streamClient, "DecodingReadSession", new MBean());
+    this.readSession =
+        new ReadSession(
+            streamClient,
+            readSessionRequest,
+            output -> {
+              if (output.getOutputCase() != s2.v1alpha.ReadOutput.OutputCase.BATCH) {
+                return;
+              }
+              final ListenableFuture<T> decoded;
+              try {
+                decoded =
+                    this.workers.submit(
+                        () ->
+                            decoder.apply(
+                                (Batch) streamClient.decoded(ReadOutput.fromProto(output))));
+              } catch (RejectedExecutionException e) {
+                // Closed while the batch was being received.
+                return;
+              }
+              decoding.add(decoded);
+              decoded.addListener(() -> decoding.remove(decoded), MoreExecutors.directExecutor());
+              if (closed.get()) {
+                // Closed after submitting, possibly without seeing the decoding to cancel it.
+                decoded.cancel(false);
+              }
+              try {
+                buffer.put(decoded, (int) RecordCursor.meteredBytes(output.getBatch()));
+              } catch (InterruptedException e) {
+                decoded.cancel(false);
+                buffer.fail(e);
+              }
+            },
+            buffer::fail);
+    this.readSession
+        .awaitCompletion()
+        .addListener(
+            () -> {
+              this.closed.set(true);
+              // Batches already read are still decoded.
+              this.workers.shutdown();
+              this.buffer.end();
+              SessionMBeans.unregister(mbeanName);
+            },
+            streamClient.executor);
+  }
+
+  public boolean isClosed() {
+    return !hasNext() && closed.get();
+  }
+
+  public boolean hasNext() {
+    return buffer.hasNext();
+  }
+
+  /**
+   * Next decoded value, waiting for it to be decoded if its batch has been read.
+   *
+   * @return the value, or empty if no batch has been read
+   * @throws InterruptedException if interrupted while waiting for decoding
+   */
+  public Optional<T> get() throws InterruptedException {
+    return buffer.take(DecodingReadSession::await);
+  }
+
+  /**
+   * Next decoded value, waiting up to {@code maxWait} for its batch to be read, and then for it to
+   * be decoded.
+   *
+   * @param maxWait maximum time to wait for a batch to be read
+   * @return the value, or empty if no batch was read in time
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public Optional<T> get(Duration maxWait) throws InterruptedException {
+    return buffer.take(maxWait, DecodingReadSession::await);
+  }
+
+  private static <T> T await(ListenableFuture<T> decoded) throws InterruptedException {
+    try {
+      return decoded.get();
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  @Override
+  public void close() {
+    this.closed.set(true);
+    this.readSession.close();
+    this.workers.shutdownNow();
+    // Decoding which never started would otherwise never complete, leaving consumers waiting.
+    this.decoding.forEach(decoded -> decoded.cancel(false));
+    SessionMBeans.unregister(mbeanName);
+  }
+
+  private final class MBean implements DecodingReadSessionMXBean {
+    @Override
+    public String getStream() {
+      return streamClient.streamName;
+    }
+
+    @Override
+    public int getBufferedItems() {
+      return buffer.items();
+    }
+
+    @Override
+    public long getBufferedBytes() {
+      return buffer.bytes();
+    }
+
+    @Override
+    public int getDecodingBatches() {
+      return decoding.size();
+    }
+
+    @Override
+    public boolean isClosed() {
+      return closed.get();
+    }
+
+    @Override
+    public void close() {
+      DecodingReadSession.this.close();
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package s2.client;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import s2.config.HedgingPolicy;
+
+/**
+ * Issues a duplicate of a slow, idempotent request, and completes with whichever attempt succeeds
+ * first.
+ *
+ * <p>The hedging delay tracks a percentile of recently observed latencies for a single kind of
+ * request. Extra load is bounded by a {@link Budget}, which may be shared between hedgers.
+ */
+final class Hedger {
+
+  private static final Logger logger = LoggerFactory.getLogger(Hedger.class.getName());
+
+  /** Number of recent latencies considered when computing the hedging delay. */
+  static final int WINDOW = 1024;
+
+  /** Number of latencies which must be observed before the percentile is used. */
+  static final int MIN_SAMPLES = 32;
+
+  /** How often, in samples, the hedging delay is recomputed. */
+  static final int RECOMPUTE_INTERVAL = 64;
+
+  private final HedgingPolicy policy;
+  private final Budget budget;
+  private final ScheduledExecutorService executor;
+
+  private final long[] latencies = new long[WINDOW];
+  private int samples = 0;
+  private volatile long delayNanos;
+
+  Hedger(HedgingPolicy policy, Budget budget, ScheduledExecutorService executor) {
+    this.policy = policy;
+    this.budget = budget;
+    this.executor = executor;
+    this.delayNanos = policy.maxDelay.toNanos();
+  }
+
+  long delayNanos() {
+    return delayNanos;
+  }
+
+  <T> ListenableFuture<T> hedged(Supplier<ListenableFuture<T>> attempt) {
+    budget.onRequest();
+    return new Race<>(attempt).start();
+  }
+
+  private synchronized void recordLatency(long nanos) {
+    latencies[samples % WINDOW] = nanos;
+    samples++;
+    if (samples >= MIN_SAMPLES && samples % RECOMPUTE_INTERVAL == 0) {
+      final long[] sorted = Arrays.copyOf(latencies, Math.min(samples, WINDOW));
+      Arrays.sort(sorted);
+      final long observed = sorted[(int) Math.floor(policy.percentile * (sorted.length - 1))];
+      this.delayNanos =
+          Math.max(policy.minDelay.toNanos(), Math.min(policy.maxDelay.toNanos(), observed));
+    }
+  }
+
+  /** Limits hedged requests to a fraction of all requests, allowing for small bursts. */
+  static final class Budget {
+    private static final long SCALE = 1000;
+    private static final long MAX_BURST = 10 * SCALE;
+
+    private final long tokensPerRequest;
+    private final AtomicLong tokens = new AtomicLong(MAX_BURST);
+
+    Budget(double ratio) {
+      this.tokensPerRequest = (long) (ratio * SCALE);
+    }
+
+    void onRequest() {
+      tokens.accumulateAndGet(
+          tokensPerRequest, (current, add) -> Math.min(MAX_BURST, current + add));
+    }
+
+    boolean tryAcquire() {
+      long current;
+      do {
+        current = tokens.get();
+        if (current < SCALE) {
+          return false;
+        }
+      } while (!tokens.compareAndSet(current, current - SCALE));
+      return true;
+    }
+  }
+
+  private final class Race<T> {
+    private final Supplier<ListenableFuture<T>> attempt;
+    private final SettableFuture<T> result = SettableFuture.create();
+    private long startNanos;
+
+    // Guarded by this.
+    private final List<ListenableFuture<T>> attempts = new ArrayList<>(2);
+    private int outstanding = 0;
+    private boolean hedgePending = true;
+
+    Race(Supplier<ListenableFuture<T>> attempt) {
+      this.attempt = attempt;
+    }
+
+    ListenableFuture<T> start() {
+      startNanos = System.nanoTime();
+      synchronized (this) {
+        outstanding++;
+      }
+      launch();
+      final ScheduledFuture<?> hedgeTimer =
+          executor.schedule(this::hedge, delayNanos, TimeUnit.NANOSECONDS);
+      result.addListener(
+          () -> {
+            hedgeTimer.cancel(false);
+            // Cancel whichever attempts lost (or all of them, if the caller cancelled).
+            synchronized (this) {
+              hedgePending = false;
+              attempts.forEach(a -> a.cancel(true));
+            }
+          },
+          MoreExecutors.directExecutor());
+      return result;
+    }
+
+    private void hedge() {
+      synchronized (this) {
+        if (!hedgePending || result.isDone()) {
+          return;
+        }
+        hedgePending = false;
+        if (!budget.tryAcquire()) {
+          logger.debug("hedging budget exhausted, not hedging request");
+          return;
+        }
+        outstanding++;
+      }
+      logger.debug("issuing hedged request after {} ns", delayNanos);
+      launch();
+    }
+
+    private void launch() {
+      final ListenableFuture<T> future = attempt.get();
+      synchronized (this) {
+        attempts.add(future);
+      }
+      if (result.isDone()) {
+        future.cancel(true);
+      }
+      future.addListener(() -> onComplete(future), MoreExecutors.directExecutor());
+    }
+
+    private void onComplete(ListenableFuture<T> future) {
+      final Throwable failure;
+      try {
+        // Latency is measured from the start of the race rather than of the winning attempt, as
+        // timing only winners would make a hedge which wins look fast and shrink the delay.
+        if (result.set(Futures.getDone(future))) {
+          recordLatency(System.nanoTime() - startNanos);
+        }
+        return;
+      } catch (ExecutionException e) {
+        failure = e.getCause();
+      } catch (CancellationException e) {
+        failure = e;
+      }
+
+      // Only fail once no other attempt could still succeed. A failure before the hedge has been
+      // issued is surfaced immediately, so that any retry policy can take over.
+      final boolean exhausted;
+      synchronized (this) {
+        outstanding--;
+        exhausted = outstanding == 0;
+        if (exhausted) {
+          hedgePending = false;
+        }
+      }
+      if (exhausted) {
+        result.setException(failure);
+      }
+    }
+  }
+}
@@ -16,12 +16,22 @@ import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.management.ObjectName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import s2.config.AppendRetryPolicy;
+import s2.jfr.AppendAckEvent;
+import s2.jfr.AppendSendEvent;
+import s2.jfr.AppendSubmitEvent;
+import s2.jfr.InflightRecoveryEvent;
+import s2.jfr.SessionRetryEvent;
+import s2.jmx.AppendSessionMXBean;
+import s2.metrics.Metrics;
 import s2.types.AppendInput;
 import s2.types.AppendOutput;
+import s2.types.StreamPosition;
 import s2.v1alpha.AppendSessionRequest;
 import s2.v1alpha.AppendSessionResponse;
 
@@ -48,6 +58,24 @@ public class ManagedAppendSession implements AutoCloseable {
 
   final ListenableFuture<Void> daemon;
 
+  /** Set when a reconnect is forced, so the resulting failure is retried unconditionally. */
+  private final AtomicBoolean reconnectRequested = new AtomicBoolean(false);
+
+  /**
+   * Incremented as each daemon starts. Notifications from a stream carry the generation of the
+   * daemon which opened it, so those arriving late from an earlier stream can be dropped.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  private final Optional<ObjectName> mbeanName;
+
+  /**
+   * With {@link AppendRetryPolicy#EXACTLY_ONCE}, the sequence number the next batch sent is
+   * expected to start at, or -1 if the tail has not been checked yet. Only accessed by the daemon,
+   * and between runs of it.
+   */
+  private long nextSeqNum = -1;
+
   ManagedAppendSession(StreamClient client) {
     this.executor = MoreExecutors.listeningDecorator(client.executor);
     this.client = client;
@@ -55,6 +83,8 @@ public class ManagedAppendSession implements AutoCloseable {
     this.bufferCapacityBytes = client.config.maxAppendInflightBytes;
     this.inflightBytes = new Semaphore(this.bufferCapacityBytes);
     this.remainingAttempts = new AtomicInteger(this.client.config.maxRetries);
+    this.mbeanName = SessionMBeans.register(client, "AppendSession", new MBean());
+    this.daemon.addListener(() -> SessionMBeans.unregister(mbeanName), executor);
   }
 
   public Integer remainingBufferCapacityBytes() {
@@ -63,21 +93,37 @@ public class ManagedAppendSession implements AutoCloseable {
 
   private ListenableFuture<Void> retryingDaemon() {
     return Futures.catchingAsync(
-        executor.submit(this::daemon),
+        startDaemon(),
         Throwable.class,
         err -> {
+          if (reconnectRequested.getAndSet(false)) {
+            logger.info("Reconnecting append session on request.");
+            return retryingDaemon();
+          }
           var status = Status.fromThrowable(err);
           var currentRemainingAttempts = this.remainingAttempts.getAndDecrement();
-          if (client.config.appendRetryPolicy == AppendRetryPolicy.ALL
+          final Optional<Duration> delay =
+              client.retryDelay(
+                  err, Math.max(0, client.config.maxRetries - currentRemainingAttempts));
+          if (client.config.appendRetryPolicy != AppendRetryPolicy.NO_SIDE_EFFECTS
               && BaseClient.retryableStatus(status)
-              && currentRemainingAttempts > 0) {
+              && currentRemainingAttempts > 0
+              && delay.isPresent()) {
             logger.debug(
                 "Retrying error with (original err={}) status={}, after {} delay.",
                 err,
                 status,
-                client.config.retryDelay);
-            return Futures.scheduleAsync(
-                this::retryingDaemon, client.config.retryDelay, this.executor);
+                delay.get());
+            client.config.metrics.sessionReconnected(client.streamName, Metrics.SessionType.APPEND);
+            final SessionRetryEvent event = new SessionRetryEvent();
+            if (event.shouldCommit()) {
+              event.stream = client.streamName;
+              event.session = "append";
+              event.status = status.getCode().name();
+              event.delay = delay.get().toNanos();
+              event.commit();
+            }
+            return Futures.scheduleAsync(this::retryingDaemon, delay.get(), this.executor);
           } else {
             logger.warn(
                 "Not retrying error with status={}. Cleaning up append session.", status.getCode());
@@ -87,18 +133,106 @@ public class ManagedAppendSession implements AutoCloseable {
         this.executor);
   }
 
-  public ListenableFuture<AppendOutput> submit(AppendInput input, Duration maxWait)
+  /**
+   * Submit a batch of records to be appended.
+   *
+   * <p>Blocks for up to {@code maxWait} while waiting for inflight buffer capacity, and for any
+   * rate limiters attached to the stream client to admit the batch.
+   *
+   * @param batch the batch of records
+   * @param maxWait maximum time to block for
+   * @return future of the append's output
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public ListenableFuture<AppendOutput> submit(AppendInput batch, Duration maxWait)
+      throws InterruptedException {
+    return submitEncoded(Encoded.of(client, batch), maxWait);
+  }
+
+  /** Submit a batch which has already been encoded, as {@link #submit} does. */
+  ListenableFuture<AppendOutput> submitEncoded(Encoded encoded, Duration maxWait)
       throws InterruptedException {
-    long meteredBytes = input.meteredBytes();
-    if (!acquirePermits((int) meteredBytes, maxWait)) {
+    final AppendInput input = encoded.input;
+    final AppendSubmitEvent event = new AppendSubmitEvent();
+    event.begin();
+    final long startNanos = System.nanoTime();
+    final long deadlineNanos = startNanos + maxWait.toNanos();
+    final long meteredBytes = encoded.meteredBytes;
+    // The rate limit is waited on first, so that a throttled producer holds no buffer capacity.
+    final boolean limited = !client.rateLimiters.isEmpty();
+    if (limited) {
+      final long delayNanos =
+          RateLimiter.tryReserve(
+              client.rateLimiters, meteredBytes, input.records.size(), maxWait.toNanos());
+      if (delayNanos < 0) {
+        throw new RuntimeException("Unable to acquire rate limit within deadline.");
+      }
+      try {
+        TimeUnit.NANOSECONDS.sleep(delayNanos);
+      } catch (InterruptedException e) {
+        RateLimiter.refund(client.rateLimiters, meteredBytes, input.records.size());
+        throw e;
+      }
+    }
+    final boolean acquired;
+    try {
+      acquired =
+          acquirePermits((int) meteredBytes, Duration.ofNanos(deadlineNanos - System.nanoTime()));
+    } catch (InterruptedException | RuntimeException e) {
+      if (limited) {
+        RateLimiter.refund(client.rateLimiters, meteredBytes, input.records.size());
+      }
+      throw e;
+    }
+    if (!acquired) {
+      if (limited) {
+        RateLimiter.refund(client.rateLimiters, meteredBytes, input.records.size());
+      }
       throw new RuntimeException("Unable to acquire permits within deadline.");
     }
-    var record = InflightRecord.construct(input, meteredBytes);
+    client.config.metrics.appendQueued(client.streamName, System.nanoTime() - startNanos);
+    reportBufferBytes();
+    var record = InflightRecord.construct(input, encoded.proto, meteredBytes);
     this.notificationQueue.put(new Batch(record));
 
+    event.end();
+    if (event.shouldCommit()) {
+      event.stream = client.streamName;
+      event.records = input.records.size();
+      event.bytes = meteredBytes;
+      event.commit();
+    }
+
     return record.callback;
   }
 
+  private void reportBufferBytes() {
+    client.config.metrics.appendBufferBytes(
+        client.streamName, bufferCapacityBytes - inflightBytes.availablePermits());
+  }
+
+  /** Complete an inflight batch with its acknowledgement. */
+  private void acknowledged(InflightRecord record, AppendOutput output) {
+    validate(record, output);
+    record.callback.set(output);
+    this.inflightBytes.release((int) record.meteredBytes);
+    client.config.metrics.appendAcknowledged(
+        client.streamName,
+        record.input.records.size(),
+        record.meteredBytes,
+        System.nanoTime() - record.entryNanos);
+    reportBufferBytes();
+
+    final AppendAckEvent event = new AppendAckEvent();
+    if (event.shouldCommit()) {
+      event.stream = client.streamName;
+      event.records = record.input.records.size();
+      event.bytes = record.meteredBytes;
+      event.latency = System.nanoTime() - record.entryNanos;
+      event.commit();
+    }
+  }
+
   private boolean acquirePermits(int permits, Duration maxWait) throws InterruptedException {
     var millisToWait = maxWait.toMillis();
     do {
@@ -131,7 +265,7 @@ public class ManagedAppendSession implements AutoCloseable {
     return daemon;
   }
 
-  private void performInflightRecovery() throws InterruptedException {
+  private void performInflightRecovery(long generation) throws InterruptedException {
     final ArrayBlockingQueue<Notification> recoveryNotificationQueue =
         new ArrayBlockingQueue<>(inflightQueue.size());
     final var recoveryObserver =
@@ -139,17 +273,20 @@ public class ManagedAppendSession implements AutoCloseable {
             new StreamObserver<>() {
               @Override
               public void onNext(AppendSessionResponse value) {
-                recoveryNotificationQueue.add(new Ack(AppendOutput.fromProto(value.getOutput())));
+                final AppendOutput output = AppendOutput.fromProto(value.getOutput());
+                client.tailCache.observe(output.tail);
+                recoveryNotificationQueue.add(new Ack(generation, output));
               }
 
               @Override
               public void onError(Throwable t) {
-                recoveryNotificationQueue.add(new Error(t));
+                recoveryNotificationQueue.add(new Error(generation, t));
               }
 
               @Override
               public void onCompleted() {
-                recoveryNotificationQueue.add(new Error(new Throwable("unexpected server close")));
+                recoveryNotificationQueue.add(
+                    new Error(generation, new Throwable("unexpected server close")));
               }
             });
 
@@ -157,10 +294,7 @@ public class ManagedAppendSession implements AutoCloseable {
     // Retransmit all entries in the queue.
     inflightQueue.forEach(
         record -> {
-          recoveryObserver.onNext(
-              AppendSessionRequest.newBuilder()
-                  .setInput(record.input.toProto(this.client.streamName))
-                  .build());
+          recoveryObserver.onNext(AppendSessionRequest.newBuilder().setInput(record.proto).build());
         });
 
     logger.debug("inflight recovery finished");
@@ -190,9 +324,7 @@ public class ManagedAppendSession implements AutoCloseable {
         if (correspondingInflight == null) {
           throw Status.INTERNAL.withDescription("inflight queue is empty").asRuntimeException();
         } else {
-          validate(correspondingInflight, ack.output);
-          correspondingInflight.callback.set(ack.output);
-          this.inflightBytes.release((int) correspondingInflight.meteredBytes);
+          acknowledged(correspondingInflight, ack.output);
         }
       } else if (notification instanceof Error) {
         final Error error = (Error) notification;
@@ -242,32 +374,145 @@ public class ManagedAppendSession implements AutoCloseable {
               "number of acknowledged records from S2 does not equal amount from first inflight batch")
           .asRuntimeException();
     }
+    if (record.input.matchSeqNum.isPresent()
+        && record.input.matchSeqNum.get() != output.start.seqNum) {
+      throw Status.INTERNAL
+          .withDescription("acknowledged batch does not start at its matchSeqNum")
+          .asRuntimeException();
+    }
+  }
+
+  private boolean exactlyOnce() {
+    return client.config.appendRetryPolicy == AppendRetryPolicy.EXACTLY_ONCE;
+  }
+
+  /** Chain the batch onto the previous one, unless it already carries a matchSeqNum. */
+  private InflightRecord assignSeqNum(InflightRecord record) {
+    if (record.input.matchSeqNum.isPresent()) {
+      nextSeqNum = record.input.matchSeqNum.get() + record.input.records.size();
+      return record;
+    }
+    final AppendInput input = record.input.withMatchSeqNum(nextSeqNum);
+    nextSeqNum += input.records.size();
+    return new InflightRecord(
+        input,
+        record.proto.toBuilder().setMatchSeqNum(input.matchSeqNum.get()).build(),
+        record.entryNanos,
+        record.callback,
+        record.meteredBytes);
+  }
+
+  /**
+   * Resolve inflight batches which the tail shows to have landed, leaving only those which must be
+   * retransmitted.
+   *
+   * <p>A batch is taken to have landed when the tail is past its {@code matchSeqNum} by at least
+   * its size. This cannot be told apart from another writer having appended the same number of
+   * records at the same position, in which case the batch is wrongly reported as appended. Streams
+   * appended to exactly once should therefore have a single writer.
+   */
+  private void reconcileInflight(StreamPosition tail) {
+    while (!inflightQueue.isEmpty()) {
+      final InflightRecord record = inflightQueue.peek();
+      final long matchSeqNum = record.input.matchSeqNum.get();
+      final int numRecords = record.input.records.size();
+      if (matchSeqNum == tail.seqNum) {
+        break;
+      } else if (matchSeqNum + numRecords > tail.seqNum) {
+        throw StreamClient.concurrentAppendError(matchSeqNum, tail);
+      }
+      inflightQueue.poll();
+      record.callback.set(StreamClient.landedOutput(matchSeqNum, numRecords, tail));
+      this.inflightBytes.release((int) record.meteredBytes);
+    }
+
+    if (!inflightQueue.isEmpty()) {
+      logger.debug("{} inflight batches did not land, and will be resent", inflightQueue.size());
+    } else if (nextSeqNum >= 0 && nextSeqNum != tail.seqNum) {
+      throw StreamClient.concurrentAppendError(nextSeqNum, tail);
+    } else {
+      nextSeqNum = tail.seqNum;
+    }
   }
 
-  private synchronized Void daemon() throws InterruptedException {
+  /**
+   * Advance to the generation of a new daemon. A reconnect forced before this point is made by the
+   * restart itself, so the request is cleared along with it.
+   */
+  private long nextGeneration() {
+    synchronized (reconnectRequested) {
+      reconnectRequested.set(false);
+      return generation.incrementAndGet();
+    }
+  }
+
+  /** Whether a notification came from a stream other than the current daemon's. */
+  private static boolean stale(Notification notification, long generation) {
+    return notification instanceof StreamNotification
+        && ((StreamNotification) notification).generation != generation;
+  }
+
+  /**
+   * Start the daemon, first resolving inflight batches against the tail if they must be appended
+   * exactly once.
+   *
+   * <p>The tail is checked before the daemon is submitted rather than by the daemon itself, which
+   * would otherwise occupy an executor thread while waiting on a check that also needs one. No
+   * daemon is running at this point, so its state can be inspected here.
+   */
+  private ListenableFuture<Void> startDaemon() {
+    final long generation = nextGeneration();
+    if (!exactlyOnce() || (nextSeqNum >= 0 && inflightQueue.isEmpty())) {
+      return executor.submit(() -> daemon(generation, Optional.empty()));
+    }
+    return Futures.transformAsync(
+        client.checkTailInner(),
+        tail -> executor.submit(() -> daemon(generation, Optional.of(tail))),
+        executor);
+  }
+
+  private synchronized Void daemon(long generation, Optional<StreamPosition> tail)
+      throws InterruptedException {
     logger.debug("append session daemon started");
+    if (tail.isPresent()) {
+      reconcileInflight(tail.get());
+    }
     final var clientObserver =
         this.client.asyncStub.appendSession(
             new StreamObserver<>() {
               @Override
               public void onNext(AppendSessionResponse value) {
-                notificationQueue.add(new Ack(AppendOutput.fromProto(value.getOutput())));
+                final AppendOutput output = AppendOutput.fromProto(value.getOutput());
+                client.tailCache.observe(output.tail);
+                notificationQueue.add(new Ack(generation, output));
               }
 
               @Override
               public void onError(Throwable t) {
-                notificationQueue.add(new Error(t));
+                notificationQueue.add(new Error(generation, t));
               }
 
               @Override
               public void onCompleted() {
-                notificationQueue.add(new ServerClose());
+                notificationQueue.add(new ServerClose(generation));
               }
             });
 
     if (!inflightQueue.isEmpty()) {
       logger.debug("Performing retransmission of {} batches.", inflightQueue.size());
-      performInflightRecovery();
+      client.config.metrics.appendRetransmitted(client.streamName, inflightQueue.size());
+      final InflightRecoveryEvent event = new InflightRecoveryEvent();
+      event.begin();
+      final int batches = inflightQueue.size();
+      final long bytes = inflightQueue.stream().mapToLong(record -> record.meteredBytes).sum();
+      performInflightRecovery(generation);
+      event.end();
+      if (event.shouldCommit()) {
+        event.stream = client.streamName;
+        event.batches = batches;
+        event.bytes = bytes;
+        event.commit();
+      }
     }
 
     if (!inflightQueue.isEmpty()) {
@@ -286,7 +531,9 @@ public class ManagedAppendSession implements AutoCloseable {
       final Notification notification =
           nanosToWait > 0 ? this.notificationQueue.poll(nanosToWait, TimeUnit.NANOSECONDS) : null;
 
-      if (notification == null) {
+      if (notification != null && stale(notification, generation)) {
+        logger.debug("dropping notification from an earlier stream");
+      } else if (notification == null) {
         logger.debug("notification=NONE");
         if (!inflightQueue.isEmpty()) {
           var elapsed = Duration.ofNanos(System.nanoTime() - inflightQueue.peek().entryNanos);
@@ -297,13 +544,18 @@ public class ManagedAppendSession implements AutoCloseable {
       } else if (notification instanceof Batch) {
         final Batch batch = (Batch) notification;
         logger.debug("notification=BATCH");
-        if (!inflightQueue.offer(batch.input)) {
+        final InflightRecord record = exactlyOnce() ? assignSeqNum(batch.input) : batch.input;
+        if (!inflightQueue.offer(record)) {
           throw Status.INTERNAL.asRuntimeException();
         } else {
-          clientObserver.onNext(
-              AppendSessionRequest.newBuilder()
-                  .setInput(batch.input.input.toProto(this.client.streamName))
-                  .build());
+          clientObserver.onNext(AppendSessionRequest.newBuilder().setInput(record.proto).build());
+          final AppendSendEvent event = new AppendSendEvent();
+          if (event.shouldCommit()) {
+            event.stream = client.streamName;
+            event.records = record.input.records.size();
+            event.bytes = record.meteredBytes;
+            event.commit();
+          }
 
           // Reset the next deadline.
           this.nextDeadlineSystemNanos.set(
@@ -320,9 +572,7 @@ public class ManagedAppendSession implements AutoCloseable {
         if (correspondingInflight == null) {
           throw Status.INTERNAL.asRuntimeException();
         } else {
-          validate(correspondingInflight, ack.output);
-          correspondingInflight.callback.set(ack.output);
-          this.inflightBytes.release((int) correspondingInflight.meteredBytes);
+          acknowledged(correspondingInflight, ack.output);
 
           // Reset the next deadline.
           this.nextDeadlineSystemNanos.set(
@@ -374,34 +624,136 @@ public class ManagedAppendSession implements AutoCloseable {
     return daemon;
   }
 
+  private final class MBean implements AppendSessionMXBean {
+    @Override
+    public String getStream() {
+      return client.streamName;
+    }
+
+    @Override
+    public int getInflightBatches() {
+      return inflightQueue.size();
+    }
+
+    @Override
+    public long getBufferedBytes() {
+      return bufferCapacityBytes - inflightBytes.availablePermits();
+    }
+
+    @Override
+    public int getPendingNotifications() {
+      return notificationQueue.size();
+    }
+
+    @Override
+    public long getMillisUntilDeadline() {
+      return nextDeadlineSystemNanos
+          .get()
+          .map(deadline -> TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()))
+          .orElse(-1L);
+    }
+
+    @Override
+    public int getRemainingAttempts() {
+      return remainingAttempts.get();
+    }
+
+    @Override
+    public boolean isAcceptingAppends() {
+      return acceptingAppends.get();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return daemon.isDone();
+    }
+
+    @Override
+    public void forceReconnect() {
+      if (client.config.appendRetryPolicy == AppendRetryPolicy.NO_SIDE_EFFECTS) {
+        throw new IllegalStateException(
+            "Cannot reconnect without risking duplicates under the NO_SIDE_EFFECTS policy.");
+      }
+      synchronized (reconnectRequested) {
+        reconnectRequested.set(true);
+        notificationQueue.add(
+            new Error(
+                generation.get(),
+                Status.UNAVAILABLE.withDescription("reconnect forced").asRuntimeException()));
+      }
+    }
+
+    @Override
+    public void close() {
+      closeGracefully();
+    }
+  }
+
   interface Notification {}
 
+  /**
+   * A batch prepared for sending: encoded by the stream client, converted to its protobuf form, and
+   * metered. This is the CPU-intensive part of submitting a batch, so it is done by the submitting
+   * thread rather than the session's daemon.
+   */
+  static final class Encoded {
+    final AppendInput input;
+    final s2.v1alpha.AppendInput proto;
+    final long meteredBytes;
+
+    private Encoded(AppendInput input, s2.v1alpha.AppendInput proto, long meteredBytes) {
+      this.input = input;
+      this.proto = proto;
+      this.meteredBytes = meteredBytes;
+    }
+
+    static Encoded of(StreamClient client, AppendInput batch) {
+      final AppendInput input = client.encoded(batch);
+      return new Encoded(input, input.toProto(client.streamName), input.meteredBytes());
+    }
+  }
+
   static class InflightRecord {
     final AppendInput input;
+    final s2.v1alpha.AppendInput proto;
     final long entryNanos;
     final SettableFuture<AppendOutput> callback;
     final long meteredBytes;
 
     InflightRecord(
         AppendInput input,
+        s2.v1alpha.AppendInput proto,
         long entryNanos,
         SettableFuture<AppendOutput> callback,
         long meteredBytes) {
       this.input = input;
+      this.proto = proto;
       this.entryNanos = entryNanos;
       this.callback = callback;
       this.meteredBytes = meteredBytes;
     }
 
-    static InflightRecord construct(AppendInput input, Long meteredBytes) {
-      return new InflightRecord(input, System.nanoTime(), SettableFuture.create(), meteredBytes);
+    static InflightRecord construct(
+        AppendInput input, s2.v1alpha.AppendInput proto, Long meteredBytes) {
+      return new InflightRecord(
+          input, proto, System.nanoTime(), SettableFuture.create(), meteredBytes);
     }
   }
 
-  class Ack implements Notification {
+  /** Notification from a stream, tagged with the generation of the daemon which opened it. */
+  abstract static class StreamNotification implements Notification {
+    final long generation;
+
+    StreamNotification(long generation) {
+      this.generation = generation;
+    }
+  }
+
+  class Ack extends StreamNotification {
     final AppendOutput output;
 
-    Ack(AppendOutput output) {
+    Ack(long generation, AppendOutput output) {
+      super(generation);
       this.output = output;
     }
   }
@@ -422,15 +774,18 @@ public class ManagedAppendSession implements AutoCloseable {
     }
   }
 
-  class Error implements Notification {
+  class Error extends StreamNotification {
     final Throwable throwable;
 
-    Error(Throwable throwable) {
+    Error(long generation, Throwable throwable) {
+      super(generation);
       this.throwable = throwable;
     }
   }
 
-  class ServerClose implements Notification {
-    ServerClose() {}
+  class ServerClose extends StreamNotification {
+    ServerClose(long generation) {
+      super(generation);
+    }
   }
 }
@@ -2,52 +2,52 @@ package s2.client;
 
 import java.time.Duration;
 import java.util.Optional;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import s2.types.Batch;
+import javax.management.ObjectName;
+import s2.jmx.ManagedReadSessionMXBean;
 import s2.types.ReadOutput;
 import s2.types.ReadSessionRequest;
+import s2.types.RecordCursor;
 
 public class ManagedReadSession implements AutoCloseable {
 
-  private final Semaphore bufferAvailable;
-  private final LinkedBlockingQueue<ReadItem> queue;
+  private final ReadBuffer<ReadOutput> buffer;
   private final AtomicBoolean closed = new AtomicBoolean(false);
   private final ReadSession readSession;
+  private final StreamClient streamClient;
+  private final Optional<ObjectName> mbeanName;
 
   ManagedReadSession(
       StreamClient streamClient, ReadSessionRequest readSessionRequest, Integer maxBufferBytes) {
-    this.queue = new LinkedBlockingQueue<>();
-    this.bufferAvailable = new Semaphore(maxBufferBytes);
+    this.streamClient = streamClient;
+    this.buffer = new ReadBuffer<>(streamClient, maxBufferBytes);
+    // Registered before the read session starts, so that its completion always unregisters it.
+    this.mbeanName = SessionMBeans.register(streamClient, "ManagedReadSession", new MBean());
+    // Batches are charged at their size as read, since decompression may inflate them well beyond
+    // what the server sends at once.
     this.readSession =
-        streamClient.readSession(
+        new ReadSession(
+            streamClient,
             readSessionRequest,
-            resp -> {
+            output -> {
+              final int bytes =
+                  output.getOutputCase() == s2.v1alpha.ReadOutput.OutputCase.BATCH
+                      ? (int) RecordCursor.meteredBytes(output.getBatch())
+                      : 0;
               try {
-                if (resp instanceof Batch) {
-                  final Batch batch = (Batch) resp;
-                  bufferAvailable.acquire((int) batch.meteredBytes());
-                }
-                queue.put(new DataItem(resp));
+                buffer.put(streamClient.decoded(ReadOutput.fromProto(output)), bytes);
               } catch (InterruptedException e) {
-                queue.add(new ErrorItem(e));
+                buffer.fail(e);
               }
             },
-            error -> {
-              try {
-                queue.put(new ErrorItem(error));
-              } catch (InterruptedException e) {
-                queue.add(new ErrorItem(e));
-              }
-            });
+            buffer::fail);
     this.readSession
         .awaitCompletion()
         .addListener(
             () -> {
               this.closed.set(true);
-              this.queue.add(new EndItem());
+              this.buffer.end();
+              SessionMBeans.unregister(mbeanName);
             },
             streamClient.executor);
   }
@@ -57,68 +57,52 @@ public class ManagedReadSession implements AutoCloseable {
   }
 
   public boolean hasNext() {
-    var peeked = queue.peek();
-    if (peeked == null) {
-      return false;
-    } else if (peeked instanceof EndItem) {
-      queue.poll();
-      return false;
-    }
-    return true;
+    return buffer.hasNext();
   }
 
   public Optional<ReadOutput> get() {
-    return getInner(Optional.ofNullable(queue.poll()));
-  }
-
-  private Optional<ReadOutput> getInner(Optional<ReadItem> readItem) {
-    var nextRead =
-        readItem.flatMap(
-            elem -> {
-              if (elem instanceof ErrorItem) {
-                final ErrorItem item = (ErrorItem) elem;
-                throw new RuntimeException(item.error);
-              } else if (elem instanceof EndItem) {
-                return Optional.empty();
-              } else {
-                return Optional.of(((DataItem) elem).readOutput);
-              }
-            });
-    nextRead
-        .map(nr -> (nr instanceof Batch) ? (int) ((Batch) nr).meteredBytes() : 0)
-        .ifPresent(bufferAvailable::release);
-    return nextRead;
+    return buffer.take(output -> output);
   }
 
   public Optional<ReadOutput> get(Duration maxWait) throws InterruptedException {
-    return getInner(Optional.ofNullable(queue.poll(maxWait.toMillis(), TimeUnit.MILLISECONDS)));
+    return buffer.take(maxWait, output -> output);
   }
 
   @Override
   public void close() throws Exception {
     this.closed.set(true);
     this.readSession.close();
+    SessionMBeans.unregister(mbeanName);
   }
 
-  interface ReadItem {}
-
-  static class DataItem implements ReadItem {
-    final ReadOutput readOutput;
+  private final class MBean implements ManagedReadSessionMXBean {
+    @Override
+    public String getStream() {
+      return streamClient.streamName;
+    }
 
-    DataItem(ReadOutput readOutput) {
-      this.readOutput = readOutput;
+    @Override
+    public int getBufferedItems() {
+      return buffer.items();
     }
-  }
 
-  static class ErrorItem implements ReadItem {
-    final Throwable error;
+    @Override
+    public long getBufferedBytes() {
+      return buffer.bytes();
+    }
 
-    ErrorItem(Throwable error) {
-      this.error = error;
+    @Override
+    public boolean isClosed() {
+      return closed.get();
     }
-  }
 
-  static class EndItem implements ReadItem {
-    EndItem() {}
+    @Override
+    public void close() {
+      try {
+        ManagedReadSession.this.close();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
 }
@@ -0,0 +1,132 @@
+package s2.client;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, least-recently-used cache of control plane lookups, whose entries expire a fixed time
+ * after they are loaded.
+ *
+ * <p>Concurrent lookups of a key which is not cached share a single load. Failed loads are not
+ * cached. A cache with a zero TTL is disabled, and always invokes the loader.
+ */
+final class MetadataCache<K, V> {
+
+  private final long ttlNanos;
+  private final LinkedHashMap<K, CachedValue<V>> entries;
+
+  MetadataCache(Duration ttl, int maxEntries) {
+    this.ttlNanos = ttl.toNanos();
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<K, CachedValue<V>> eldest) {
+            return size() > maxEntries;
+          }
+        };
+  }
+
+  ListenableFuture<V> get(K key, Supplier<ListenableFuture<V>> loader) {
+    if (ttlNanos <= 0) {
+      return loader.get();
+    }
+
+    final CachedValue<V> entry;
+    synchronized (this) {
+      final CachedValue<V> existing = entries.get(key);
+      if (existing != null && !existing.isExpired(System.nanoTime(), ttlNanos)) {
+        return Futures.nonCancellationPropagating(existing.value);
+      }
+      entry = new CachedValue<>(SettableFuture.create());
+      entries.put(key, entry);
+    }
+
+    entry.value.addListener(
+        () -> {
+          if (isSuccessful(entry.value)) {
+            entry.loadedNanos = System.nanoTime();
+            entry.loaded = true;
+          } else {
+            remove(key, entry);
+          }
+        },
+        MoreExecutors.directExecutor());
+    entry.value.setFuture(loader.get());
+    return Futures.nonCancellationPropagating(entry.value);
+  }
+
+  /** Cache a value which is known to be current, such as the result of an update. */
+  void put(K key, V value) {
+    if (ttlNanos <= 0) {
+      return;
+    }
+    final CachedValue<V> entry = new CachedValue<>(SettableFuture.create());
+    entry.value.set(value);
+    entry.loadedNanos = System.nanoTime();
+    entry.loaded = true;
+    synchronized (this) {
+      entries.put(key, entry);
+    }
+  }
+
+  synchronized void invalidate(K key) {
+    entries.remove(key);
+  }
+
+  synchronized void invalidateIf(Predicate<K> predicate) {
+    entries.keySet().removeIf(predicate);
+  }
+
+  /**
+   * Run {@code invalidation} when {@code mutation} completes, whether or not it succeeded, before
+   * its outcome is visible to callers.
+   */
+  static <T> ListenableFuture<T> afterMutation(
+      ListenableFuture<T> mutation, Runnable invalidation) {
+    return Futures.whenAllComplete(mutation)
+        .callAsync(
+            () -> {
+              invalidation.run();
+              return mutation;
+            },
+            MoreExecutors.directExecutor());
+  }
+
+  private synchronized void remove(K key, CachedValue<V> entry) {
+    entries.remove(key, entry);
+  }
+
+  private static boolean isSuccessful(ListenableFuture<?> future) {
+    if (future.isCancelled()) {
+      return false;
+    }
+    try {
+      Futures.getDone(future);
+      return true;
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  private static final class CachedValue<V> {
+    final SettableFuture<V> value;
+    volatile boolean loaded = false;
+    volatile long loadedNanos;
+
+    CachedValue(SettableFuture<V> value) {
+      this.value = value;
+    }
+
+    boolean isExpired(long nowNanos, long ttlNanos) {
+      // Loads which are still in flight are shared, rather than expired.
+      return loaded && nowNanos - loadedNanos > ttlNanos;
+    }
+  }
+}
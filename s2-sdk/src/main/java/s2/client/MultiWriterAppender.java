@@ -0,0 +1,228 @@
+package s2.client;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import s2.types.AppendInput;
+import s2.types.AppendOutput;
+import s2.types.AppendRecord;
+import s2.types.StreamPosition;
+
+/**
+ * Appender for one of several writers sharing a stream, which coordinate using optimistic
+ * concurrency control on {@code matchSeqNum}.
+ *
+ * <p>Records submitted while an append is in flight are queued locally, and sent together as the
+ * next batch, up to the maximum batch size. Each batch is sent with {@code matchSeqNum} set to the
+ * tail expected after the previous one. If another writer appended in the meantime, the tail is
+ * refreshed once, and the conflicting batch is resent coalesced with everything queued behind it.
+ * Records from one appender are therefore appended in submission order, without interleaving
+ * records from other writers within a single submission.
+ *
+ * <p>Batches are encoded, rate limited and metered like {@link StreamClient#append} calls. Failures
+ * other than conflicts, including other failed preconditions such as a fencing token mismatch,
+ * leave the outcome of an append unknown or cannot be resolved by resending, so they fail the
+ * affected submissions rather than being retried. Submissions queued behind them are still sent,
+ * after refreshing the tail.
+ */
+public class MultiWriterAppender implements AutoCloseable {
+
+  static final int MAX_BATCH_RECORDS = 1000;
+  static final long MAX_BATCH_BYTES = 1024 * 1024;
+
+  private static final Logger logger = LoggerFactory.getLogger(MultiWriterAppender.class.getName());
+
+  private final StreamClient client;
+
+  private final ArrayDeque<Submission> queue = new ArrayDeque<>();
+  private boolean inflight = false;
+  private boolean accepting = true;
+  private final SettableFuture<Void> drained = SettableFuture.create();
+
+  /** Tail expected after the last batch this appender sent, if known. */
+  private Optional<Long> expectedTail = Optional.empty();
+
+  private int consecutiveConflicts = 0;
+
+  MultiWriterAppender(StreamClient client) {
+    this.client = client;
+  }
+
+  /**
+   * Submit records to be appended after all records previously submitted to this appender.
+   *
+   * @param records the records, which must fit in a single batch
+   * @return future of the position of the records within the stream
+   */
+  public ListenableFuture<AppendOutput> submit(List<AppendRecord> records) {
+    final long meteredBytes = records.stream().mapToLong(AppendRecord::meteredBytes).sum();
+    if (records.isEmpty() || records.size() > MAX_BATCH_RECORDS) {
+      throw new IllegalArgumentException(
+          String.format("records must contain between 1 and %s records", MAX_BATCH_RECORDS));
+    }
+    if (meteredBytes > MAX_BATCH_BYTES) {
+      throw new IllegalArgumentException(
+          String.format(
+              "records would exceed the maximum allowed metered size of 1MiB, currently %s bytes",
+              meteredBytes));
+    }
+    final Submission submission = new Submission(records, meteredBytes);
+    synchronized (this) {
+      if (!accepting) {
+        throw new IllegalStateException("MultiWriterAppender has been closed.");
+      }
+      queue.add(submission);
+    }
+    maybeSend();
+    return submission.output;
+  }
+
+  /**
+   * Stop accepting submissions.
+   *
+   * @return future which completes once every submitted record has been appended, or failed
+   */
+  public ListenableFuture<Void> closeGracefully() {
+    synchronized (this) {
+      accepting = false;
+      if (!inflight && queue.isEmpty()) {
+        drained.set(null);
+      }
+    }
+    return drained;
+  }
+
+  @Override
+  public void close() throws InterruptedException, ExecutionException {
+    closeGracefully().get();
+  }
+
+  /** Send the next batch, if there is one and no batch is in flight. */
+  private void maybeSend() {
+    final List<Submission> batch = new ArrayList<>();
+    final Optional<Long> matchSeqNum;
+    synchronized (this) {
+      if (inflight || queue.isEmpty()) {
+        return;
+      }
+      int records = 0;
+      long bytes = 0;
+      while (!queue.isEmpty()
+          && records + queue.peek().records.size() <= MAX_BATCH_RECORDS
+          && bytes + queue.peek().meteredBytes <= MAX_BATCH_BYTES) {
+        final Submission next = queue.poll();
+        records += next.records.size();
+        bytes += next.meteredBytes;
+        batch.add(next);
+      }
+      inflight = true;
+      matchSeqNum = expectedTail;
+    }
+
+    final ListenableFuture<Long> seqNum =
+        matchSeqNum
+            .map(Futures::immediateFuture)
+            .orElseGet(
+                () ->
+                    Futures.transform(
+                        client.checkTailInner(),
+                        tail -> tail.seqNum,
+                        MoreExecutors.directExecutor()));
+    final ListenableFuture<AppendOutput> output =
+        Futures.transformAsync(
+            seqNum,
+            match ->
+                client.admitted(
+                    toInput(batch, match),
+                    input -> client.sendAppend(input, client.requestDeadline())),
+            MoreExecutors.directExecutor());
+
+    Futures.addCallback(
+        output,
+        new FutureCallback<>() {
+          @Override
+          public void onSuccess(AppendOutput result) {
+            long offset = 0;
+            for (final Submission submission : batch) {
+              submission.output.set(slice(result, offset, submission.records.size()));
+              offset += submission.records.size();
+            }
+            completed(Optional.of(result.end.seqNum), false);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            final boolean conflict = StreamClient.isSeqNumMismatch(t);
+            final boolean requeued;
+            synchronized (MultiWriterAppender.this) {
+              requeued = conflict && consecutiveConflicts < client.config.maxRetries;
+              if (requeued) {
+                logger.debug(
+                    "append conflicted with another writer, conflicts={}",
+                    consecutiveConflicts + 1);
+                // Requeue the batch ahead of anything submitted since, to be coalesced with it.
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                  queue.addFirst(batch.get(i));
+                }
+              }
+            }
+            if (requeued) {
+              completed(Optional.empty(), true);
+              return;
+            }
+            batch.forEach(submission -> submission.output.setException(t));
+            completed(Optional.empty(), false);
+          }
+        },
+        client.executor);
+  }
+
+  private void completed(Optional<Long> tail, boolean conflicted) {
+    synchronized (this) {
+      inflight = false;
+      expectedTail = tail;
+      consecutiveConflicts = conflicted ? consecutiveConflicts + 1 : 0;
+      if (!accepting && queue.isEmpty()) {
+        drained.set(null);
+      }
+    }
+    maybeSend();
+  }
+
+  private static AppendInput toInput(List<Submission> batch, long matchSeqNum) {
+    final List<AppendRecord> records = new ArrayList<>();
+    batch.forEach(submission -> records.addAll(submission.records));
+    return AppendInput.newBuilder().withRecords(records).withMatchSeqNum(matchSeqNum).build();
+  }
+
+  /**
+   * Output of a submission within a batch. Per-record timestamps are not reported, so the batch's
+   * start and end timestamps are used.
+   */
+  private static AppendOutput slice(AppendOutput batch, long offset, int numRecords) {
+    return new AppendOutput(
+        new StreamPosition(batch.start.seqNum + offset, batch.start.timestamp),
+        new StreamPosition(batch.start.seqNum + offset + numRecords, batch.end.timestamp),
+        batch.tail);
+  }
+
+  private static final class Submission {
+    final List<AppendRecord> records;
+    final long meteredBytes;
+    final SettableFuture<AppendOutput> output = SettableFuture.create();
+
+    Submission(List<AppendRecord> records, long meteredBytes) {
+      this.records = records;
+      this.meteredBytes = meteredBytes;
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package s2.client;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import s2.types.AppendInput;
+import s2.types.AppendOutput;
+
+/**
+ * Pipeline which encodes batches in parallel, before appending them in submission order through a
+ * {@link ManagedAppendSession}.
+ *
+ * <p>Each submitted item is turned into a batch by a caller-provided encoder, which is where
+ * serialization, compression, encryption or checksumming belongs. Encoders run on a pool of worker
+ * threads, along with the stream client's own encoding and the conversion of the batch to its wire
+ * form. Encoded batches wait in a reorder buffer until every earlier item has been handed to the
+ * session, so the stream sees items in the order they were submitted, while encoding throughput
+ * scales with the number of workers.
+ *
+ * <p>If an item fails to encode, its future fails and the items after it are still appended. If an
+ * encoded item cannot be handed to the session, for instance because the session's buffer stayed
+ * full for longer than the request timeout, appending the items after it would break submission
+ * order, so they all fail too.
+ *
+ * @param <T> type of the submitted items
+ */
+public class OrderedAppendPipeline<T> implements AutoCloseable {
+
+  /** Items which may be encoding or waiting to be appended, per worker. */
+  static final int PENDING_PER_WORKER = 4;
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(OrderedAppendPipeline.class.getName());
+
+  private final StreamClient client;
+  private final Function<T, AppendInput> encoder;
+  private final ManagedAppendSession session;
+  private final ExecutorService workers;
+  private final Semaphore pending;
+  private final Thread sender;
+  private final SettableFuture<Void> closed = SettableFuture.create();
+
+  // Guarded by this.
+  private final Map<Long, Slot> encoded = new HashMap<>();
+  private long submitted = 0;
+  private boolean accepting = true;
+
+  OrderedAppendPipeline(StreamClient client, Function<T, AppendInput> encoder, int workers) {
+    if (workers <= 0) {
+      throw new IllegalArgumentException("workers must be a positive integer");
+    }
+    this.client = client;
+    this.encoder = encoder;
+    this.session = client.managedAppendSession();
+    final AtomicInteger threads = new AtomicInteger();
+    this.workers =
+        Executors.newFixedThreadPool(
+            workers,
+            runnable -> {
+              final Thread thread =
+                  new Thread(runnable, "s2-append-encoder-" + threads.getAndIncrement());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.pending = new Semaphore(workers * PENDING_PER_WORKER);
+    this.sender = new Thread(this::send, "s2-append-pipeline-sender");
+    this.sender.setDaemon(true);
+    this.sender.start();
+  }
+
+  /**
+   * Submit an item to be encoded and appended after all items previously submitted.
+   *
+   * <p>Blocks while the pipeline already holds as many items as it allows in flight.
+   *
+   * @param item the item
+   * @return future of the output of appending the item's batch
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public ListenableFuture<AppendOutput> submit(T item) throws InterruptedException {
+    pending.acquire();
+    final Slot slot = new Slot();
+    final long index;
+    synchronized (this) {
+      if (!accepting) {
+        pending.release();
+        throw new IllegalStateException("OrderedAppendPipeline has been closed.");
+      }
+      index = submitted++;
+    }
+    workers.execute(
+        () -> {
+          try {
+            slot.encoded = ManagedAppendSession.Encoded.of(client, encoder.apply(item));
+          } catch (Throwable t) {
+            slot.output.setException(t);
+          }
+          synchronized (this) {
+            encoded.put(index, slot);
+            notifyAll();
+          }
+        });
+    return slot.output;
+  }
+
+  /** Hand encoded batches to the session in submission order. */
+  private void send() {
+    long next = 0;
+    // The first failure to hand a batch to the session, after which every later item fails.
+    RuntimeException dropped = null;
+    try {
+      while (true) {
+        final Slot slot;
+        synchronized (this) {
+          while (!encoded.containsKey(next) && (accepting || next < submitted)) {
+            wait();
+          }
+          if (!encoded.containsKey(next)) {
+            break;
+          }
+          slot = encoded.remove(next);
+        }
+        next++;
+        pending.release();
+        if (slot.encoded == null) {
+          continue;
+        }
+        if (dropped != null) {
+          slot.output.setException(
+              new IllegalStateException("an earlier item could not be appended", dropped));
+          continue;
+        }
+        try {
+          slot.output.setFuture(session.submitEncoded(slot.encoded, client.config.requestTimeout));
+        } catch (RuntimeException e) {
+          logger.warn("failed to submit to append session, failing later items", e);
+          dropped = e;
+          slot.output.setException(e);
+        }
+      }
+      closed.setFuture(session.closeGracefully());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.warn("append pipeline sender interrupted");
+      closed.setException(e);
+    } finally {
+      workers.shutdown();
+    }
+  }
+
+  /**
+   * Stop accepting items.
+   *
+   * @return future which completes once every submitted item has been appended, or failed
+   */
+  public ListenableFuture<Void> closeGracefully() {
+    synchronized (this) {
+      accepting = false;
+      notifyAll();
+    }
+    return closed;
+  }
+
+  @Override
+  public void close() throws InterruptedException, ExecutionException {
+    closeGracefully().get();
+  }
+
+  private static final class Slot {
+    final SettableFuture<AppendOutput> output = SettableFuture.create();
+    // Written by a worker before the slot is published under the pipeline's lock.
+    ManagedAppendSession.Encoded encoded;
+  }
+}
@@ -0,0 +1,131 @@
+package s2.client;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import s2.types.Paginated;
+
+/**
+ * Iterator over every element of a paginated listing, which fetches up to a fixed number of pages
+ * ahead of the one being consumed.
+ *
+ * <p>Each page is requested as soon as the page before it arrives, since its cursor is the last
+ * element of that page. Fetches are therefore still sequential, with one round trip per page, but
+ * they overlap with consumption of earlier pages, so a consumer slower than the listing rarely
+ * waits for a page to arrive.
+ */
+final class PrefetchingIterator<T> implements Iterator<T>, AutoCloseable {
+
+  private final Function<String, ListenableFuture<Paginated<T>>> fetch;
+  private final Function<T, String> cursor;
+  private final int prefetchPages;
+
+  // An empty page marks the end of the listing.
+  private final Deque<ListenableFuture<Optional<Paginated<T>>>> pages = new ArrayDeque<>();
+  // The page most recently taken from the queue, which the next one is fetched after when the
+  // queue is empty.
+  private ListenableFuture<Optional<Paginated<T>>> polled;
+  private Iterator<T> current = Collections.emptyIterator();
+  private boolean exhausted = false;
+
+  PrefetchingIterator(
+      Function<String, ListenableFuture<Paginated<T>>> fetch,
+      Function<T, String> cursor,
+      String startAfter,
+      int prefetchPages) {
+    if (prefetchPages < 0) {
+      throw new IllegalArgumentException("prefetchPages must be a non-negative integer");
+    }
+    this.fetch = fetch;
+    this.cursor = cursor;
+    this.prefetchPages = prefetchPages;
+    this.pages.add(
+        Futures.transform(fetch.apply(startAfter), Optional::of, MoreExecutors.directExecutor()));
+    fill();
+  }
+
+  static <T> Stream<T> stream(PrefetchingIterator<T> iterator) {
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(
+                iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .onClose(iterator::close);
+  }
+
+  private void fill() {
+    while (pages.size() <= prefetchPages) {
+      final var last = pages.isEmpty() ? polled : pages.peekLast();
+      pages.add(Futures.transformAsync(last, this::fetchAfter, MoreExecutors.directExecutor()));
+    }
+  }
+
+  private ListenableFuture<Optional<Paginated<T>>> fetchAfter(Optional<Paginated<T>> page) {
+    if (page.isEmpty() || !page.get().hasMore || page.get().elems.isEmpty()) {
+      return Futures.immediateFuture(Optional.empty());
+    }
+    final var elems = page.get().elems;
+    return Futures.transform(
+        fetch.apply(cursor.apply(elems.get(elems.size() - 1))),
+        Optional::of,
+        MoreExecutors.directExecutor());
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!current.hasNext()) {
+      if (exhausted) {
+        return false;
+      }
+      polled = pages.poll();
+      final Optional<Paginated<T>> page = await(polled);
+      if (page.isEmpty()) {
+        close();
+        return false;
+      }
+      current = page.get().elems.iterator();
+      fill();
+    }
+    return true;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.next();
+  }
+
+  /** Cancel any pages which are still being fetched. */
+  @Override
+  public void close() {
+    exhausted = true;
+    pages.forEach(page -> page.cancel(true));
+    pages.clear();
+  }
+
+  private Optional<Paginated<T>> await(ListenableFuture<Optional<Paginated<T>>> page) {
+    try {
+      return page.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      close();
+      throw new RuntimeException(e.getCause());
+    }
+  }
+}
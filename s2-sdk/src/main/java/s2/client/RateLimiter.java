@@ -0,0 +1,141 @@
+package s2.client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Client-side limit on the rate of appended and read data, in metered bytes and records per second.
+ *
+ * <p>A limiter applies to every stream client it is attached to via {@link
+ * StreamClient.StreamClientBuilder#withRateLimiter}. Sharing one limiter between the clients of a
+ * stream, of a basin, or of an entire application therefore limits traffic at that scope, and a
+ * client may be attached to several limiters at once.
+ *
+ * <p>Unary appends are delayed asynchronously until the limiter admits them, while managed append
+ * sessions block {@code submit} for at most its {@code maxWait}. Reads are charged as data arrives,
+ * and slowed by delaying requests for further messages on read sessions, or the next unary read.
+ */
+public final class RateLimiter {
+
+  private final Optional<TokenBucket> bytes;
+  private final Optional<TokenBucket> records;
+
+  private RateLimiter(Optional<TokenBucket> bytes, Optional<TokenBucket> records) {
+    this.bytes = bytes;
+    this.records = records;
+  }
+
+  public static RateLimiterBuilder newBuilder() {
+    return new RateLimiterBuilder();
+  }
+
+  /** Reserve capacity, returning nanoseconds to wait before using it. */
+  static long reserve(List<RateLimiter> limiters, long bytes, long records) {
+    long delayNanos = 0;
+    for (final RateLimiter limiter : limiters) {
+      delayNanos = Math.max(delayNanos, limiter.bytes.map(b -> b.reserve(bytes)).orElse(0L));
+      delayNanos = Math.max(delayNanos, limiter.records.map(r -> r.reserve(records)).orElse(0L));
+    }
+    return delayNanos;
+  }
+
+  /**
+   * Reserve capacity only if every limiter can admit it within {@code maxWaitNanos}.
+   *
+   * @return nanoseconds to wait before using the capacity, or -1 if nothing was reserved
+   */
+  static long tryReserve(List<RateLimiter> limiters, long bytes, long records, long maxWaitNanos) {
+    final List<Runnable> refunds = new ArrayList<>();
+    long delayNanos = 0;
+    for (final RateLimiter limiter : limiters) {
+      final long bytesDelay = tryReserve(limiter.bytes, bytes, maxWaitNanos, refunds);
+      final long recordsDelay =
+          bytesDelay < 0 ? -1 : tryReserve(limiter.records, records, maxWaitNanos, refunds);
+      if (recordsDelay < 0) {
+        refunds.forEach(Runnable::run);
+        return -1;
+      }
+      delayNanos = Math.max(delayNanos, Math.max(bytesDelay, recordsDelay));
+    }
+    return delayNanos;
+  }
+
+  /** Return capacity reserved by {@link #tryReserve} which will not be used. */
+  static void refund(List<RateLimiter> limiters, long bytes, long records) {
+    for (final RateLimiter limiter : limiters) {
+      limiter.bytes.ifPresent(b -> b.refund(bytes));
+      limiter.records.ifPresent(r -> r.refund(records));
+    }
+  }
+
+  private static long tryReserve(
+      Optional<TokenBucket> bucket, long amount, long maxWaitNanos, List<Runnable> refunds) {
+    if (bucket.isEmpty()) {
+      return 0;
+    }
+    final long delayNanos = bucket.get().tryReserve(amount, maxWaitNanos);
+    if (delayNanos >= 0) {
+      refunds.add(() -> bucket.get().refund(amount));
+    }
+    return delayNanos;
+  }
+
+  public static final class RateLimiterBuilder {
+    private Optional<Long> bytesPerSecond = Optional.empty();
+    private Optional<Long> recordsPerSecond = Optional.empty();
+    private Optional<Duration> burst = Optional.empty();
+
+    public RateLimiterBuilder withBytesPerSecond(long bytesPerSecond) {
+      this.bytesPerSecond = Optional.of(bytesPerSecond);
+      return this;
+    }
+
+    public RateLimiterBuilder withRecordsPerSecond(long recordsPerSecond) {
+      this.recordsPerSecond = Optional.of(recordsPerSecond);
+      return this;
+    }
+
+    /**
+     * How much unused capacity may accumulate, expressed as a duration at the configured rates.
+     * Defaults to one second.
+     *
+     * @param burst the burst duration
+     * @return the builder
+     */
+    public RateLimiterBuilder withBurst(Duration burst) {
+      this.burst = Optional.of(burst);
+      return this;
+    }
+
+    public RateLimiter build() {
+      validate();
+      final double burstSeconds = this.burst.orElse(Duration.ofSeconds(1)).toNanos() / 1e9;
+      return new RateLimiter(
+          this.bytesPerSecond.map(rate -> new TokenBucket(rate, rate * burstSeconds)),
+          this.recordsPerSecond.map(rate -> new TokenBucket(rate, rate * burstSeconds)));
+    }
+
+    private void validate() {
+      this.bytesPerSecond.ifPresent(
+          rate -> {
+            if (rate <= 0) {
+              throw new IllegalArgumentException("bytesPerSecond must be a positive integer");
+            }
+          });
+      this.recordsPerSecond.ifPresent(
+          rate -> {
+            if (rate <= 0) {
+              throw new IllegalArgumentException("recordsPerSecond must be a positive integer");
+            }
+          });
+      this.burst.ifPresent(
+          burst -> {
+            if (burst.isNegative() || burst.isZero()) {
+              throw new IllegalArgumentException("burst must be a positive duration");
+            }
+          });
+    }
+  }
+}
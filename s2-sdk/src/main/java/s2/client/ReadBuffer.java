@@ -0,0 +1,138 @@
+package s2.client;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue of what a read session has received, in read order, for a consumer to take from. Shared by
+ * {@link ManagedReadSession} and {@link DecodingReadSession}.
+ *
+ * <p>Values count their bytes against the buffer from when they are put until they have been taken,
+ * so putting blocks the read session while the consumer is behind.
+ *
+ * @param <V> type of the buffered values
+ */
+final class ReadBuffer<V> {
+
+  /** Work done on a value as it is taken, before its bytes are released. */
+  interface Taker<V, R, E extends Exception> {
+    R take(V value) throws E;
+  }
+
+  private final StreamClient streamClient;
+  private final int maxBytes;
+  private final Semaphore available;
+  private final LinkedBlockingQueue<Item<V>> queue = new LinkedBlockingQueue<>();
+
+  ReadBuffer(StreamClient streamClient, int maxBytes) {
+    this.streamClient = streamClient;
+    this.maxBytes = maxBytes;
+    this.available = new Semaphore(maxBytes);
+  }
+
+  /**
+   * Add a value, waiting for the buffer to have room for its bytes. A value larger than the whole
+   * buffer is charged as filling it, so that it waits for the buffer to empty rather than forever.
+   */
+  void put(V value, int bytes) throws InterruptedException {
+    final int charged = Math.min(bytes, maxBytes);
+    available.acquire(charged);
+    reportBytes();
+    queue.put(new DataItem<>(value, charged));
+  }
+
+  /** Add a failure, which is thrown to the consumer once it reaches it. */
+  void fail(Throwable error) {
+    queue.add(new ErrorItem<>(error));
+  }
+
+  /** Mark the end of the session's values. */
+  void end() {
+    queue.add(new EndItem<>());
+  }
+
+  boolean hasNext() {
+    var peeked = queue.peek();
+    if (peeked == null) {
+      return false;
+    } else if (peeked instanceof EndItem) {
+      queue.poll();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Take the next value, if one has been put.
+   *
+   * @return the taker's result, or empty if no value has been put or the session has ended
+   * @throws RuntimeException wrapping a failure of the session, if that is next
+   */
+  <R, E extends Exception> Optional<R> take(Taker<V, R, E> taker) throws E {
+    return take(Optional.ofNullable(queue.poll()), taker);
+  }
+
+  /** Take the next value as {@link #take(Taker)} does, waiting up to {@code maxWait} for one. */
+  <R, E extends Exception> Optional<R> take(Duration maxWait, Taker<V, R, E> taker)
+      throws E, InterruptedException {
+    return take(Optional.ofNullable(queue.poll(maxWait.toMillis(), TimeUnit.MILLISECONDS)), taker);
+  }
+
+  private <R, E extends Exception> Optional<R> take(Optional<Item<V>> item, Taker<V, R, E> taker)
+      throws E {
+    if (item.isEmpty() || item.get() instanceof EndItem) {
+      return Optional.empty();
+    }
+    if (item.get() instanceof ErrorItem) {
+      throw new RuntimeException(((ErrorItem<V>) item.get()).error);
+    }
+    final DataItem<V> data = (DataItem<V>) item.get();
+    try {
+      return Optional.of(taker.take(data.value));
+    } finally {
+      available.release(data.bytes);
+      reportBytes();
+    }
+  }
+
+  /** Values, failures and the end marker not yet taken. */
+  int items() {
+    return queue.size();
+  }
+
+  /** Bytes of values not yet taken. */
+  long bytes() {
+    return maxBytes - available.availablePermits();
+  }
+
+  private void reportBytes() {
+    streamClient.config.metrics.readBufferBytes(streamClient.streamName, bytes());
+  }
+
+  interface Item<V> {}
+
+  static final class DataItem<V> implements Item<V> {
+    final V value;
+    final int bytes;
+
+    DataItem(V value, int bytes) {
+      this.value = value;
+      this.bytes = bytes;
+    }
+  }
+
+  static final class ErrorItem<V> implements Item<V> {
+    final Throwable error;
+
+    ErrorItem(Throwable error) {
+      this.error = error;
+    }
+  }
+
+  static final class EndItem<V> implements Item<V> {
+    EndItem() {}
+  }
+}
@@ -4,20 +4,30 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.grpc.Status;
-import io.grpc.stub.StreamObserver;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import java.time.Duration;
+import java.util.Optional;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import javax.management.ObjectName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import s2.types.Batch;
-import s2.types.ReadOutput;
+import s2.jfr.HeartbeatTimeoutEvent;
+import s2.jfr.SessionRetryEvent;
+import s2.jmx.ReadSessionMXBean;
+import s2.metrics.Metrics;
 import s2.types.ReadSessionRequest;
+import s2.types.RecordCursor;
 import s2.types.Start;
+import s2.types.StreamPosition;
 import s2.v1alpha.ReadSessionResponse;
 
 public class ReadSession implements AutoCloseable {
@@ -36,49 +46,97 @@ public class ReadSession implements AutoCloseable {
 
   // Liveness timer.
   final AtomicLong lastEvent;
+  // When rate limiting last stopped holding back requests for more messages, or will stop if it
+  // still is. The server cannot send heartbeats until then, so the deadline runs from here too.
+  final AtomicLong pausedUntil;
   final ListenableFuture<Void> livenessDaemon;
 
-  final Consumer<ReadOutput> onResponse;
+  /** Receives each output, after the session's own bookkeeping. */
+  final Consumer<s2.v1alpha.ReadOutput> onOutput;
+
   final Consumer<Throwable> onError;
 
   final ReadSessionRequest request;
   final ListenableFuture<Void> daemon;
 
+  /** Call currently streaming responses, so that it can be cancelled to force a reconnect. */
+  private final AtomicReference<ClientCallStreamObserver<?>> currentCall = new AtomicReference<>();
+
+  /** Set when a reconnect is forced, so the resulting failure is retried unconditionally. */
+  private final AtomicBoolean reconnectRequested = new AtomicBoolean(false);
+
+  private final Optional<ObjectName> mbeanName;
+
   ReadSession(
       StreamClient client,
       ReadSessionRequest request,
-      Consumer<ReadOutput> onResponse,
+      Consumer<s2.v1alpha.ReadOutput> onOutput,
       Consumer<Throwable> onError) {
     this.executor = client.executor;
     this.client = client;
-    this.onResponse = onResponse;
+    this.onOutput = onOutput;
     this.onError = onError;
     this.request = request;
     this.nextStart = new AtomicReference<>(request.start);
     this.remainingAttempts = new AtomicInteger(client.config.maxRetries);
     this.lastEvent = new AtomicLong(System.nanoTime());
+    this.pausedUntil = new AtomicLong(lastEvent.get());
 
     this.livenessDaemon = request.heartbeats ? livenessDaemon() : Futures.immediateFuture(null);
     this.daemon = this.retrying();
+    this.mbeanName = SessionMBeans.register(client, "ReadSession", new MBean());
+    this.daemon.addListener(() -> SessionMBeans.unregister(mbeanName), executor);
   }
 
+  /**
+   * Stream outputs to {@code innerOnOutput}, which returns how many nanoseconds to wait before
+   * reading more.
+   */
   private ListenableFuture<Void> readSessionInner(
-      ReadSessionRequest updatedRequest, Consumer<ReadOutput> innerOnResponse) {
+      ReadSessionRequest updatedRequest, ToLongFunction<s2.v1alpha.ReadOutput> innerOnOutput) {
 
     SettableFuture<Void> fut = SettableFuture.create();
 
     this.client.asyncStub.readSession(
         updatedRequest.toProto(this.client.streamName),
-        new StreamObserver<ReadSessionResponse>() {
+        new ClientResponseObserver<s2.v1alpha.ReadSessionRequest, ReadSessionResponse>() {
+
+          // Only set when rate limited, in which case messages are requested one at a time.
+          private ClientCallStreamObserver<s2.v1alpha.ReadSessionRequest> flowControl;
+
+          @Override
+          public void beforeStart(
+              ClientCallStreamObserver<s2.v1alpha.ReadSessionRequest> requestStream) {
+            currentCall.set(requestStream);
+            if (!client.rateLimiters.isEmpty()) {
+              requestStream.disableAutoInboundFlowControl();
+              this.flowControl = requestStream;
+            }
+          }
 
           @Override
           public void onNext(ReadSessionResponse value) {
             lastEvent.set(System.nanoTime());
+            long delayNanos = 0;
             if (value.hasOutput()) {
-              innerOnResponse.accept(ReadOutput.fromProto(value.getOutput()));
+              delayNanos = innerOnOutput.applyAsLong(value.getOutput());
             } else {
               logger.trace("heartbeat");
             }
+            if (flowControl != null) {
+              if (delayNanos == 0) {
+                flowControl.request(1);
+              } else {
+                pausedUntil.set(System.nanoTime() + delayNanos);
+                executor.schedule(
+                    () -> {
+                      pausedUntil.set(System.nanoTime());
+                      flowControl.request(1);
+                    },
+                    delayNanos,
+                    TimeUnit.NANOSECONDS);
+              }
+            }
           }
 
           @Override
@@ -104,12 +162,19 @@ public class ReadSession implements AutoCloseable {
   }
 
   private void scheduleLivenessCheck(SettableFuture<Void> livenessFuture) {
-    final long delay = (lastEvent.get() + HEARTBEAT_THRESHOLD_NANOS) - System.nanoTime();
+    final long since = Math.max(lastEvent.get(), pausedUntil.get());
+    final long delay = (since + HEARTBEAT_THRESHOLD_NANOS) - System.nanoTime();
 
     logger.trace(
         "Checking liveness. Next deadline: {} seconds.",
         TimeUnit.SECONDS.convert(delay, TimeUnit.NANOSECONDS));
     if (delay <= 0) {
+      final HeartbeatTimeoutEvent event = new HeartbeatTimeoutEvent();
+      if (event.shouldCommit()) {
+        event.stream = client.streamName;
+        event.sinceLastEvent = System.nanoTime() - lastEvent.get();
+        event.commit();
+      }
       this.onError.accept(
           Status.DEADLINE_EXCEEDED
               .withDescription("ReadSession hit local heartbeat deadline")
@@ -137,27 +202,56 @@ public class ReadSession implements AutoCloseable {
     return Futures.catchingAsync(
         readSessionInner(
             request.update(nextStart.get(), consumedRecords.get(), consumedBytes.get()),
-            resp -> {
-              if (resp instanceof Batch) {
-                final Batch batch = (Batch) resp;
-                var lastPosition = batch.lastPosition();
-                lastPosition.ifPresent(v -> nextStart.set(Start.seqNum(v.seqNum + 1)));
-                consumedRecords.addAndGet(batch.sequencedRecordBatch.records.size());
-                consumedBytes.addAndGet(batch.meteredBytes());
+            output -> {
+              long delayNanos = 0;
+              if (output.getOutputCase() == s2.v1alpha.ReadOutput.OutputCase.BATCH) {
+                final s2.v1alpha.SequencedRecordBatch batch = output.getBatch();
+                final int records = batch.getRecordsCount();
+                final long bytes = RecordCursor.meteredBytes(batch);
+                if (records > 0) {
+                  final s2.v1alpha.SequencedRecord last = batch.getRecords(records - 1);
+                  nextStart.set(Start.seqNum(last.getSeqNum() + 1));
+                  client.tailCache.observe(
+                      new StreamPosition(last.getSeqNum() + 1, last.getTimestamp()));
+                }
+                consumedRecords.addAndGet(records);
+                consumedBytes.addAndGet(bytes);
+                client.config.metrics.recordsRead(client.streamName, records, bytes);
+                delayNanos = client.chargeRead(bytes, records);
+              }
+              if (client.config.metrics != Metrics.NOOP) {
+                reportLag();
               }
               this.remainingAttempts.set(client.config.maxRetries);
-              this.onResponse.accept(resp);
+              this.onOutput.accept(output);
+              return delayNanos;
             }),
         Throwable.class,
         t -> {
+          if (reconnectRequested.getAndSet(false)) {
+            logger.info("readSession reconnecting on request");
+            return retrying();
+          }
           var status = Status.fromThrowable(t);
           var currentRemainingAttempts = remainingAttempts.getAndDecrement();
-          if (currentRemainingAttempts > 0 && BaseClient.retryableStatus(status)) {
+          final Optional<Duration> delay =
+              client.retryDelay(
+                  t, Math.max(0, client.config.maxRetries - currentRemainingAttempts));
+          if (currentRemainingAttempts > 0
+              && BaseClient.retryableStatus(status)
+              && delay.isPresent()) {
             logger.warn(
-                "readSession retrying after {} delay, status={}",
-                client.config.retryDelay,
-                status.getCode());
-            return Futures.scheduleAsync(this::retrying, client.config.retryDelay, this.executor);
+                "readSession retrying after {} delay, status={}", delay.get(), status.getCode());
+            client.config.metrics.sessionReconnected(client.streamName, Metrics.SessionType.READ);
+            final SessionRetryEvent event = new SessionRetryEvent();
+            if (event.shouldCommit()) {
+              event.stream = client.streamName;
+              event.session = "read";
+              event.status = status.getCode().name();
+              event.delay = delay.get().toNanos();
+              event.commit();
+            }
+            return Futures.scheduleAsync(this::retrying, delay.get(), this.executor);
           } else {
             logger.warn("readSession failed, status={}", status.getCode());
             onError.accept(t);
@@ -168,6 +262,20 @@ public class ReadSession implements AutoCloseable {
         executor);
   }
 
+  /** Report the distance to the tail, if the session is reading by sequence number. */
+  private void reportLag() {
+    final Start start = nextStart.get();
+    if (start instanceof Start.SeqNum) {
+      client
+          .tailCache
+          .get(Long.MAX_VALUE)
+          .ifPresent(
+              tail ->
+                  client.config.metrics.readLag(
+                      client.streamName, Math.max(0, tail.seqNum - ((Start.SeqNum) start).value)));
+    }
+  }
+
   public ListenableFuture<Void> awaitCompletion() {
     return this.daemon;
   }
@@ -177,4 +285,62 @@ public class ReadSession implements AutoCloseable {
     this.livenessDaemon.cancel(true);
     this.daemon.cancel(true);
   }
+
+  private final class MBean implements ReadSessionMXBean {
+    @Override
+    public String getStream() {
+      return client.streamName;
+    }
+
+    @Override
+    public String getNextStart() {
+      final Start start = nextStart.get();
+      if (start instanceof Start.SeqNum) {
+        return "seqNum=" + ((Start.SeqNum) start).value;
+      } else if (start instanceof Start.Timestamp) {
+        return "timestamp=" + ((Start.Timestamp) start).value;
+      } else {
+        return "tailOffset=" + ((Start.TailOffset) start).value;
+      }
+    }
+
+    @Override
+    public long getConsumedRecords() {
+      return consumedRecords.get();
+    }
+
+    @Override
+    public long getConsumedBytes() {
+      return consumedBytes.get();
+    }
+
+    @Override
+    public int getRemainingAttempts() {
+      return remainingAttempts.get();
+    }
+
+    @Override
+    public long getMillisSinceLastEvent() {
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastEvent.get());
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return daemon.isDone();
+    }
+
+    @Override
+    public void forceReconnect() {
+      final ClientCallStreamObserver<?> call = currentCall.get();
+      if (call != null && !daemon.isDone()) {
+        reconnectRequested.set(true);
+        call.cancel("reconnect forced", null);
+      }
+    }
+
+    @Override
+    public void close() {
+      ReadSession.this.close();
+    }
+  }
 }
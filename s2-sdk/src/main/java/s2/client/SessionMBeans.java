@@ -0,0 +1,56 @@
+package s2.client;
+
+import java.lang.management.ManagementFactory;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Registration of sessions with the platform MBean server, if enabled by {@code Config#jmx}. */
+final class SessionMBeans {
+
+  private static final Logger logger = LoggerFactory.getLogger(SessionMBeans.class.getName());
+
+  private static final AtomicLong nextId = new AtomicLong();
+
+  private SessionMBeans() {}
+
+  /**
+   * Register a session's MBean.
+   *
+   * @return the name it was registered under, or empty if JMX is disabled or registration failed
+   */
+  static Optional<ObjectName> register(StreamClient client, String type, Object mbean) {
+    if (!client.config.jmx) {
+      return Optional.empty();
+    }
+    try {
+      final ObjectName name =
+          new ObjectName(
+              String.format(
+                  "s2:type=%s,basin=%s,stream=%s,id=%s",
+                  type,
+                  ObjectName.quote(client.basin),
+                  ObjectName.quote(client.streamName),
+                  nextId.incrementAndGet()));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, name);
+      return Optional.of(name);
+    } catch (JMException e) {
+      logger.warn("failed to register {} MBean", type, e);
+      return Optional.empty();
+    }
+  }
+
+  static void unregister(Optional<ObjectName> name) {
+    name.ifPresent(
+        registered -> {
+          try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+          } catch (JMException e) {
+            logger.debug("MBean {} was already unregistered", registered);
+          }
+        });
+  }
+}
@@ -0,0 +1,452 @@
+package s2.client;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import s2.config.SpillLogConfig;
+
+/**
+ * Append-only log of opaque entries, stored in memory-mapped segment files.
+ *
+ * <p>Each entry is identified by an index, assigned in append order. Entries become readable once
+ * they have been flushed to disk, which a background thread does for all pending entries at once,
+ * at most {@link SpillLogConfig#flushInterval} after the first of them was appended. Segments are
+ * deleted once every entry in them has been acknowledged.
+ *
+ * <p>Entries are framed as {@code [length][crc32][bytes]}. On open, segments are scanned and
+ * anything after the first torn or corrupt entry is discarded. The first unacknowledged index is
+ * checkpointed without being flushed, so acknowledged entries may be read again after a crash.
+ */
+final class SpillLog implements AutoCloseable {
+
+  static final int HEADER_BYTES = 8;
+
+  private static final Logger logger = LoggerFactory.getLogger(SpillLog.class.getName());
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String CHECKPOINT = "checkpoint";
+
+  private final Path directory;
+  private final int segmentBytes;
+  private final long flushIntervalNanos;
+  private final FileChannel checkpoint;
+
+  // Ordered by first index. Entries are appended to the last one.
+  private final List<Segment> segments = new ArrayList<>();
+  private long nextIndex;
+  private long flushedIndex;
+  private long ackedIndex;
+  private List<SettableFuture<Void>> pendingFlush = new ArrayList<>();
+  private boolean closed = false;
+
+  // Read cursor.
+  private long readIndex;
+  private Segment readSegment = null;
+  private int readPosition;
+
+  private final Thread flusher = new Thread(this::runFlusher, "s2-spill-log-flusher");
+
+  private SpillLog(SpillLogConfig config, FileChannel checkpoint) {
+    this.directory = config.directory;
+    this.segmentBytes = config.segmentBytes;
+    this.flushIntervalNanos = config.flushInterval.toNanos();
+    this.checkpoint = checkpoint;
+    this.flusher.setDaemon(true);
+  }
+
+  /** Open the log in the configured directory, recovering any entries left there. */
+  static SpillLog open(SpillLogConfig config) throws IOException {
+    Files.createDirectories(config.directory);
+    final SpillLog log =
+        new SpillLog(
+            config,
+            FileChannel.open(
+                config.directory.resolve(CHECKPOINT),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+    log.recover();
+    log.flusher.start();
+    return log;
+  }
+
+  private void recover() throws IOException {
+    final ByteBuffer checkpointBytes = ByteBuffer.allocate(Long.BYTES);
+    final long checkpointIndex =
+        checkpoint.read(checkpointBytes, 0) == Long.BYTES ? checkpointBytes.getLong(0) : 0;
+
+    final List<Path> paths;
+    try (Stream<Path> files = Files.list(directory)) {
+      paths =
+          files
+              .filter(
+                  path -> {
+                    final String name = path.getFileName().toString();
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                  })
+              .sorted()
+              .collect(Collectors.toList());
+    }
+    long endIndex = checkpointIndex;
+    for (final Path path : paths) {
+      final Segment segment = Segment.recover(path);
+      if (segment.entries == 0) {
+        endIndex = Math.max(endIndex, segment.firstIndex);
+        segment.delete();
+        continue;
+      }
+      final Segment previous = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+      if (previous != null && previous.firstIndex + previous.entries != segment.firstIndex) {
+        logger.warn(
+            "discarding spill log segment {}, which does not follow the segment before it", path);
+        segment.delete();
+        continue;
+      }
+      segments.add(segment);
+      endIndex = Math.max(endIndex, segment.firstIndex + segment.entries);
+    }
+    while (segments.size() > 1 && segments.get(1).firstIndex <= checkpointIndex) {
+      segments.remove(0).delete();
+    }
+    if (segments.isEmpty()) {
+      segments.add(Segment.create(directory, endIndex, segmentBytes));
+    }
+
+    final Segment last = segments.get(segments.size() - 1);
+    this.nextIndex = last.firstIndex + last.entries;
+    this.flushedIndex = nextIndex;
+    this.ackedIndex = Math.min(Math.max(checkpointIndex, segments.get(0).firstIndex), nextIndex);
+    this.readIndex = ackedIndex;
+    if (nextIndex > ackedIndex) {
+      logger.info("recovered {} unacknowledged spill log entries", nextIndex - ackedIndex);
+    }
+  }
+
+  /**
+   * Append an entry.
+   *
+   * @param entry the entry's bytes
+   * @return future which completes once the entry has been flushed to disk
+   * @throws IOException if a new segment could not be created
+   */
+  synchronized ListenableFuture<Void> append(byte[] entry) throws IOException {
+    if (closed) {
+      throw new IllegalStateException("SpillLog has been closed.");
+    }
+    if (HEADER_BYTES + entry.length > segmentBytes) {
+      throw new IllegalArgumentException(
+          String.format("entry of %s bytes does not fit in a segment", entry.length));
+    }
+    Segment active = segments.get(segments.size() - 1);
+    if (!active.fits(entry.length)) {
+      active = Segment.create(directory, nextIndex, segmentBytes);
+      segments.add(active);
+    }
+    active.write(entry);
+    nextIndex++;
+
+    final SettableFuture<Void> flushed = SettableFuture.create();
+    pendingFlush.add(flushed);
+    notifyAll();
+    return flushed;
+  }
+
+  /**
+   * Read the entry after the one last read, waiting for it to be flushed if necessary.
+   *
+   * @param timeout maximum time to wait
+   * @return the entry, or empty if none was flushed within the timeout or the log was closed
+   */
+  synchronized Optional<Entry> next(Duration timeout) throws InterruptedException {
+    final long deadlineNanos = System.nanoTime() + timeout.toNanos();
+    while (readIndex >= flushedIndex) {
+      final long remainingNanos = deadlineNanos - System.nanoTime();
+      if (closed || remainingNanos <= 0) {
+        return Optional.empty();
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+    }
+    if (readSegment == null || readIndex >= readSegment.firstIndex + readSegment.entries) {
+      seek();
+    }
+    final byte[] bytes = readSegment.read(readPosition);
+    readPosition += HEADER_BYTES + bytes.length;
+    return Optional.of(new Entry(readIndex++, bytes));
+  }
+
+  /** Move the read cursor back to the first unacknowledged entry. */
+  synchronized void rewind() {
+    readIndex = ackedIndex;
+    readSegment = null;
+  }
+
+  /**
+   * Acknowledge every entry up to and including an index, deleting segments which no longer hold
+   * any unacknowledged entries.
+   *
+   * @param index the index of the last entry to acknowledge
+   * @throws IOException if the checkpoint could not be written
+   */
+  synchronized void acknowledge(long index) throws IOException {
+    if (index < ackedIndex) {
+      return;
+    }
+    ackedIndex = index + 1;
+    checkpoint.write(ByteBuffer.allocate(Long.BYTES).putLong(0, ackedIndex), 0);
+    while (segments.size() > 1 && segments.get(1).firstIndex <= ackedIndex) {
+      segments.remove(0).delete();
+    }
+  }
+
+  /** Number of entries appended but not yet acknowledged. */
+  synchronized long unacknowledged() {
+    return nextIndex - ackedIndex;
+  }
+
+  /** Stop accepting entries, and flush any which are still pending. */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      notifyAll();
+    }
+    try {
+      flusher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      for (final Segment segment : segments) {
+        segment.channel.close();
+      }
+      checkpoint.close();
+    }
+  }
+
+  private void runFlusher() {
+    try {
+      while (true) {
+        synchronized (this) {
+          while (pendingFlush.isEmpty() && !closed) {
+            wait();
+          }
+          if (pendingFlush.isEmpty()) {
+            return;
+          }
+        }
+        // Give later entries a chance to share this flush.
+        TimeUnit.NANOSECONDS.sleep(flushIntervalNanos);
+        flush();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void flush() {
+    final List<Segment> unflushed;
+    final List<MappedByteBuffer> buffers;
+    final long targetIndex;
+    final List<SettableFuture<Void>> flushed;
+    synchronized (this) {
+      unflushed = segments.stream().filter(s -> !s.flushed).collect(Collectors.toList());
+      buffers = unflushed.stream().map(s -> s.buffer).collect(Collectors.toList());
+      targetIndex = nextIndex;
+      flushed = pendingFlush;
+      pendingFlush = new ArrayList<>();
+    }
+    try {
+      for (int i = 0; i < unflushed.size(); i++) {
+        force(unflushed.get(i), buffers.get(i));
+      }
+    } catch (RuntimeException e) {
+      logger.error("failed to flush spill log", e);
+      flushed.forEach(future -> future.setException(e));
+      return;
+    }
+    synchronized (this) {
+      // Only segments which were already sealed are known to be complete on disk.
+      for (int i = 0; i < unflushed.size() - 1; i++) {
+        unflushed.get(i).flushed = true;
+      }
+      flushedIndex = Math.max(flushedIndex, targetIndex);
+      notifyAll();
+    }
+    flushed.forEach(future -> future.set(null));
+  }
+
+  /**
+   * Force a segment's buffer to disk. The segment may be deleted by a concurrent acknowledgement,
+   * in which case its entries no longer need flushing, and a failure to force it is ignored.
+   */
+  private void force(Segment segment, MappedByteBuffer buffer) {
+    try {
+      buffer.force();
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        if (segment.buffer != null) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  private void seek() {
+    Segment segment = segments.get(0);
+    for (final Segment candidate : segments) {
+      if (candidate.firstIndex <= readIndex) {
+        segment = candidate;
+      }
+    }
+    int position = 0;
+    for (long index = segment.firstIndex; index < readIndex; index++) {
+      position += HEADER_BYTES + segment.buffer.getInt(position);
+    }
+    readSegment = segment;
+    readPosition = position;
+  }
+
+  static final class Entry {
+    final long index;
+    final byte[] bytes;
+
+    Entry(long index, byte[] bytes) {
+      this.index = index;
+      this.bytes = bytes;
+    }
+  }
+
+  private static final class Segment {
+    final long firstIndex;
+    final Path path;
+    final FileChannel channel;
+    // Cleared on deletion, see delete().
+    MappedByteBuffer buffer;
+    int writePosition = 0;
+    long entries = 0;
+    boolean flushed = false;
+
+    private Segment(long firstIndex, Path path, FileChannel channel, int size) throws IOException {
+      this.firstIndex = firstIndex;
+      this.path = path;
+      this.channel = channel;
+      this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    static Segment create(Path directory, long firstIndex, int segmentBytes) throws IOException {
+      final Path path =
+          directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstIndex, SEGMENT_SUFFIX));
+      return new Segment(
+          firstIndex,
+          path,
+          FileChannel.open(
+              path,
+              StandardOpenOption.CREATE_NEW,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE),
+          segmentBytes);
+    }
+
+    /** Open an existing segment, and find the end of its valid entries. */
+    static Segment recover(Path path) throws IOException {
+      final String name = path.getFileName().toString();
+      final long firstIndex =
+          Long.parseLong(
+              name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+      final FileChannel channel =
+          FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      final Segment segment = new Segment(firstIndex, path, channel, (int) channel.size());
+      segment.scan();
+      return segment;
+    }
+
+    private void scan() {
+      final int capacity = buffer.capacity();
+      while (writePosition + HEADER_BYTES <= capacity) {
+        final int length = buffer.getInt(writePosition);
+        if (length <= 0 || length > capacity - writePosition - HEADER_BYTES) {
+          break;
+        }
+        final byte[] bytes = read(writePosition);
+        if (crc(bytes) != buffer.getInt(writePosition + Integer.BYTES)) {
+          break;
+        }
+        writePosition += HEADER_BYTES + length;
+        entries++;
+      }
+      // Segments are never appended to again after a restart, except for the last one.
+      flushed = true;
+      if (writePosition + HEADER_BYTES <= capacity && buffer.getInt(writePosition) != 0) {
+        logger.warn("truncating torn spill log entry in {} at offset {}", path, writePosition);
+        final ByteBuffer tail = buffer.duplicate();
+        tail.position(writePosition);
+        while (tail.hasRemaining()) {
+          tail.put((byte) 0);
+        }
+        flushed = false;
+      }
+    }
+
+    boolean fits(int length) {
+      return writePosition + HEADER_BYTES + length <= buffer.capacity();
+    }
+
+    void write(byte[] entry) {
+      final ByteBuffer target = buffer.duplicate();
+      target.position(writePosition);
+      target.putInt(entry.length).putInt(crc(entry)).put(entry);
+      writePosition = target.position();
+      entries++;
+      flushed = false;
+    }
+
+    byte[] read(int position) {
+      final ByteBuffer source = buffer.duplicate();
+      source.position(position);
+      final byte[] bytes = new byte[source.getInt()];
+      source.position(position + HEADER_BYTES);
+      source.get(bytes);
+      return bytes;
+    }
+
+    /**
+     * Delete the segment's file.
+     *
+     * <p>There is no supported way to unmap a buffer before it is garbage collected, so the
+     * reference to it is dropped instead. Its pages stay mapped until the buffer is collected,
+     * which on POSIX systems does not prevent the file from being unlinked, but does delay its
+     * space being reclaimed. The segment must not be read after it has been deleted.
+     */
+    void delete() throws IOException {
+      buffer = null;
+      channel.close();
+      Files.deleteIfExists(path);
+    }
+
+    private static int crc(byte[] bytes) {
+      final CRC32 crc = new CRC32();
+      crc.update(bytes);
+      return (int) crc.getValue();
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package s2.client;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import s2.config.SpillLogConfig;
+import s2.types.AppendInput;
+import s2.types.AppendOutput;
+
+/**
+ * Appender which writes batches to a local {@link SpillLogConfig spill log} before sending them to
+ * S2, so that appends can continue to be accepted while S2 is unreachable.
+ *
+ * <p>A submitted batch is acknowledged once it is durable on local disk. A background thread drains
+ * the log in order through a {@link ManagedAppendSession}, and entries are only discarded from the
+ * log once S2 has acknowledged them. If the session fails, a new one is started after {@link
+ * s2.config.Config#retryDelay}, resuming from the first unacknowledged entry. Entries left in the
+ * log when the appender is closed, or when the process exits, are sent by the next appender opened
+ * on the same directory.
+ *
+ * <p>Delivery is at-least-once: a batch which S2 received, but whose acknowledgement was lost to a
+ * session failure or crash, is sent again.
+ *
+ * <p>If the drainer stops because of an unexpected error, such as an unreadable entry, {@link
+ * #awaitCompletion} fails with it, and further submissions are rejected.
+ */
+public class SpillingAppender implements AutoCloseable {
+
+  static final Duration POLL_INTERVAL = Duration.ofMillis(100);
+
+  private static final Logger logger = LoggerFactory.getLogger(SpillingAppender.class.getName());
+
+  private final StreamClient client;
+  private final SpillLog log;
+  private final Thread drainer;
+  private volatile boolean running = true;
+
+  /** Completes when the drainer stops, failing if it stopped because of an unexpected error. */
+  private final SettableFuture<Void> stopped = SettableFuture.create();
+
+  /** Consecutive session failures, since an append was last acknowledged. */
+  private final AtomicInteger failures = new AtomicInteger();
+
+  SpillingAppender(StreamClient client, SpillLogConfig config) throws IOException {
+    this.client = client;
+    this.log = SpillLog.open(config);
+    this.drainer = new Thread(this::drain, "s2-spill-log-drainer");
+    this.drainer.setDaemon(true);
+    this.drainer.start();
+  }
+
+  /**
+   * Submit a batch of records to be appended.
+   *
+   * @param input the batch of records
+   * @return future which completes once the batch has been written to the spill log, and will
+   *     eventually be appended
+   * @throws IOException if the batch could not be written to the spill log
+   */
+  public ListenableFuture<Void> submit(AppendInput input) throws IOException {
+    if (!running) {
+      throw new IllegalStateException("SpillingAppender has been closed.");
+    }
+    if (stopped.isDone()) {
+      try {
+        Futures.getDone(stopped);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("SpillingAppender's drainer failed.", e.getCause());
+      }
+    }
+    return log.append(input.toProto(client.streamName).toByteArray());
+  }
+
+  /**
+   * Future which completes once the appender has stopped draining the spill log, either because it
+   * was closed, or because of an unexpected error, in which case the future fails with it. Once the
+   * drainer has failed, submissions are rejected.
+   *
+   * @return future of the drainer stopping
+   */
+  public ListenableFuture<Void> awaitCompletion() {
+    return Futures.nonCancellationPropagating(stopped);
+  }
+
+  /** Number of submitted batches which S2 has not yet acknowledged. */
+  public long unacknowledged() {
+    return log.unacknowledged();
+  }
+
+  private void drain() {
+    try {
+      drainSessions();
+      stopped.set(null);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      stopped.set(null);
+    } catch (Exception e) {
+      logger.error("spill log drainer stopped", e);
+      stopped.setException(e);
+    }
+  }
+
+  private void drainSessions() throws Exception {
+    while (running) {
+      final ManagedAppendSession session = client.managedAppendSession();
+      // Set by the first failed append, which the drainer reacts to by starting a new session.
+      final AtomicReference<Optional<Throwable>> sessionFailure =
+          new AtomicReference<>(Optional.empty());
+      log.rewind();
+      final boolean failed;
+      try {
+        failed = drainInto(session, sessionFailure);
+      } catch (Exception e) {
+        session.closeImmediately();
+        throw e;
+      }
+      if (!failed) {
+        session.closeGracefully().get();
+        return;
+      }
+      session.closeImmediately();
+      final Throwable err = sessionFailure.get().orElseThrow();
+      final Duration delay =
+          client.retryDelay(err, failures.getAndIncrement()).orElse(client.config.retryDelay);
+      logger.warn("spill log append session failed, restarting after {}", delay, err);
+      TimeUnit.NANOSECONDS.sleep(delay.toNanos());
+    }
+  }
+
+  /**
+   * Submit entries to a session until it fails or the appender is closed.
+   *
+   * @return whether the session failed
+   */
+  private boolean drainInto(
+      ManagedAppendSession session, AtomicReference<Optional<Throwable>> sessionFailure)
+      throws InterruptedException {
+    while (running) {
+      if (sessionFailure.get().isPresent()) {
+        return true;
+      }
+      final Optional<SpillLog.Entry> entry = log.next(POLL_INTERVAL);
+      if (entry.isEmpty()) {
+        continue;
+      }
+      final AppendInput input;
+      try {
+        input = AppendInput.fromProto(s2.v1alpha.AppendInput.parseFrom(entry.get().bytes));
+      } catch (InvalidProtocolBufferException e) {
+        // The entry passed its checksum, so it cannot have been written by this appender.
+        throw new IllegalStateException("corrupt spill log entry", e);
+      }
+      // Wait for the session to have room, rather than treating a full buffer as a failure.
+      final long meteredBytes = Math.min(input.meteredBytes(), session.bufferCapacityBytes);
+      while (session.remainingBufferCapacityBytes() < meteredBytes) {
+        if (!running || sessionFailure.get().isPresent()) {
+          return sessionFailure.get().isPresent();
+        }
+        TimeUnit.MILLISECONDS.sleep(ManagedAppendSession.ACQUIRE_QUANTUM_MS);
+      }
+      final ListenableFuture<AppendOutput> output;
+      try {
+        output = session.submit(input, client.config.requestTimeout);
+      } catch (RuntimeException e) {
+        sessionFailure.compareAndSet(Optional.empty(), Optional.of(e));
+        return true;
+      }
+      final long index = entry.get().index;
+      Futures.addCallback(
+          output,
+          new FutureCallback<>() {
+            @Override
+            public void onSuccess(AppendOutput result) {
+              failures.set(0);
+              try {
+                log.acknowledge(index);
+              } catch (IOException e) {
+                logger.warn("failed to checkpoint spill log", e);
+              }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+              sessionFailure.compareAndSet(Optional.empty(), Optional.of(t));
+            }
+          },
+          client.executor);
+    }
+    return false;
+  }
+
+  /**
+   * Stop draining the spill log, after waiting for batches already sent to be acknowledged. Batches
+   * which have not been appended stay in the spill log.
+   */
+  @Override
+  public void close() throws IOException, InterruptedException {
+    running = false;
+    drainer.join();
+    log.close();
+  }
+}
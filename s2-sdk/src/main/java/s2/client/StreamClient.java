@@ -1,26 +1,47 @@
 package s2.client;
 
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import io.grpc.Deadline;
 import io.grpc.Metadata;
 import io.grpc.Metadata.Key;
+import io.grpc.Status;
 import io.grpc.stub.MetadataUtils;
 import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import s2.auth.BearerTokenCallCredentials;
 import s2.channel.BasinCompatibleChannel;
 import s2.channel.ManagedChannelFactory;
 import s2.config.AppendRetryPolicy;
 import s2.config.Config;
+import s2.config.SpillLogConfig;
+import s2.jfr.UnaryRpcInterceptor;
+import s2.metrics.Metrics;
+import s2.serde.Serde;
 import s2.types.AppendInput;
 import s2.types.AppendOutput;
+import s2.types.Batch;
 import s2.types.ReadOutput;
 import s2.types.ReadRequest;
 import s2.types.ReadSessionRequest;
+import s2.types.RecordCursor;
 import s2.types.StreamPosition;
 import s2.v1alpha.AppendRequest;
 import s2.v1alpha.AppendResponse;
@@ -43,6 +64,24 @@ public class StreamClient extends BasinClient {
   final StreamServiceStub asyncStub;
   private final StreamServiceFutureStub futureStub;
 
+  /** Limiters applied to appends and reads, in addition to any other clients sharing them. */
+  final List<RateLimiter> rateLimiters;
+
+  private final Optional<Tracing> tracing;
+
+  private final Optional<Hedger> readHedger;
+  private final Optional<Hedger> checkTailHedger;
+
+  /** Latest tail position observed by this client, from any RPC. */
+  final TailCache tailCache = new TailCache();
+
+  /** Tail expected after the last exactly-once unary append, or -1 if it must be checked. */
+  private final AtomicLong expectedNextSeqNum = new AtomicLong(-1);
+
+  /** Tail check RPC currently in flight, shared by all concurrent callers. */
+  private final AtomicReference<ListenableFuture<StreamPosition>> inflightCheckTail =
+      new AtomicReference<>();
+
   private StreamClient(
       Config config,
       String basin,
@@ -50,67 +89,220 @@ public class StreamClient extends BasinClient {
       BasinCompatibleChannel channel,
       ScheduledExecutorService executor,
       boolean ownedChannel,
-      boolean ownedExecutor) {
+      boolean ownedExecutor,
+      List<RateLimiter> rateLimiters) {
     super(config, basin, channel, executor, ownedChannel, ownedExecutor);
     var meta = new Metadata();
     meta.put(Key.of("s2-basin", Metadata.ASCII_STRING_MARSHALLER), basin);
     this.streamName = streamName;
+    this.rateLimiters = rateLimiters;
 
     StreamServiceFutureStub futureStub =
         StreamServiceGrpc.newFutureStub(channel.getChannel().managedChannel)
-            .withCallCredentials(new BearerTokenCallCredentials(config.token))
-            .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(meta));
+            .withCallCredentials(config.credentials)
+            .withInterceptors(
+                MetadataUtils.newAttachHeadersInterceptor(meta), UnaryRpcInterceptor.INSTANCE);
     StreamServiceStub asyncStub =
         StreamServiceGrpc.newStub(channel.getChannel().managedChannel)
-            .withCallCredentials(new BearerTokenCallCredentials(config.token))
+            .withCallCredentials(config.credentials)
             .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(meta));
 
-    if (config.compression) {
+    if (config.compressionPolicy.isPresent()) {
+      final AdaptiveCompression compression =
+          new AdaptiveCompression(config.compressionPolicy.get());
+      futureStub = futureStub.withInterceptors(compression);
+      asyncStub = asyncStub.withInterceptors(compression);
+    } else if (config.compression) {
       futureStub = futureStub.withCompression(compressionCodec);
       asyncStub = asyncStub.withCompression(compressionCodec);
     }
 
-    this.futureStub = futureStub;
-    this.asyncStub = asyncStub;
+    this.tracing = config.tracingPolicy.map(Tracing::new);
+    this.futureStub = instrumented(futureStub);
+    this.asyncStub = instrumented(asyncStub);
+
+    // Reads and tail checks have different latency profiles, so track them separately, while
+    // bounding the total extra load with a single budget.
+    final Optional<Hedger.Budget> hedgingBudget =
+        config.hedgingPolicy.map(policy -> new Hedger.Budget(policy.budgetRatio));
+    this.readHedger =
+        config.hedgingPolicy.map(policy -> new Hedger(policy, hedgingBudget.get(), executor));
+    this.checkTailHedger =
+        config.hedgingPolicy.map(policy -> new Hedger(policy, hedgingBudget.get(), executor));
   }
 
   public static StreamClientBuilder newBuilder(Config config, String basinName, String streamName) {
     return new StreamClientBuilder(config, basinName, streamName);
   }
 
+  private static <T> ListenableFuture<T> maybeHedged(
+      Optional<Hedger> hedger, Supplier<ListenableFuture<T>> attempt) {
+    return hedger.map(h -> h.hedged(attempt)).orElseGet(attempt);
+  }
+
   /**
    * Check the sequence number that will be assigned to the next record on a stream.
    *
+   * <p>Concurrent calls on the same client are coalesced into a single RPC, whose result is shared
+   * by all of them. Cancelling one of the returned futures does not affect the others.
+   *
+   * <p>If a {@link Config#hedgingPolicy} is configured, slow tail checks are hedged.
+   *
    * @return future of the tail's position
    */
   public ListenableFuture<StreamPosition> checkTail() {
-    return withTimeout(
-        () ->
-            Futures.transform(
-                withStaticRetries(
-                    config.maxRetries,
+    while (true) {
+      final ListenableFuture<StreamPosition> inflight = inflightCheckTail.get();
+      if (inflight != null) {
+        return Futures.nonCancellationPropagating(inflight);
+      }
+      final SettableFuture<StreamPosition> created = SettableFuture.create();
+      if (inflightCheckTail.compareAndSet(null, created)) {
+        created.addListener(
+            () -> inflightCheckTail.compareAndSet(created, null), MoreExecutors.directExecutor());
+        created.setFuture(checkTailInner());
+        return Futures.nonCancellationPropagating(created);
+      }
+    }
+  }
+
+  /**
+   * Check the tail of a stream, accepting a position which was observed within {@code
+   * maxStaleness}.
+   *
+   * <p>Besides previous tail checks, positions are observed from append acknowledgements and from
+   * records received by reads on this client. As reads only establish a lower bound on the tail,
+   * the returned position may trail the actual tail as of the time it was observed.
+   *
+   * @param maxStaleness how long ago the returned position may have been observed
+   * @return future of the tail's position
+   */
+  public ListenableFuture<StreamPosition> checkTail(Duration maxStaleness) {
+    return tailCache
+        .get(maxStaleness.toNanos())
+        .map(Futures::immediateFuture)
+        .orElseGet(this::checkTail);
+  }
+
+  /**
+   * Check the tail with a dedicated RPC, rather than sharing one which may already be in flight.
+   */
+  ListenableFuture<StreamPosition> checkTailInner() {
+    return Futures.transform(
+        withStaticRetries(
+            config.maxRetries,
+            deadline ->
+                maybeHedged(
+                    checkTailHedger,
                     () ->
-                        this.futureStub.checkTail(
-                            CheckTailRequest.newBuilder().setStream(streamName).build())),
-                (resp) -> new StreamPosition(resp.getNextSeqNum(), resp.getLastTimestamp()),
-                executor));
+                        this.futureStub
+                            .withDeadline(deadline)
+                            .checkTail(
+                                CheckTailRequest.newBuilder().setStream(streamName).build()))),
+        (resp) -> {
+          final StreamPosition tail =
+              new StreamPosition(resp.getNextSeqNum(), resp.getLastTimestamp());
+          tailCache.observe(tail);
+          return tail;
+        },
+        executor);
+  }
+
+  /** Record the lower bound on the tail implied by a read. */
+  void observeTail(ReadOutput output) {
+    if (output instanceof Batch) {
+      ((Batch) output)
+          .lastPosition()
+          .ifPresent(
+              last -> tailCache.observe(new StreamPosition(last.seqNum + 1, last.timestamp)));
+    }
+  }
+
+  /**
+   * Charge a read against this client's rate limiters.
+   *
+   * @return nanoseconds to wait before reading more
+   */
+  long chargeRead(ReadOutput output) {
+    if (rateLimiters.isEmpty() || !(output instanceof Batch)) {
+      return 0;
+    }
+    final Batch batch = (Batch) output;
+    return chargeRead(batch.meteredBytes(), batch.sequencedRecordBatch.records.size());
+  }
+
+  /**
+   * Charge a read of the provided amount of data against this client's rate limiters.
+   *
+   * @return nanoseconds to wait before reading more
+   */
+  long chargeRead(long bytes, long records) {
+    return rateLimiters.isEmpty() ? 0 : RateLimiter.reserve(rateLimiters, bytes, records);
+  }
+
+  /**
+   * Run an operation once this client's rate limiters admit the provided amount of data.
+   *
+   * <p>The operation is scheduled on the executor if it must wait, rather than blocking the caller.
+   */
+  private <T> ListenableFuture<T> rateLimited(
+      long bytes, long records, Supplier<ListenableFuture<T>> op) {
+    final long delayNanos =
+        rateLimiters.isEmpty() ? 0 : RateLimiter.reserve(rateLimiters, bytes, records);
+    return delayNanos == 0
+        ? op.get()
+        : Futures.scheduleAsync(op::get, delayNanos, TimeUnit.NANOSECONDS, executor);
   }
 
   /**
    * Retrieve a batch of records from a stream, using the unary read RPC.
    *
+   * <p>If a {@link Config#hedgingPolicy} is configured, slow reads are hedged. If rate limiters are
+   * attached to this client, the read is delayed until data returned by previous reads has been
+   * admitted.
+   *
    * @see StreamClient#readSession
    * @param request the request
    * @return future of the read result
    */
   public ListenableFuture<ReadOutput> read(ReadRequest request) {
-    return withTimeout(
-        () ->
-            Futures.transform(
-                withStaticRetries(
-                    config.maxRetries, () -> this.futureStub.read(request.toProto(streamName))),
-                response -> ReadOutput.fromProto(response.getOutput()),
-                executor));
+    return rateLimited(0, 0, () -> readInner(request));
+  }
+
+  private ListenableFuture<ReadOutput> readInner(ReadRequest request) {
+    return Futures.transform(
+        withStaticRetries(
+            config.maxRetries,
+            deadline ->
+                maybeHedged(
+                    readHedger,
+                    () ->
+                        this.futureStub.withDeadline(deadline).read(request.toProto(streamName)))),
+        response -> {
+          final ReadOutput output = ReadOutput.fromProto(response.getOutput());
+          observeTail(output);
+          chargeRead(output);
+          return decoded(output);
+        },
+        executor);
+  }
+
+  /**
+   * Prepare a batch for sending, stamping it with a trace header if tracing is enabled and the
+   * batch is sampled, and compressing its records if a record codec is configured.
+   */
+  AppendInput encoded(AppendInput input) {
+    final AppendInput stamped = tracing.isEmpty() ? input : tracing.get().stamp(input);
+    return config.recordCodec.isEmpty() ? stamped : config.recordCodec.get().encode(stamped);
+  }
+
+  /** Undo {@link #encoded} on a read. */
+  ReadOutput decoded(ReadOutput output) {
+    final ReadOutput decompressed =
+        config.recordCodec.isEmpty() ? output : config.recordCodec.get().decode(output);
+    return tracing.isEmpty()
+        ? decompressed
+        : tracing.get().strip(streamName, decompressed, config.metrics);
   }
 
   /**
@@ -131,7 +323,40 @@ public class StreamClient extends BasinClient {
    */
   public ReadSession readSession(
       ReadSessionRequest request, Consumer<ReadOutput> onResponse, Consumer<Throwable> onError) {
-    return new ReadSession(this, request, onResponse, onError);
+    return new ReadSession(
+        this, request, output -> onResponse.accept(decoded(ReadOutput.fromProto(output))), onError);
+  }
+
+  /**
+   * Retrieve batches of records from a stream continuously, visiting each batch with a cursor which
+   * reads records in place, without creating objects for each record.
+   *
+   * <p>A cursor must not be retained once {@code onBatch} returns. Records are passed as stored, so
+   * this is only available to clients without a {@link Config#recordCodec} or {@link
+   * Config#tracingPolicy}. Outputs other than batches are not passed on.
+   *
+   * @see StreamClient#readSession
+   * @param request the request
+   * @param onBatch function to run, sequentially, on each batch
+   * @param onError function to run on an error
+   * @return a ReadSession instance
+   * @throws IllegalStateException if a record codec or tracing policy is configured
+   */
+  public ReadSession cursorReadSession(
+      ReadSessionRequest request, Consumer<RecordCursor> onBatch, Consumer<Throwable> onError) {
+    if (config.recordCodec.isPresent() || config.tracingPolicy.isPresent()) {
+      throw new IllegalStateException(
+          "cursor read sessions do not decode records; use readSession instead");
+    }
+    return new ReadSession(
+        this,
+        request,
+        output -> {
+          if (output.getOutputCase() == s2.v1alpha.ReadOutput.OutputCase.BATCH) {
+            onBatch.accept(RecordCursor.fromProto(output.getBatch()));
+          }
+        },
+        onError);
   }
 
   /**
@@ -156,43 +381,263 @@ public class StreamClient extends BasinClient {
     return new ManagedReadSession(this, request, maxBufferedBytes);
   }
 
+  /**
+   * Retrieve batches of records from a stream continuously, decoding them in parallel on a pool of
+   * worker threads, and returning the decoded values in read order.
+   *
+   * @see DecodingReadSession
+   * @param request the request
+   * @param maxBufferedBytes the max allowed amount of read response metered bytes which are being
+   *     decoded or waiting to be returned
+   * @param decoder function from a batch to its decoded value
+   * @param workers number of worker threads
+   * @param <T> type of the decoded values
+   * @return a DecodingReadSession instance
+   */
+  public <T> DecodingReadSession<T> decodingReadSession(
+      ReadSessionRequest request,
+      Integer maxBufferedBytes,
+      Function<Batch, T> decoder,
+      int workers) {
+    return new DecodingReadSession<>(this, request, maxBufferedBytes, decoder, workers);
+  }
+
+  /**
+   * Retrieve typed values from a stream continuously, deserializing each record's body with the
+   * provided serde.
+   *
+   * @see TypedReadSession
+   * @param request the request
+   * @param maxBufferedBytes the max allowed amount of read response metered bytes to keep in the
+   *     buffer
+   * @param serde the serde
+   * @param <T> type of the values
+   * @return a TypedReadSession instance
+   */
+  public <T> TypedReadSession<T> typedReadSession(
+      ReadSessionRequest request, Integer maxBufferedBytes, Serde<T> serde) {
+    return new TypedReadSession<>(this, request, maxBufferedBytes, serde);
+  }
+
   /**
    * Append a batch of records to a stream, using the unary append RPC.
    *
    * <p>Note that the choice of {@link Config#appendRetryPolicy} is important. Since appends are not
    * idempotent by default, retries <i>could</i> cause duplicates in a stream. If your use-case
    * cannot tolerate the potential of duplicate records, make sure to select {@link
-   * AppendRetryPolicy#NO_SIDE_EFFECTS}.
+   * AppendRetryPolicy#NO_SIDE_EFFECTS} or {@link AppendRetryPolicy#EXACTLY_ONCE}.
+   *
+   * <p>If rate limiters are attached to this client, the append is sent once they admit it.
    *
    * @see Config#appendRetryPolicy
    * @see AppendRetryPolicy
-   * @param request the request
+   * @param input the request
    * @return future of the append response
    */
-  public ListenableFuture<AppendOutput> append(AppendInput request) {
+  public ListenableFuture<AppendOutput> append(AppendInput input) {
+    return admitted(input, this::appendInner);
+  }
+
+  /**
+   * Encode a batch, and send it once this client's rate limiters admit it, recording its
+   * acknowledgement.
+   *
+   * @param input the batch, before encoding
+   * @param send sends the encoded batch
+   * @return future of the append's output
+   */
+  ListenableFuture<AppendOutput> admitted(
+      AppendInput input, Function<AppendInput, ListenableFuture<AppendOutput>> send) {
+    final AppendInput request = encoded(input);
+    final long startNanos = System.nanoTime();
+    final ListenableFuture<AppendOutput> output =
+        rateLimiters.isEmpty()
+            ? send.apply(request)
+            : rateLimited(
+                request.meteredBytes(), request.records.size(), () -> send.apply(request));
+    if (config.metrics != Metrics.NOOP) {
+      Futures.addCallback(
+          output,
+          new FutureCallback<>() {
+            @Override
+            public void onSuccess(AppendOutput result) {
+              config.metrics.appendAcknowledged(
+                  streamName,
+                  request.records.size(),
+                  request.meteredBytes(),
+                  System.nanoTime() - startNanos);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {}
+          },
+          MoreExecutors.directExecutor());
+    }
+    return output;
+  }
+
+  private ListenableFuture<AppendOutput> appendInner(AppendInput request) {
     ListenableFuture<AppendResponse> future;
     switch (config.appendRetryPolicy) {
       case ALL:
         future =
             withStaticRetries(
                 config.maxRetries,
-                () ->
-                    this.futureStub.append(
-                        AppendRequest.newBuilder().setInput(request.toProto(streamName)).build()));
+                deadline ->
+                    this.futureStub
+                        .withDeadline(deadline)
+                        .append(
+                            AppendRequest.newBuilder()
+                                .setInput(request.toProto(streamName))
+                                .build()));
         break;
       case NO_SIDE_EFFECTS:
         future =
-            this.futureStub.append(
-                AppendRequest.newBuilder().setInput(request.toProto(streamName)).build());
+            this.futureStub
+                .withDeadline(requestDeadline())
+                .append(AppendRequest.newBuilder().setInput(request.toProto(streamName)).build());
         break;
+      case EXACTLY_ONCE:
+        return appendExactlyOnce(request);
       default:
         throw new UnsupportedOperationException(
             "Unsupported append retry policy: " + config.appendRetryPolicy);
     }
-    return withTimeout(
-        () ->
-            Futures.transform(
-                future, response -> AppendOutput.fromProto(response.getOutput()), executor));
+    return Futures.transform(
+        future,
+        response -> {
+          final AppendOutput output = AppendOutput.fromProto(response.getOutput());
+          tailCache.observe(output.tail);
+          return output;
+        },
+        executor);
+  }
+
+  /**
+   * Append with {@code matchSeqNum} set to the tail expected after this client's previous append,
+   * or to the current tail if that is not known.
+   *
+   * <p>Before each retry, the tail is checked: if it moved past the batch by exactly the batch's
+   * size, the earlier attempt landed and its output is reconstructed; if it did not move, the batch
+   * is sent again; otherwise the stream was appended to by someone else, and the append fails.
+   * Concurrent unary appends on one client conflict with each other in the same way, so they should
+   * be issued one at a time.
+   *
+   * <p>A tail at {@code matchSeqNum + size} is ambiguous: another writer appending the same number
+   * of records at the same position is indistinguishable from the batch having landed, and is
+   * reported as such. Exactly-once appends therefore assume a single writer per stream.
+   */
+  private ListenableFuture<AppendOutput> appendExactlyOnce(AppendInput request) {
+    final long expected = expectedNextSeqNum.get();
+    final ListenableFuture<Long> matchSeqNum =
+        request.matchSeqNum.isPresent()
+            ? Futures.immediateFuture(request.matchSeqNum.get())
+            : expected >= 0
+                ? Futures.immediateFuture(expected)
+                : Futures.transform(
+                    checkTail(), tail -> tail.seqNum, MoreExecutors.directExecutor());
+
+    final ListenableFuture<AppendOutput> output =
+        Futures.transformAsync(
+            matchSeqNum,
+            seqNum -> {
+              final AppendInput input = request.withMatchSeqNum(seqNum);
+              final AtomicBoolean firstAttempt = new AtomicBoolean(true);
+              return withStaticRetries(
+                  config.maxRetries,
+                  deadline ->
+                      firstAttempt.getAndSet(false)
+                          ? sendAppend(input, deadline)
+                          : Futures.transformAsync(
+                              // Bypass coalescing, as a shared check may predate the attempt.
+                              checkTailInner(),
+                              tail -> reconcileAppend(input, tail, deadline),
+                              MoreExecutors.directExecutor()));
+            },
+            MoreExecutors.directExecutor());
+
+    Futures.addCallback(
+        output,
+        new FutureCallback<>() {
+          @Override
+          public void onSuccess(AppendOutput result) {
+            expectedNextSeqNum.set(result.end.seqNum);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            // Whether or not the append landed, the tail must be checked before the next one.
+            expectedNextSeqNum.set(-1);
+          }
+        },
+        MoreExecutors.directExecutor());
+    return output;
+  }
+
+  /** Send a single append attempt, without retries or rate limiting. */
+  ListenableFuture<AppendOutput> sendAppend(AppendInput input, Deadline deadline) {
+    return Futures.transform(
+        this.futureStub
+            .withDeadline(deadline)
+            .append(AppendRequest.newBuilder().setInput(input.toProto(streamName)).build()),
+        response -> {
+          final AppendOutput output = AppendOutput.fromProto(response.getOutput());
+          tailCache.observe(output.tail);
+          return output;
+        },
+        executor);
+  }
+
+  private ListenableFuture<AppendOutput> reconcileAppend(
+      AppendInput input, StreamPosition tail, Deadline deadline) {
+    final long matchSeqNum = input.matchSeqNum.get();
+    if (tail.seqNum == matchSeqNum) {
+      return sendAppend(input, deadline);
+    }
+    if (tail.seqNum == matchSeqNum + input.records.size()) {
+      logger.debug("append at matchSeqNum={} landed before failing", matchSeqNum);
+      return Futures.immediateFuture(landedOutput(matchSeqNum, input.records.size(), tail));
+    }
+    return Futures.immediateFailedFuture(concurrentAppendError(matchSeqNum, tail));
+  }
+
+  /**
+   * Output of an append which is known to have landed, from the tail observed afterwards.
+   *
+   * <p>The timestamps assigned to the appended records are not known, so the tail's timestamp is
+   * reported for both the start and end positions.
+   */
+  static AppendOutput landedOutput(long matchSeqNum, int numRecords, StreamPosition tail) {
+    return new AppendOutput(
+        new StreamPosition(matchSeqNum, tail.timestamp),
+        new StreamPosition(matchSeqNum + numRecords, tail.timestamp),
+        tail);
+  }
+
+  static RuntimeException concurrentAppendError(long matchSeqNum, StreamPosition tail) {
+    return Status.FAILED_PRECONDITION
+        .withDescription(
+            String.format(
+                "sequence number mismatch, stream was appended to concurrently; expected tail at"
+                    + " %s, found %s",
+                matchSeqNum, tail.seqNum))
+        .asRuntimeException();
+  }
+
+  /**
+   * Whether an append failed because its {@code matchSeqNum} was not the tail, as opposed to
+   * another precondition, such as its fencing token, not holding.
+   *
+   * <p>Both are reported as {@code FAILED_PRECONDITION}, so they are told apart by the description,
+   * which for a sequence number mismatch names the sequence number.
+   */
+  static boolean isSeqNumMismatch(Throwable t) {
+    final Status status = Status.fromThrowable(t);
+    if (status.getCode() != Status.Code.FAILED_PRECONDITION || status.getDescription() == null) {
+      return false;
+    }
+    final String description = status.getDescription().toLowerCase(Locale.ROOT);
+    return description.contains("mismatch") && description.contains("seq");
   }
 
   /**
@@ -217,7 +662,9 @@ public class StreamClient extends BasinClient {
             new StreamObserver<AppendSessionResponse>() {
               @Override
               public void onNext(AppendSessionResponse value) {
-                onResponse.accept(AppendOutput.fromProto(value.getOutput()));
+                final AppendOutput output = AppendOutput.fromProto(value.getOutput());
+                tailCache.observe(output.tail);
+                onResponse.accept(output);
               }
 
               @Override
@@ -252,7 +699,9 @@ public class StreamClient extends BasinClient {
    * <p>Note that the choice of {@link Config#appendRetryPolicy} is important. Since appends are not
    * idempotent by default, retries <i>could</i> cause duplicates in a stream. If you use-case
    * cannot tolerate the potential of duplicate records, make sure to select {@link
-   * AppendRetryPolicy#NO_SIDE_EFFECTS}.
+   * AppendRetryPolicy#NO_SIDE_EFFECTS}, or {@link AppendRetryPolicy#EXACTLY_ONCE} to keep retrying
+   * without duplicates. With the latter, the session checks the tail before resending inflight
+   * batches after a failure, and only resends those which did not land.
    *
    * @see Config#appendRetryPolicy
    * @see AppendRetryPolicy
@@ -262,6 +711,57 @@ public class StreamClient extends BasinClient {
     return new ManagedAppendSession(this);
   }
 
+  /**
+   * Create a pipeline which encodes items into batches on a pool of worker threads, and appends
+   * them to this stream in submission order.
+   *
+   * @see OrderedAppendPipeline
+   * @param encoder function from an item to its batch of records
+   * @param workers number of worker threads
+   * @param <T> type of the items
+   * @return the pipeline
+   */
+  public <T> OrderedAppendPipeline<T> orderedAppendPipeline(
+      Function<T, AppendInput> encoder, int workers) {
+    return new OrderedAppendPipeline<>(this, encoder, workers);
+  }
+
+  /**
+   * Create an append session for typed values, serializing each into one record's body with the
+   * provided serde.
+   *
+   * @see TypedAppendSession
+   * @param serde the serde
+   * @param <T> type of the values
+   * @return the session
+   */
+  public <T> TypedAppendSession<T> typedAppendSession(Serde<T> serde) {
+    return new TypedAppendSession<>(this, serde);
+  }
+
+  /**
+   * Create an appender for use by one of several writers appending to this stream concurrently.
+   *
+   * @see MultiWriterAppender
+   * @return the appender
+   */
+  public MultiWriterAppender multiWriterAppender() {
+    return new MultiWriterAppender(this);
+  }
+
+  /**
+   * Create an appender which buffers batches in a local spill log, and drains them to this stream
+   * in the background.
+   *
+   * @see SpillingAppender
+   * @param spillLogConfig configuration of the spill log
+   * @return the appender
+   * @throws IOException if the spill log could not be opened
+   */
+  public SpillingAppender spillingAppender(SpillLogConfig spillLogConfig) throws IOException {
+    return new SpillingAppender(this, spillLogConfig);
+  }
+
   public static class StreamClientBuilder {
 
     private final Config config;
@@ -269,6 +769,7 @@ public class StreamClient extends BasinClient {
     private final String streamName;
     private Optional<BasinCompatibleChannel> channel = Optional.empty();
     private Optional<ScheduledExecutorService> executor = Optional.empty();
+    private final List<RateLimiter> rateLimiters = new ArrayList<>();
 
     public StreamClientBuilder(Config config, String basinName, String streamName) {
       this.config = config;
@@ -286,6 +787,18 @@ public class StreamClient extends BasinClient {
       return this;
     }
 
+    /**
+     * Limit appends and reads made by this client. Sharing a limiter between clients limits their
+     * combined traffic, and this may be called repeatedly to apply limits at several scopes.
+     *
+     * @param rateLimiter the rate limiter
+     * @return the builder
+     */
+    public StreamClientBuilder withRateLimiter(RateLimiter rateLimiter) {
+      this.rateLimiters.add(rateLimiter);
+      return this;
+    }
+
     public StreamClient build() {
       return new StreamClient(
           this.config,
@@ -295,7 +808,8 @@ public class StreamClient extends BasinClient {
               () -> ManagedChannelFactory.forBasinOrStreamService(this.config, this.basinName)),
           this.executor.orElseGet(() -> BaseClient.defaultExecutor("streamClient")),
           this.channel.isEmpty(),
-          this.executor.isEmpty());
+          this.executor.isEmpty(),
+          List.copyOf(this.rateLimiters));
     }
   }
 
@@ -0,0 +1,45 @@
+package s2.client;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import s2.types.StreamPosition;
+
+/**
+ * Most recently observed tail position of a stream.
+ *
+ * <p>Observations come from tail checks and append acknowledgements, which report the exact tail,
+ * as well as from reads, which only establish a lower bound on it. The cached position therefore
+ * never regresses, and is at most as far ahead as the true tail was when it was observed.
+ */
+final class TailCache {
+
+  private final AtomicReference<Observation> latest = new AtomicReference<>();
+
+  void observe(StreamPosition position) {
+    final Observation observation = new Observation(position, System.nanoTime());
+    latest.accumulateAndGet(
+        observation,
+        (current, update) ->
+            current == null || update.position.seqNum >= current.position.seqNum
+                ? update
+                : current);
+  }
+
+  Optional<StreamPosition> get(long maxStalenessNanos) {
+    final Observation current = latest.get();
+    if (current == null || System.nanoTime() - current.observedNanos > maxStalenessNanos) {
+      return Optional.empty();
+    }
+    return Optional.of(current.position);
+  }
+
+  private static final class Observation {
+    final StreamPosition position;
+    final long observedNanos;
+
+    Observation(StreamPosition position, long observedNanos) {
+      this.position = position;
+      this.observedNanos = observedNanos;
+    }
+  }
+}
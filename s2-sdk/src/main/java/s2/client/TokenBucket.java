@@ -0,0 +1,79 @@
+package s2.client;
+
+/**
+ * Token bucket which hands out reservations, rather than blocking.
+ *
+ * <p>Reserving more tokens than are available puts the bucket into debt, and returns how long the
+ * caller must wait before proceeding. Later reservations queue up behind that debt, so callers that
+ * honour the returned delays are admitted at the configured rate, in reservation order.
+ */
+final class TokenBucket {
+
+  private final double tokensPerNano;
+  private final double capacity;
+  private double tokens;
+  private long lastRefillNanos;
+
+  TokenBucket(double tokensPerSecond, double capacity) {
+    if (!(tokensPerSecond > 0)) {
+      throw new IllegalArgumentException("rate must be positive");
+    }
+    if (!(capacity > 0)) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.tokensPerNano = tokensPerSecond / 1e9;
+    this.capacity = capacity;
+    this.tokens = capacity;
+    this.lastRefillNanos = System.nanoTime();
+  }
+
+  /**
+   * Reserve tokens.
+   *
+   * @param amount number of tokens
+   * @return nanoseconds to wait before consuming them, or zero if they are available now
+   */
+  synchronized long reserve(double amount) {
+    if (Double.isInfinite(tokensPerNano)) {
+      return 0;
+    }
+    refill();
+    tokens -= amount;
+    return delayNanos(tokens);
+  }
+
+  /**
+   * Reserve tokens, only if they can be consumed within a maximum wait.
+   *
+   * @param amount number of tokens
+   * @param maxWaitNanos maximum wait
+   * @return nanoseconds to wait before consuming the tokens, or -1 if nothing was reserved
+   */
+  synchronized long tryReserve(double amount, long maxWaitNanos) {
+    if (Double.isInfinite(tokensPerNano)) {
+      return 0;
+    }
+    refill();
+    final long delayNanos = delayNanos(tokens - amount);
+    if (delayNanos > maxWaitNanos) {
+      return -1;
+    }
+    tokens -= amount;
+    return delayNanos;
+  }
+
+  /** Return tokens from a reservation which will not be used. */
+  synchronized void refund(double amount) {
+    tokens = Math.min(capacity, tokens + amount);
+  }
+
+  private void refill() {
+    final long now = System.nanoTime();
+    tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+    lastRefillNanos = now;
+  }
+
+  private long delayNanos(double balance) {
+    return balance >= 0 ? 0 : (long) Math.ceil(-balance / tokensPerNano);
+  }
+}
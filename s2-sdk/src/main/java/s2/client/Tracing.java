@@ -0,0 +1,122 @@
+package s2.client;
+
+import com.google.protobuf.ByteString;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import s2.config.TracingPolicy;
+import s2.metrics.Metrics;
+import s2.metrics.Trace;
+import s2.types.AppendInput;
+import s2.types.AppendRecord;
+import s2.types.Batch;
+import s2.types.Header;
+import s2.types.ReadOutput;
+import s2.types.SequencedRecord;
+
+/**
+ * Stamping of sampled batches with a trace header on append, and its removal on read.
+ *
+ * @see TracingPolicy
+ */
+final class Tracing {
+
+  static final ByteString HEADER_NAME = ByteString.copyFromUtf8("s2-trace");
+  static final int VALUE_BYTES = 2 * Long.BYTES;
+
+  private static final long MAX_BATCH_BYTES = 1024 * 1024;
+
+  // Wall clock time, advanced by the monotonic clock so that it never jumps within a process.
+  private static final long BASE_EPOCH_NANOS;
+  private static final long BASE_NANOS;
+
+  static {
+    final Instant now = Instant.now();
+    BASE_NANOS = System.nanoTime();
+    BASE_EPOCH_NANOS = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+  }
+
+  private final double sampleRate;
+
+  Tracing(TracingPolicy policy) {
+    this.sampleRate = policy.sampleRate;
+  }
+
+  static long epochNanos() {
+    return BASE_EPOCH_NANOS + (System.nanoTime() - BASE_NANOS);
+  }
+
+  /**
+   * Add a trace header to the first record of the batch which is not a command, if it is sampled
+   * and has room.
+   */
+  AppendInput stamp(AppendInput input) {
+    int index = 0;
+    while (index < input.records.size() && isCommand(input.records.get(index))) {
+      index++;
+    }
+    if (index == input.records.size()
+        || ThreadLocalRandom.current().nextDouble() >= sampleRate
+        || input.meteredBytes() + 2 + HEADER_NAME.size() + VALUE_BYTES > MAX_BATCH_BYTES) {
+      return input;
+    }
+    final AppendRecord record = input.records.get(index);
+    final List<Header> headers = new ArrayList<>(record.headers.size() + 1);
+    headers.add(
+        new Header(
+            HEADER_NAME,
+            ByteString.copyFrom(
+                ByteBuffer.allocate(VALUE_BYTES)
+                    .putLong(epochNanos())
+                    .putLong(ThreadLocalRandom.current().nextLong())
+                    .flip())));
+    headers.addAll(record.headers);
+
+    final List<AppendRecord> records = new ArrayList<>(input.records);
+    records.set(
+        index, AppendRecord.newBuilder().withHeaders(headers).withBody(record.body).build());
+    return input.withRecords(records);
+  }
+
+  /**
+   * Whether a record is a command, such as a fence or trim, which the service identifies by a sole
+   * header with an empty name. A trace header would make it an ordinary record.
+   */
+  private static boolean isCommand(AppendRecord record) {
+    return record.headers.size() == 1 && record.headers.get(0).name.isEmpty();
+  }
+
+  /** Remove trace headers from a batch, reporting each trace found. */
+  ReadOutput strip(String stream, ReadOutput output, Metrics metrics) {
+    if (!(output instanceof Batch)) {
+      return output;
+    }
+    final List<SequencedRecord> records = ((Batch) output).sequencedRecordBatch.records;
+    List<SequencedRecord> stripped = null;
+    for (int i = 0; i < records.size(); i++) {
+      final SequencedRecord record = records.get(i);
+      if (!isTraced(record)) {
+        continue;
+      }
+      final ByteBuffer value = record.headers.get(0).value.asReadOnlyByteBuffer();
+      final long latencyNanos = epochNanos() - value.getLong();
+      metrics.traceCompleted(new Trace(stream, value.getLong(), record.seqNum, latencyNanos));
+      if (stripped == null) {
+        stripped = new ArrayList<>(records);
+      }
+      stripped.set(i, record.withHeaders(record.headers.subList(1, record.headers.size())));
+    }
+    return stripped == null ? output : ((Batch) output).withRecords(stripped);
+  }
+
+  private static boolean isTraced(SequencedRecord record) {
+    if (record.headers.isEmpty()) {
+      return false;
+    }
+    final Header header = record.headers.get(0);
+    return header.value.size() == VALUE_BYTES && header.name.equals(HEADER_NAME);
+  }
+}
@@ -0,0 +1,94 @@
+package s2.client;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import s2.serde.Serde;
+import s2.types.AppendInput;
+import s2.types.AppendOutput;
+import s2.types.AppendRecord;
+
+/**
+ * Append session for typed values, each of which is serialized into the body of one record.
+ *
+ * <p>Values are serialized into pooled buffers, which are used as record bodies without copying,
+ * and returned to the pool once the session has finished with the append. Records are never exposed
+ * to the caller, so no body outlives its buffer, and cancelling a returned future does not cancel
+ * the append or release its buffers early.
+ *
+ * @param <T> type of the values
+ */
+public class TypedAppendSession<T> implements AutoCloseable {
+
+  /** Buffers kept for reuse, beyond which buffers are left to the garbage collector. */
+  static final int MAX_POOLED_BUFFERS = 1024;
+
+  private final ManagedAppendSession session;
+  private final Serde<T> serde;
+  private final BufferPool pool = new BufferPool(MAX_POOLED_BUFFERS);
+
+  TypedAppendSession(StreamClient client, Serde<T> serde) {
+    this.session = client.managedAppendSession();
+    this.serde = serde;
+  }
+
+  /**
+   * Submit a value to be appended as a single record.
+   *
+   * @see ManagedAppendSession#submit
+   * @param value the value
+   * @param maxWait maximum time to block for
+   * @return future of the append's output
+   * @throws IOException if the value could not be serialized
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public ListenableFuture<AppendOutput> submit(T value, Duration maxWait)
+      throws IOException, InterruptedException {
+    return submit(List.of(value), maxWait);
+  }
+
+  /**
+   * Submit values to be appended as a batch, with one record per value.
+   *
+   * @see ManagedAppendSession#submit
+   * @param values the values
+   * @param maxWait maximum time to block for
+   * @return future of the append's output
+   * @throws IOException if a value could not be serialized
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public ListenableFuture<AppendOutput> submit(List<T> values, Duration maxWait)
+      throws IOException, InterruptedException {
+    final List<BufferPool.Buffer> buffers = new ArrayList<>(values.size());
+    final ListenableFuture<AppendOutput> output;
+    try {
+      final List<AppendRecord> records = new ArrayList<>(values.size());
+      for (final T value : values) {
+        final BufferPool.Buffer buffer = pool.acquire();
+        buffers.add(buffer);
+        serde.serialize(value, buffer);
+        records.add(AppendRecord.newBuilder().withBody(buffer.wrap()).build());
+      }
+      output = session.submit(AppendInput.newBuilder().withRecords(records).build(), maxWait);
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      buffers.forEach(pool::release);
+      throw e;
+    }
+    output.addListener(() -> buffers.forEach(pool::release), MoreExecutors.directExecutor());
+    return Futures.nonCancellationPropagating(output);
+  }
+
+  public ListenableFuture<Void> closeGracefully() {
+    return session.closeGracefully();
+  }
+
+  @Override
+  public void close() throws InterruptedException, ExecutionException {
+    closeGracefully().get();
+  }
+}
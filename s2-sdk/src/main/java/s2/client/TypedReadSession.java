@@ -0,0 +1,58 @@
+package s2.client;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Optional;
+import s2.serde.Serde;
+import s2.types.Batch;
+import s2.types.ReadOutput;
+import s2.types.ReadSessionRequest;
+
+/**
+ * Read session returning typed values, deserialized from record bodies one at a time as they are
+ * consumed, on top of a {@link ManagedReadSession}.
+ *
+ * @param <T> type of the values
+ */
+public class TypedReadSession<T> implements AutoCloseable {
+
+  private final ManagedReadSession session;
+  private final Serde<T> serde;
+  private Iterator<T> batch = Collections.emptyIterator();
+
+  TypedReadSession(
+      StreamClient client, ReadSessionRequest request, Integer maxBufferedBytes, Serde<T> serde) {
+    this.session = client.managedReadSession(request, maxBufferedBytes);
+    this.serde = serde;
+  }
+
+  public boolean isClosed() {
+    return !batch.hasNext() && session.isClosed();
+  }
+
+  /**
+   * Next value, waiting for the next batch to be read if the current one has been consumed.
+   *
+   * @param maxWait maximum time to wait for a batch to be read
+   * @return the value, or empty if no batch was read in time
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public Optional<T> next(Duration maxWait) throws InterruptedException {
+    while (!batch.hasNext()) {
+      final Optional<ReadOutput> output = session.get(maxWait);
+      if (output.isEmpty()) {
+        return Optional.empty();
+      }
+      if (output.get() instanceof Batch) {
+        batch = serde.values((Batch) output.get());
+      }
+    }
+    return Optional.of(batch.next());
+  }
+
+  @Override
+  public void close() throws Exception {
+    session.close();
+  }
+}
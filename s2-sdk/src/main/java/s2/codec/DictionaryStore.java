@@ -0,0 +1,131 @@
+package s2.codec;
+
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dictionaries available to a {@link RecordCodec}, by ID.
+ *
+ * <p>Readers need every dictionary a stream's records were compressed with, so dictionaries should
+ * be distributed to readers before any record compressed with them is appended.
+ *
+ * <p>Dictionaries are identified by their Adler-32 checksum, so different dictionaries can share an
+ * ID. Stores refuse to put a dictionary whose ID is already held by a different one.
+ */
+public interface DictionaryStore {
+
+  Optional<RecordDictionary> get(int id);
+
+  void put(RecordDictionary dictionary);
+
+  /** Store which keeps dictionaries in memory only. */
+  static DictionaryStore inMemory() {
+    final ConcurrentHashMap<Integer, RecordDictionary> dictionaries = new ConcurrentHashMap<>();
+    return new DictionaryStore() {
+      @Override
+      public Optional<RecordDictionary> get(int id) {
+        return Optional.ofNullable(dictionaries.get(id));
+      }
+
+      @Override
+      public void put(RecordDictionary dictionary) {
+        final RecordDictionary existing = dictionaries.putIfAbsent(dictionary.id, dictionary);
+        if (existing != null) {
+          checkSame(existing, dictionary);
+        }
+      }
+    };
+  }
+
+  /**
+   * Store which keeps dictionaries as files in a directory, named by their ID, and caches them in
+   * memory once loaded.
+   *
+   * <p>A dictionary found missing is not looked for again for 10 seconds, so that reading records
+   * compressed with it does not cost a file lookup each.
+   *
+   * @param directory the directory, which must exist
+   * @return the store
+   */
+  static DictionaryStore directory(Path directory) {
+    final DictionaryStore cache = inMemory();
+    final long recheckMissingNanos = TimeUnit.SECONDS.toNanos(10);
+    final ConcurrentHashMap<Integer, Long> missingSinceNanos = new ConcurrentHashMap<>();
+    return new DictionaryStore() {
+      @Override
+      public Optional<RecordDictionary> get(int id) {
+        final Optional<RecordDictionary> cached = cache.get(id);
+        if (cached.isPresent()) {
+          return cached;
+        }
+        final Long missingSince = missingSinceNanos.get(id);
+        if (missingSince != null && System.nanoTime() - missingSince < recheckMissingNanos) {
+          return Optional.empty();
+        }
+        final Optional<RecordDictionary> loaded = load(id);
+        if (loaded.isPresent()) {
+          missingSinceNanos.remove(id);
+          cache.put(loaded.get());
+        } else {
+          missingSinceNanos.put(id, System.nanoTime());
+        }
+        return loaded;
+      }
+
+      @Override
+      public void put(RecordDictionary dictionary) {
+        final Optional<RecordDictionary> existing =
+            cache.get(dictionary.id).or(() -> load(dictionary.id));
+        if (existing.isPresent()) {
+          checkSame(existing.get(), dictionary);
+        } else {
+          try {
+            // Write to a temporary file first, so readers never load a partial dictionary.
+            final Path temp = Files.createTempFile(directory, "dictionary", ".tmp");
+            Files.write(temp, dictionary.bytes.toByteArray());
+            Files.move(temp, path(dictionary.id), StandardCopyOption.ATOMIC_MOVE);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+        missingSinceNanos.remove(dictionary.id);
+        cache.put(dictionary);
+      }
+
+      private Optional<RecordDictionary> load(int id) {
+        final RecordDictionary loaded;
+        try {
+          loaded = RecordDictionary.of(ByteString.copyFrom(Files.readAllBytes(path(id))));
+        } catch (NoSuchFileException e) {
+          return Optional.empty();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        if (loaded.id != id) {
+          throw new IllegalStateException(
+              String.format("dictionary file %s does not match its ID", path(id)));
+        }
+        return Optional.of(loaded);
+      }
+
+      private Path path(int id) {
+        return directory.resolve(String.format("%08x.dict", id));
+      }
+    };
+  }
+
+  private static void checkSame(RecordDictionary existing, RecordDictionary dictionary) {
+    if (!existing.bytes.equals(dictionary.bytes)) {
+      throw new IllegalStateException(
+          String.format("a different dictionary with ID %08x is already stored", dictionary.id));
+    }
+  }
+}
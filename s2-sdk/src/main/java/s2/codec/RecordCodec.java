@@ -0,0 +1,244 @@
+package s2.codec;
+
+import com.google.protobuf.ByteString;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import s2.types.AppendInput;
+import s2.types.AppendRecord;
+import s2.types.Batch;
+import s2.types.Header;
+import s2.types.ReadOutput;
+import s2.types.SequencedRecord;
+
+/**
+ * Codec which compresses record bodies with deflate before they are appended, optionally with a
+ * preset {@link RecordDictionary}, and decompresses them when read.
+ *
+ * <p>Compressed records carry a header named {@code s2-codec}, added after any other headers,
+ * identifying the format and dictionary. Records are only compressed if they shrink by more than
+ * the header costs, so a stream may contain a mix of compressed and uncompressed records. Since S2
+ * meters and stores records as appended, compression reduces both the bytes billed and the bytes
+ * counted against {@link s2.config.Config#maxAppendInflightBytes}.
+ *
+ * <p>Records compressed with a dictionary which is not in the reader's {@link DictionaryStore} are
+ * returned as read, still compressed and with their {@code s2-codec} header.
+ */
+public final class RecordCodec {
+
+  static final ByteString HEADER_NAME = ByteString.copyFromUtf8("s2-codec");
+  static final byte FORMAT_DEFLATE = 1;
+
+  /**
+   * Largest body a record can decompress to. S2 limits records to 1MiB, so larger output can only
+   * come from a corrupt or malicious body, which is then returned as read.
+   */
+  static final int MAX_BODY_BYTES = 1024 * 1024;
+
+  private static final Logger logger = LoggerFactory.getLogger(RecordCodec.class.getName());
+
+  private static final ThreadLocal<Deflater> deflaters =
+      ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+  private static final ThreadLocal<Inflater> inflaters =
+      ThreadLocal.withInitial(() -> new Inflater(true));
+
+  private final DictionaryStore store;
+  private final Optional<RecordDictionary> dictionary;
+  private final int minBodyBytes;
+  private final Header header;
+
+  /** Dictionaries found missing, which are only warned about the first time. */
+  private final Set<Integer> missingDictionaries = ConcurrentHashMap.newKeySet();
+
+  private RecordCodec(
+      DictionaryStore store, Optional<RecordDictionary> dictionary, int minBodyBytes) {
+    this.store = store;
+    this.dictionary = dictionary;
+    this.minBodyBytes = minBodyBytes;
+    final ByteBuffer value = ByteBuffer.allocate(1 + (dictionary.isPresent() ? Integer.BYTES : 0));
+    value.put(FORMAT_DEFLATE);
+    dictionary.ifPresent(d -> value.putInt(d.id));
+    this.header = new Header(HEADER_NAME, ByteString.copyFrom(value.flip()));
+  }
+
+  public static RecordCodecBuilder newBuilder(DictionaryStore store) {
+    return new RecordCodecBuilder(store);
+  }
+
+  /** Compress the bodies of a batch's records, where worthwhile. */
+  public AppendInput encode(AppendInput input) {
+    List<AppendRecord> encoded = null;
+    for (int i = 0; i < input.records.size(); i++) {
+      final AppendRecord record = input.records.get(i);
+      final AppendRecord compressed = encode(record);
+      if (compressed != record) {
+        if (encoded == null) {
+          encoded = new ArrayList<>(input.records);
+        }
+        encoded.set(i, compressed);
+      }
+    }
+    return encoded == null ? input : input.withRecords(encoded);
+  }
+
+  /** Compress a record's body, if worthwhile. */
+  public AppendRecord encode(AppendRecord record) {
+    final int overhead = 2 + HEADER_NAME.size() + header.value.size();
+    if (record.body.size() < minBodyBytes || record.body.size() <= overhead) {
+      return record;
+    }
+    final Deflater deflater = deflaters.get();
+    deflater.reset();
+    dictionary.ifPresent(d -> deflater.setDictionary(d.bytes.asReadOnlyByteBuffer()));
+    deflater.setInput(record.body.asReadOnlyByteBuffer());
+    deflater.finish();
+    // Compression is abandoned as soon as the output would not be worth it.
+    final byte[] output = new byte[record.body.size() - overhead];
+    final int length = deflater.deflate(output);
+    if (!deflater.finished()) {
+      return record;
+    }
+    final List<Header> headers = new ArrayList<>(record.headers.size() + 1);
+    headers.addAll(record.headers);
+    headers.add(header);
+    return AppendRecord.newBuilder()
+        .withHeaders(headers)
+        .withBody(ByteString.copyFrom(output, 0, length))
+        .build();
+  }
+
+  /** Decompress the bodies of a batch's compressed records. */
+  public ReadOutput decode(ReadOutput output) {
+    if (!(output instanceof Batch)) {
+      return output;
+    }
+    final List<SequencedRecord> records = ((Batch) output).sequencedRecordBatch.records;
+    List<SequencedRecord> decoded = null;
+    for (int i = 0; i < records.size(); i++) {
+      final SequencedRecord record = records.get(i);
+      final SequencedRecord decompressed = decode(record);
+      if (decompressed != record) {
+        if (decoded == null) {
+          decoded = new ArrayList<>(records);
+        }
+        decoded.set(i, decompressed);
+      }
+    }
+    return decoded == null ? output : ((Batch) output).withRecords(decoded);
+  }
+
+  /** Decompress a record's body, if it was compressed and can be decompressed. */
+  public SequencedRecord decode(SequencedRecord record) {
+    if (record.headers.isEmpty()) {
+      return record;
+    }
+    final Header last = record.headers.get(record.headers.size() - 1);
+    if (!last.name.equals(HEADER_NAME) || last.value.isEmpty()) {
+      return record;
+    }
+    final ByteBuffer value = last.value.asReadOnlyByteBuffer();
+    if (value.get() != FORMAT_DEFLATE) {
+      return record;
+    }
+    Optional<RecordDictionary> recordDictionary = Optional.empty();
+    if (value.remaining() == Integer.BYTES) {
+      final int id = value.getInt();
+      recordDictionary = store.get(id);
+      if (recordDictionary.isEmpty()) {
+        if (missingDictionaries.add(id)) {
+          logger.warn(
+              "dictionary {} not found, seqNum={}", String.format("%08x", id), record.seqNum);
+        } else {
+          logger.debug(
+              "dictionary {} not found, seqNum={}", String.format("%08x", id), record.seqNum);
+        }
+        return record;
+      }
+    }
+
+    final Inflater inflater = inflaters.get();
+    inflater.reset();
+    recordDictionary.ifPresent(d -> inflater.setDictionary(d.bytes.asReadOnlyByteBuffer()));
+    inflater.setInput(record.body.asReadOnlyByteBuffer());
+    byte[] output = new byte[Math.min(MAX_BODY_BYTES, Math.max(64, record.body.size() * 4))];
+    int length = 0;
+    try {
+      while (!inflater.finished()) {
+        if (length == output.length) {
+          if (length == MAX_BODY_BYTES) {
+            throw new DataFormatException("body inflates to more than 1MiB");
+          }
+          output = Arrays.copyOf(output, Math.min(MAX_BODY_BYTES, output.length * 2));
+        }
+        final int inflated = inflater.inflate(output, length, output.length - length);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new DataFormatException("truncated body");
+        }
+        length += inflated;
+      }
+    } catch (DataFormatException e) {
+      logger.warn("failed to decompress record, seqNum={}", record.seqNum, e);
+      return record;
+    }
+    return record
+        .withHeaders(record.headers.subList(0, record.headers.size() - 1))
+        .withBody(ByteString.copyFrom(output, 0, length));
+  }
+
+  public static final class RecordCodecBuilder {
+    private final DictionaryStore store;
+    private Optional<RecordDictionary> dictionary = Optional.empty();
+    private Optional<Integer> minBodyBytes = Optional.empty();
+
+    RecordCodecBuilder(DictionaryStore store) {
+      this.store = store;
+    }
+
+    /**
+     * Compress with the provided dictionary, which is added to the store. Without a dictionary,
+     * records are compressed on their own.
+     *
+     * @param dictionary the dictionary
+     * @return the builder
+     */
+    public RecordCodecBuilder withDictionary(RecordDictionary dictionary) {
+      this.dictionary = Optional.of(dictionary);
+      return this;
+    }
+
+    /**
+     * Size below which record bodies are not compressed. Defaults to 32 bytes.
+     *
+     * @param minBodyBytes the size
+     * @return the builder
+     */
+    public RecordCodecBuilder withMinBodyBytes(int minBodyBytes) {
+      this.minBodyBytes = Optional.of(minBodyBytes);
+      return this;
+    }
+
+    public RecordCodec build() {
+      validate();
+      this.dictionary.ifPresent(store::put);
+      return new RecordCodec(this.store, this.dictionary, this.minBodyBytes.orElse(32));
+    }
+
+    private void validate() {
+      this.minBodyBytes.ifPresent(
+          bytes -> {
+            if (bytes < 0) {
+              throw new IllegalArgumentException("minBodyBytes must be a positive integer");
+            }
+          });
+    }
+  }
+}
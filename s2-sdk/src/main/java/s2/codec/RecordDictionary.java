@@ -0,0 +1,161 @@
+package s2.codec;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.zip.Adler32;
+
+/**
+ * Preset dictionary for compressing record bodies, holding byte sequences which are common in the
+ * records of a stream.
+ *
+ * <p>Small records compress poorly on their own, because there is little earlier data in each
+ * record for the compressor to refer back to. A dictionary supplies that data up front, so records
+ * as small as a few hundred bytes can shrink several times over.
+ */
+public final class RecordDictionary {
+
+  /** Largest useful dictionary, which is the size of the deflate window. */
+  public static final int MAX_BYTES = 32 * 1024;
+
+  // Length of the substrings counted while training, and of the segments selected.
+  static final int GRAM_BYTES = 8;
+  static final int SEGMENT_BYTES = 64;
+
+  /** Adler-32 checksum of the dictionary, which is how zlib identifies dictionaries. */
+  public final int id;
+
+  public final ByteString bytes;
+
+  private RecordDictionary(int id, ByteString bytes) {
+    this.id = id;
+    this.bytes = bytes;
+  }
+
+  /**
+   * Dictionary with the given contents.
+   *
+   * @param bytes the contents, of at most {@link #MAX_BYTES}
+   * @return the dictionary
+   */
+  public static RecordDictionary of(ByteString bytes) {
+    if (bytes.isEmpty() || bytes.size() > MAX_BYTES) {
+      throw new IllegalArgumentException(
+          String.format("dictionary must be between 1 and %s bytes", MAX_BYTES));
+    }
+    final Adler32 adler = new Adler32();
+    adler.update(bytes.asReadOnlyByteBuffer());
+    return new RecordDictionary((int) adler.getValue(), bytes);
+  }
+
+  /**
+   * Train a dictionary from sample record bodies.
+   *
+   * <p>Segments of the samples are chosen greedily by how many samples contain the substrings they
+   * are made of, not counting substrings already covered by a chosen segment. The best segments are
+   * placed last, since the compressor refers to the end of the dictionary most cheaply.
+   *
+   * @param samples sample record bodies, ideally recent records from the stream
+   * @param maxBytes size of the dictionary, of at most {@link #MAX_BYTES}
+   * @return the dictionary
+   */
+  public static RecordDictionary train(List<ByteString> samples, int maxBytes) {
+    if (maxBytes <= 0 || maxBytes > MAX_BYTES) {
+      throw new IllegalArgumentException(
+          String.format("maxBytes must be between 1 and %s", MAX_BYTES));
+    }
+
+    // Number of samples containing each substring.
+    final Map<Long, Integer> frequencies = new HashMap<>();
+    for (final ByteString sample : samples) {
+      final Set<Long> seen = new HashSet<>();
+      for (int i = 0; i + GRAM_BYTES <= sample.size(); i++) {
+        final long gram = gram(sample, i);
+        if (seen.add(gram)) {
+          frequencies.merge(gram, 1, Integer::sum);
+        }
+      }
+    }
+
+    final PriorityQueue<Segment> candidates =
+        new PriorityQueue<>((a, b) -> Long.compare(b.score, a.score));
+    for (final ByteString sample : samples) {
+      for (int start = 0; start < sample.size(); start += SEGMENT_BYTES / 2) {
+        final Segment segment =
+            new Segment(sample.substring(start, Math.min(start + SEGMENT_BYTES, sample.size())));
+        segment.score = segment.score(frequencies);
+        if (segment.score > 0) {
+          candidates.add(segment);
+        }
+      }
+    }
+
+    // Lazy greedy selection: a candidate's score only drops as segments are chosen, so it is chosen
+    // if its rescored value still beats the next best candidate's stale score.
+    final List<Segment> chosen = new ArrayList<>();
+    int size = 0;
+    while (size < maxBytes && !candidates.isEmpty()) {
+      final Segment best = candidates.poll();
+      final long score = best.score(frequencies);
+      if (score <= 0) {
+        continue;
+      }
+      if (!candidates.isEmpty() && score < candidates.peek().score) {
+        best.score = score;
+        candidates.add(best);
+        continue;
+      }
+      chosen.add(best);
+      size += best.bytes.size();
+      for (int i = 0; i + GRAM_BYTES <= best.bytes.size(); i++) {
+        frequencies.remove(gram(best.bytes, i));
+      }
+    }
+    if (chosen.isEmpty()) {
+      throw new IllegalArgumentException("samples have no content in common");
+    }
+
+    ByteString dictionary = ByteString.EMPTY;
+    for (final Segment segment : chosen) {
+      dictionary = segment.bytes.concat(dictionary);
+    }
+    return of(dictionary.substring(Math.max(0, dictionary.size() - maxBytes)));
+  }
+
+  private static long gram(ByteString bytes, int offset) {
+    long gram = 0;
+    for (int i = 0; i < GRAM_BYTES; i++) {
+      gram = (gram << 8) | (bytes.byteAt(offset + i) & 0xff);
+    }
+    return gram;
+  }
+
+  private static final class Segment {
+    final ByteString bytes;
+    long score;
+
+    Segment(ByteString bytes) {
+      this.bytes = bytes;
+    }
+
+    /** Sum of the frequencies of the distinct substrings in the segment. */
+    long score(Map<Long, Integer> frequencies) {
+      final Set<Long> seen = new HashSet<>();
+      long score = 0;
+      for (int i = 0; i + GRAM_BYTES <= bytes.size(); i++) {
+        final long gram = gram(bytes, i);
+        if (seen.add(gram)) {
+          // A substring found in only one sample is not worth including.
+          final int frequency = frequencies.getOrDefault(gram, 0);
+          score += frequency > 1 ? frequency : 0;
+        }
+      }
+      return score;
+    }
+  }
+}
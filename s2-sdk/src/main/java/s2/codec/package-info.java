@@ -0,0 +1,2 @@
+/** Compression of record bodies before they are appended, and their decompression when read. */
+package s2.codec;
@@ -2,5 +2,13 @@ package s2.config;
 
 public enum AppendRetryPolicy {
   ALL,
-  NO_SIDE_EFFECTS
+  NO_SIDE_EFFECTS,
+  /**
+   * Retry appends without the risk of duplicates, by chaining {@code matchSeqNum} from one append
+   * to the next, and checking the tail before retrying to find out which appends landed.
+   *
+   * <p>This assumes the client is the stream's only writer. If the stream is appended to by
+   * anyone else, appends fail with {@code FAILED_PRECONDITION} rather than being retried.
+   */
+  EXACTLY_ONCE
 }
@@ -0,0 +1,168 @@
+package s2.config;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Policy for a circuit breaker guarding the unary RPCs sent to an endpoint.
+ *
+ * <p>The breaker tracks the outcome of the most recent {@link #windowSize} calls. Once at least
+ * {@link #minimumCalls} have been observed, it opens if the fraction which failed with a retryable
+ * status, or which took longer than {@link #slowCallDuration}, reaches its threshold. While open,
+ * calls fail immediately with {@code UNAVAILABLE}. After {@link #openDuration}, up to {@link
+ * #halfOpenProbes} calls are let through, and the breaker closes if all of them succeed.
+ */
+public class CircuitBreakerPolicy {
+  /** Number of recent calls considered. */
+  public final int windowSize;
+
+  /** Minimum number of calls observed before the breaker may open. */
+  public final int minimumCalls;
+
+  /** Fraction of failed calls at which the breaker opens. */
+  public final double failureRateThreshold;
+
+  /** Latency beyond which a call is considered slow, if latency should be considered at all. */
+  public final Optional<Duration> slowCallDuration;
+
+  /** Fraction of slow calls at which the breaker opens. */
+  public final double slowCallRateThreshold;
+
+  /** How long the breaker stays open before probing the endpoint. */
+  public final Duration openDuration;
+
+  /** Number of successful probes required to close the breaker. */
+  public final int halfOpenProbes;
+
+  private CircuitBreakerPolicy(
+      int windowSize,
+      int minimumCalls,
+      double failureRateThreshold,
+      Optional<Duration> slowCallDuration,
+      double slowCallRateThreshold,
+      Duration openDuration,
+      int halfOpenProbes) {
+    this.windowSize = windowSize;
+    this.minimumCalls = minimumCalls;
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallDuration = slowCallDuration;
+    this.slowCallRateThreshold = slowCallRateThreshold;
+    this.openDuration = openDuration;
+    this.halfOpenProbes = halfOpenProbes;
+  }
+
+  public static CircuitBreakerPolicyBuilder newBuilder() {
+    return new CircuitBreakerPolicyBuilder();
+  }
+
+  public static final class CircuitBreakerPolicyBuilder {
+    private Optional<Integer> windowSize = Optional.empty();
+    private Optional<Integer> minimumCalls = Optional.empty();
+    private Optional<Double> failureRateThreshold = Optional.empty();
+    private Optional<Duration> slowCallDuration = Optional.empty();
+    private Optional<Double> slowCallRateThreshold = Optional.empty();
+    private Optional<Duration> openDuration = Optional.empty();
+    private Optional<Integer> halfOpenProbes = Optional.empty();
+
+    CircuitBreakerPolicyBuilder() {}
+
+    public CircuitBreakerPolicyBuilder withWindowSize(int windowSize) {
+      this.windowSize = Optional.of(windowSize);
+      return this;
+    }
+
+    public CircuitBreakerPolicyBuilder withMinimumCalls(int minimumCalls) {
+      this.minimumCalls = Optional.of(minimumCalls);
+      return this;
+    }
+
+    public CircuitBreakerPolicyBuilder withFailureRateThreshold(double failureRateThreshold) {
+      this.failureRateThreshold = Optional.of(failureRateThreshold);
+      return this;
+    }
+
+    public CircuitBreakerPolicyBuilder withSlowCallDuration(Duration slowCallDuration) {
+      this.slowCallDuration = Optional.of(slowCallDuration);
+      return this;
+    }
+
+    public CircuitBreakerPolicyBuilder withSlowCallRateThreshold(double slowCallRateThreshold) {
+      this.slowCallRateThreshold = Optional.of(slowCallRateThreshold);
+      return this;
+    }
+
+    public CircuitBreakerPolicyBuilder withOpenDuration(Duration openDuration) {
+      this.openDuration = Optional.of(openDuration);
+      return this;
+    }
+
+    public CircuitBreakerPolicyBuilder withHalfOpenProbes(int halfOpenProbes) {
+      this.halfOpenProbes = Optional.of(halfOpenProbes);
+      return this;
+    }
+
+    public CircuitBreakerPolicy build() {
+      validate();
+      return new CircuitBreakerPolicy(
+          this.windowSize.orElse(100),
+          this.minimumCalls.orElse(20),
+          this.failureRateThreshold.orElse(0.5),
+          this.slowCallDuration,
+          this.slowCallRateThreshold.orElse(0.8),
+          this.openDuration.orElse(Duration.ofSeconds(10)),
+          this.halfOpenProbes.orElse(3));
+    }
+
+    private void validate() {
+      this.windowSize.ifPresent(
+          windowSize -> {
+            if (windowSize <= 0) {
+              throw new IllegalArgumentException("windowSize must be a positive integer");
+            }
+          });
+
+      this.minimumCalls.ifPresent(
+          minimumCalls -> {
+            if (minimumCalls <= 0 || minimumCalls > this.windowSize.orElse(100)) {
+              throw new IllegalArgumentException(
+                  "minimumCalls must be a positive integer, no greater than windowSize");
+            }
+          });
+
+      this.failureRateThreshold.ifPresent(
+          threshold -> {
+            if (!(threshold > 0 && threshold <= 1)) {
+              throw new IllegalArgumentException("failureRateThreshold must be between 0 and 1");
+            }
+          });
+
+      this.slowCallDuration.ifPresent(
+          duration -> {
+            if (duration.isNegative()) {
+              throw new IllegalArgumentException("slowCallDuration must be a positive duration");
+            }
+          });
+
+      this.slowCallRateThreshold.ifPresent(
+          threshold -> {
+            if (!(threshold > 0 && threshold <= 1)) {
+              throw new IllegalArgumentException("slowCallRateThreshold must be between 0 and 1");
+            }
+          });
+
+      this.openDuration.ifPresent(
+          duration -> {
+            if (duration.isNegative()) {
+              throw new IllegalArgumentException("openDuration must be a positive duration");
+            }
+          });
+
+      this.halfOpenProbes.ifPresent(
+          probes -> {
+            if (probes <= 0) {
+              throw new IllegalArgumentException("halfOpenProbes must be a positive integer");
+            }
+          });
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package s2.config;
+
+import io.grpc.Codec;
+import java.util.Optional;
+
+/**
+ * Policy for compressing messages sent to S2.
+ *
+ * <p>Messages are compressed with {@link #codec}, which is registered with gRPC's default {@link
+ * io.grpc.CompressorRegistry} when a client is built, so codecs such as zstd or lz4 can be supplied
+ * as {@link Codec} implementations. Channels created by the SDK also accept responses compressed
+ * with it; a channel supplied to a client builder needs the codec in its {@link
+ * io.grpc.DecompressorRegistry} for that. Only messages of at least {@link #minMessageBytes} are
+ * compressed, since small messages rarely shrink enough to pay for the CPU spent.
+ *
+ * <p>Compression is also adaptive: each client tracks the average ratio of compressed to
+ * uncompressed size of the messages it compresses, and while that ratio is above {@link
+ * #maxCompressionRatio}, only an occasional message is compressed, to keep observing whether the
+ * data has become compressible again.
+ */
+public class CompressionPolicy {
+  /** Codec used to compress messages. */
+  public final Codec codec;
+
+  /** Size below which messages are sent uncompressed. */
+  public final int minMessageBytes;
+
+  /** Ratio of compressed to uncompressed size above which compression is not worthwhile. */
+  public final double maxCompressionRatio;
+
+  private CompressionPolicy(Codec codec, int minMessageBytes, double maxCompressionRatio) {
+    this.codec = codec;
+    this.minMessageBytes = minMessageBytes;
+    this.maxCompressionRatio = maxCompressionRatio;
+  }
+
+  public static CompressionPolicyBuilder newBuilder() {
+    return new CompressionPolicyBuilder();
+  }
+
+  public static final class CompressionPolicyBuilder {
+    private Optional<Codec> codec = Optional.empty();
+    private Optional<Integer> minMessageBytes = Optional.empty();
+    private Optional<Double> maxCompressionRatio = Optional.empty();
+
+    CompressionPolicyBuilder() {}
+
+    public CompressionPolicyBuilder withCodec(Codec codec) {
+      this.codec = Optional.of(codec);
+      return this;
+    }
+
+    public CompressionPolicyBuilder withMinMessageBytes(int minMessageBytes) {
+      this.minMessageBytes = Optional.of(minMessageBytes);
+      return this;
+    }
+
+    public CompressionPolicyBuilder withMaxCompressionRatio(double maxCompressionRatio) {
+      this.maxCompressionRatio = Optional.of(maxCompressionRatio);
+      return this;
+    }
+
+    public CompressionPolicy build() {
+      validate();
+      return new CompressionPolicy(
+          this.codec.orElse(new Codec.Gzip()),
+          this.minMessageBytes.orElse(1024),
+          this.maxCompressionRatio.orElse(0.9));
+    }
+
+    private void validate() {
+      this.codec.ifPresent(
+          codec -> {
+            if (codec.getMessageEncoding().equals(Codec.Identity.NONE.getMessageEncoding())) {
+              throw new IllegalArgumentException("codec must not be the identity codec");
+            }
+          });
+
+      this.minMessageBytes.ifPresent(
+          bytes -> {
+            if (bytes < 0) {
+              throw new IllegalArgumentException("minMessageBytes must be a non-negative integer");
+            }
+          });
+
+      this.maxCompressionRatio.ifPresent(
+          ratio -> {
+            if (!(ratio > 0 && ratio <= 1)) {
+              throw new IllegalArgumentException("maxCompressionRatio must be in (0, 1]");
+            }
+          });
+    }
+  }
+}
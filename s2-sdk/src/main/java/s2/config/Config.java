@@ -3,56 +3,124 @@ package s2.config;
 import java.time.Duration;
 import java.time.temporal.TemporalUnit;
 import java.util.Optional;
+import s2.auth.BearerTokenCallCredentials;
+import s2.auth.TokenProvider;
+import s2.codec.RecordCodec;
+import s2.metrics.Metrics;
 
 public class Config {
-  public final String token;
+  /**
+   * The bearer token, if the config was built with a fixed token, otherwise null.
+   *
+   * @deprecated use {@link #tokenProvider}, which also supports rotating tokens
+   */
+  @Deprecated public final String token;
+
+  public final TokenProvider tokenProvider;
+  public final BearerTokenCallCredentials credentials;
   public final AppendRetryPolicy appendRetryPolicy;
+  public final Optional<CircuitBreakerPolicy> circuitBreakerPolicy;
   public final Boolean compression;
+  public final Optional<CompressionPolicy> compressionPolicy;
   public final Endpoints endpoints;
+  public final Optional<HedgingPolicy> hedgingPolicy;
+  public final Boolean jmx;
   public final Integer maxAppendInflightBytes;
   public final Integer maxRetries;
+  public final Duration metadataCacheTtl;
+  public final Integer metadataCacheMaxEntries;
+  public final Metrics metrics;
+  public final Optional<RecordCodec> recordCodec;
   public final Duration requestTimeout;
   public final Duration retryDelay;
+  public final Optional<TracingPolicy> tracingPolicy;
   public final String userAgent;
+  public final Boolean wireMetrics;
 
   private Config(
-      String token,
+      Optional<String> token,
+      TokenProvider tokenProvider,
       AppendRetryPolicy appendRetryPolicy,
+      Optional<CircuitBreakerPolicy> circuitBreakerPolicy,
       Boolean compression,
+      Optional<CompressionPolicy> compressionPolicy,
       Endpoints endpoints,
+      Optional<HedgingPolicy> hedgingPolicy,
+      Boolean jmx,
       Integer maxAppendInflightBytes,
       Integer maxRetries,
+      Duration metadataCacheTtl,
+      Integer metadataCacheMaxEntries,
+      Metrics metrics,
+      Optional<RecordCodec> recordCodec,
       Duration requestTimeout,
       Duration retryDelay,
-      String userAgent) {
-    this.token = token;
+      Optional<TracingPolicy> tracingPolicy,
+      String userAgent,
+      Boolean wireMetrics) {
+    this.token = token.orElse(null);
+    this.tokenProvider = tokenProvider;
+    this.credentials = BearerTokenCallCredentials.fromProvider(tokenProvider);
     this.appendRetryPolicy = appendRetryPolicy;
+    this.circuitBreakerPolicy = circuitBreakerPolicy;
     this.compression = compression;
+    this.compressionPolicy = compressionPolicy;
     this.endpoints = endpoints;
+    this.hedgingPolicy = hedgingPolicy;
+    this.jmx = jmx;
     this.maxAppendInflightBytes = maxAppendInflightBytes;
     this.maxRetries = maxRetries;
+    this.metadataCacheTtl = metadataCacheTtl;
+    this.metadataCacheMaxEntries = metadataCacheMaxEntries;
+    this.metrics = metrics;
+    this.recordCodec = recordCodec;
     this.requestTimeout = requestTimeout;
     this.retryDelay = retryDelay;
+    this.tracingPolicy = tracingPolicy;
     this.userAgent = userAgent;
+    this.wireMetrics = wireMetrics;
   }
 
   public static ConfigBuilder newBuilder(String token) {
-    return new ConfigBuilder(token);
+    return new ConfigBuilder(Optional.of(token), TokenProvider.fixed(token));
+  }
+
+  /**
+   * Create a config builder whose bearer token is obtained from a provider, allowing tokens to be
+   * rotated without rebuilding channels, clients, or sessions.
+   *
+   * @param tokenProvider the token provider
+   * @return the config builder
+   */
+  public static ConfigBuilder newBuilder(TokenProvider tokenProvider) {
+    return new ConfigBuilder(Optional.empty(), tokenProvider);
   }
 
   public static final class ConfigBuilder {
-    private final String token;
+    private final Optional<String> token;
+    private final TokenProvider tokenProvider;
     private Optional<AppendRetryPolicy> appendRetryPolicy = Optional.empty();
+    private Optional<CircuitBreakerPolicy> circuitBreakerPolicy = Optional.empty();
     private Optional<Endpoints> endpoints = Optional.empty();
+    private Optional<HedgingPolicy> hedgingPolicy = Optional.empty();
+    private Optional<Boolean> jmx = Optional.empty();
     private Optional<Integer> maxAppendInflightBytes = Optional.empty();
     private Optional<Integer> maxRetries = Optional.empty();
+    private Optional<Duration> metadataCacheTtl = Optional.empty();
+    private Optional<Integer> metadataCacheMaxEntries = Optional.empty();
+    private Optional<Metrics> metrics = Optional.empty();
+    private Optional<RecordCodec> recordCodec = Optional.empty();
     private Optional<Duration> requestTimeout = Optional.empty();
     private Optional<Duration> retryDelay = Optional.empty();
+    private Optional<TracingPolicy> tracingPolicy = Optional.empty();
     private Optional<String> userAgent = Optional.empty();
     private Optional<Boolean> compression = Optional.empty();
+    private Optional<CompressionPolicy> compressionPolicy = Optional.empty();
+    private Optional<Boolean> wireMetrics = Optional.empty();
 
-    ConfigBuilder(String token) {
+    ConfigBuilder(Optional<String> token, TokenProvider tokenProvider) {
       this.token = token;
+      this.tokenProvider = tokenProvider;
     }
 
     public ConfigBuilder withAppendRetryPolicy(AppendRetryPolicy appendRetryPolicy) {
@@ -60,16 +128,66 @@ public class Config {
       return this;
     }
 
+    /**
+     * Guard unary requests with a circuit breaker per endpoint, which fails requests immediately
+     * while the endpoint is unhealthy. Disabled by default.
+     *
+     * @param circuitBreakerPolicy the circuit breaker policy
+     * @return the config builder
+     */
+    public ConfigBuilder withCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+      this.circuitBreakerPolicy = Optional.of(circuitBreakerPolicy);
+      return this;
+    }
+
     public ConfigBuilder withCompression(Boolean compression) {
       this.compression = Optional.of(compression);
       return this;
     }
 
+    /**
+     * Compress messages sent to S2 according to the provided policy, rather than compressing every
+     * message with gzip as {@link #withCompression} does. Takes precedence over {@link
+     * #withCompression}.
+     *
+     * @param compressionPolicy the compression policy
+     * @return the config builder
+     */
+    public ConfigBuilder withCompressionPolicy(CompressionPolicy compressionPolicy) {
+      this.compressionPolicy = Optional.of(compressionPolicy);
+      return this;
+    }
+
     public ConfigBuilder withEndpoints(Endpoints endpoints) {
       this.endpoints = Optional.of(endpoints);
       return this;
     }
 
+    /**
+     * Hedge idempotent unary requests ({@code read} and {@code checkTail}) according to the
+     * provided policy. Hedging is disabled by default.
+     *
+     * @param hedgingPolicy the hedging policy
+     * @return the config builder
+     */
+    public ConfigBuilder withHedgingPolicy(HedgingPolicy hedgingPolicy) {
+      this.hedgingPolicy = Optional.of(hedgingPolicy);
+      return this;
+    }
+
+    /**
+     * Register append and read sessions as MBeans with the platform MBean server, exposing their
+     * live state for diagnostics. Disabled by default.
+     *
+     * @see s2.jmx
+     * @param jmx whether to register sessions
+     * @return the config builder
+     */
+    public ConfigBuilder withJmx(Boolean jmx) {
+      this.jmx = Optional.of(jmx);
+      return this;
+    }
+
     public ConfigBuilder withMaxAppendInflightBytes(int maxAppendInflightBytes) {
       this.maxAppendInflightBytes = Optional.of(maxAppendInflightBytes);
       return this;
@@ -80,33 +198,109 @@ public class Config {
       return this;
     }
 
+    /**
+     * Cache stream and basin configs, and stream listings, for up to the provided duration. Entries
+     * are invalidated by mutations made through the same client. Caching is disabled by default.
+     *
+     * @param ttl how long a cached entry may be served
+     * @return the config builder
+     */
+    public ConfigBuilder withMetadataCacheTtl(Duration ttl) {
+      this.metadataCacheTtl = Optional.of(ttl);
+      return this;
+    }
+
+    public ConfigBuilder withMetadataCacheMaxEntries(int maxEntries) {
+      this.metadataCacheMaxEntries = Optional.of(maxEntries);
+      return this;
+    }
+
+    /**
+     * Report metrics from clients and sessions to the provided receiver. Metrics are discarded by
+     * default.
+     *
+     * @param metrics the metrics receiver
+     * @return the config builder
+     */
+    public ConfigBuilder withMetrics(Metrics metrics) {
+      this.metrics = Optional.of(metrics);
+      return this;
+    }
+
     public ConfigBuilder withRequestTimeout(long timeout, TemporalUnit unit) {
       this.requestTimeout = Optional.of(Duration.of(timeout, unit));
       return this;
     }
 
+    /**
+     * Compress record bodies with the provided codec before appending them, and decompress them
+     * when read. Disabled by default.
+     *
+     * @param recordCodec the record codec
+     * @return the config builder
+     */
+    public ConfigBuilder withRecordCodec(RecordCodec recordCodec) {
+      this.recordCodec = Optional.of(recordCodec);
+      return this;
+    }
+
     public ConfigBuilder withRetryDelay(Duration delay) {
       this.retryDelay = Optional.of(delay);
       return this;
     }
 
+    /**
+     * Trace the latency of a sample of appended batches until they are read, according to the
+     * provided policy. Tracing is disabled by default.
+     *
+     * @param tracingPolicy the tracing policy
+     * @return the config builder
+     */
+    public ConfigBuilder withTracingPolicy(TracingPolicy tracingPolicy) {
+      this.tracingPolicy = Optional.of(tracingPolicy);
+      return this;
+    }
+
     public ConfigBuilder withUserAgent(String userAgent) {
       this.userAgent = Optional.of(userAgent);
       return this;
     }
 
+    /**
+     * Report the latency, message counts, and uncompressed and on-the-wire sizes of every RPC made
+     * by clients built with this config to {@link Metrics#rpcCompleted}. Disabled by default.
+     *
+     * @param wireMetrics whether to measure RPCs
+     * @return the config builder
+     */
+    public ConfigBuilder withWireMetrics(Boolean wireMetrics) {
+      this.wireMetrics = Optional.of(wireMetrics);
+      return this;
+    }
+
     public Config build() {
       validate();
       return new Config(
           this.token,
+          this.tokenProvider,
           this.appendRetryPolicy.orElse(AppendRetryPolicy.ALL),
+          this.circuitBreakerPolicy,
           this.compression.orElse(false),
+          this.compressionPolicy,
           this.endpoints.orElse(Endpoints.forCloud(Cloud.AWS)),
+          this.hedgingPolicy,
+          this.jmx.orElse(false),
           this.maxAppendInflightBytes.orElse(Integer.MAX_VALUE),
           this.maxRetries.orElse(3),
+          this.metadataCacheTtl.orElse(Duration.ZERO),
+          this.metadataCacheMaxEntries.orElse(1024),
+          this.metrics.orElse(Metrics.NOOP),
+          this.recordCodec,
           this.requestTimeout.orElse(Duration.ofSeconds(10)),
           this.retryDelay.orElse(Duration.ofMillis(50)),
-          this.userAgent.orElse("s2-sdk-java"));
+          this.tracingPolicy,
+          this.userAgent.orElse("s2-sdk-java"),
+          this.wireMetrics.orElse(false));
     }
 
     private void validate() {
@@ -124,6 +318,21 @@ public class Config {
             }
           });
 
+      this.metadataCacheTtl.ifPresent(
+          ttl -> {
+            if (ttl.isNegative()) {
+              throw new IllegalArgumentException("metadataCacheTtl must be a positive duration");
+            }
+          });
+
+      this.metadataCacheMaxEntries.ifPresent(
+          maxEntries -> {
+            if (maxEntries <= 0) {
+              throw new IllegalArgumentException(
+                  "metadataCacheMaxEntries must be a positive integer");
+            }
+          });
+
       this.maxAppendInflightBytes.ifPresent(
           bytes -> {
             if (bytes < 0) {
@@ -0,0 +1,116 @@
+package s2.config;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Policy for hedging idempotent unary requests, such as reads and tail checks.
+ *
+ * <p>When a request has not completed after a delay derived from recently observed latencies, a
+ * duplicate request is issued and whichever response arrives first is used. The amount of extra
+ * load is capped by a budget, which earns {@link #budgetRatio} of a hedge per request.
+ */
+public class HedgingPolicy {
+  private static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(5);
+  private static final Duration DEFAULT_MAX_DELAY = Duration.ofMillis(500);
+
+  /** Latency percentile after which a hedged request is issued. */
+  public final double percentile;
+
+  /** Lower bound on the delay before issuing a hedged request. */
+  public final Duration minDelay;
+
+  /**
+   * Upper bound on the delay before issuing a hedged request. This is also the delay used until
+   * enough latencies have been observed.
+   */
+  public final Duration maxDelay;
+
+  /** Fraction of requests which may be hedged, on average. */
+  public final double budgetRatio;
+
+  private HedgingPolicy(
+      double percentile, Duration minDelay, Duration maxDelay, double budgetRatio) {
+    this.percentile = percentile;
+    this.minDelay = minDelay;
+    this.maxDelay = maxDelay;
+    this.budgetRatio = budgetRatio;
+  }
+
+  public static HedgingPolicyBuilder newBuilder() {
+    return new HedgingPolicyBuilder();
+  }
+
+  public static final class HedgingPolicyBuilder {
+    private Optional<Double> percentile = Optional.empty();
+    private Optional<Duration> minDelay = Optional.empty();
+    private Optional<Duration> maxDelay = Optional.empty();
+    private Optional<Double> budgetRatio = Optional.empty();
+
+    HedgingPolicyBuilder() {}
+
+    public HedgingPolicyBuilder withPercentile(double percentile) {
+      this.percentile = Optional.of(percentile);
+      return this;
+    }
+
+    public HedgingPolicyBuilder withMinDelay(Duration minDelay) {
+      this.minDelay = Optional.of(minDelay);
+      return this;
+    }
+
+    public HedgingPolicyBuilder withMaxDelay(Duration maxDelay) {
+      this.maxDelay = Optional.of(maxDelay);
+      return this;
+    }
+
+    public HedgingPolicyBuilder withBudgetRatio(double budgetRatio) {
+      this.budgetRatio = Optional.of(budgetRatio);
+      return this;
+    }
+
+    public HedgingPolicy build() {
+      validate();
+      return new HedgingPolicy(
+          this.percentile.orElse(0.95),
+          this.minDelay.orElse(DEFAULT_MIN_DELAY),
+          this.maxDelay.orElse(DEFAULT_MAX_DELAY),
+          this.budgetRatio.orElse(0.1));
+    }
+
+    private void validate() {
+      this.percentile.ifPresent(
+          percentile -> {
+            if (!(percentile > 0 && percentile < 1)) {
+              throw new IllegalArgumentException("percentile must be between 0 and 1");
+            }
+          });
+
+      this.minDelay.ifPresent(
+          minDelay -> {
+            if (minDelay.isNegative()) {
+              throw new IllegalArgumentException("minDelay must be a positive duration");
+            }
+          });
+
+      this.maxDelay.ifPresent(
+          maxDelay -> {
+            if (maxDelay.isNegative()) {
+              throw new IllegalArgumentException("maxDelay must be a positive duration");
+            }
+          });
+
+      if (this.minDelay.orElse(DEFAULT_MIN_DELAY).compareTo(this.maxDelay.orElse(DEFAULT_MAX_DELAY))
+          > 0) {
+        throw new IllegalArgumentException("minDelay must not be greater than maxDelay");
+      }
+
+      this.budgetRatio.ifPresent(
+          budgetRatio -> {
+            if (!(budgetRatio >= 0 && budgetRatio <= 1)) {
+              throw new IllegalArgumentException("budgetRatio must be between 0 and 1");
+            }
+          });
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package s2.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Configuration for a local spill log, which buffers appends on disk until they have been
+ * acknowledged by S2.
+ *
+ * <p>The log is a directory of fixed-size, memory-mapped segment files. Appended entries are
+ * flushed to disk in groups, at most {@link #flushInterval} after they were written, so that many
+ * entries share the cost of each flush. A directory must be used by at most one spill log at a
+ * time.
+ */
+public class SpillLogConfig {
+  /** Directory holding the log's segment files. */
+  public final Path directory;
+
+  /** Size of each segment file, in bytes. */
+  public final int segmentBytes;
+
+  /** Maximum time an entry waits to be flushed to disk. */
+  public final Duration flushInterval;
+
+  private SpillLogConfig(Path directory, int segmentBytes, Duration flushInterval) {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    this.flushInterval = flushInterval;
+  }
+
+  public static SpillLogConfigBuilder newBuilder(Path directory) {
+    return new SpillLogConfigBuilder(directory);
+  }
+
+  public static final class SpillLogConfigBuilder {
+    /** Segments must hold at least one maximally sized batch. */
+    static final int MIN_SEGMENT_BYTES = 2 * 1024 * 1024;
+
+    private final Path directory;
+    private Optional<Integer> segmentBytes = Optional.empty();
+    private Optional<Duration> flushInterval = Optional.empty();
+
+    SpillLogConfigBuilder(Path directory) {
+      this.directory = directory;
+    }
+
+    public SpillLogConfigBuilder withSegmentBytes(int segmentBytes) {
+      this.segmentBytes = Optional.of(segmentBytes);
+      return this;
+    }
+
+    public SpillLogConfigBuilder withFlushInterval(Duration flushInterval) {
+      this.flushInterval = Optional.of(flushInterval);
+      return this;
+    }
+
+    public SpillLogConfig build() {
+      validate();
+      return new SpillLogConfig(
+          this.directory,
+          this.segmentBytes.orElse(64 * 1024 * 1024),
+          this.flushInterval.orElse(Duration.ofMillis(2)));
+    }
+
+    private void validate() {
+      this.segmentBytes.ifPresent(
+          segmentBytes -> {
+            if (segmentBytes < MIN_SEGMENT_BYTES) {
+              throw new IllegalArgumentException(
+                  String.format("segmentBytes must be at least %s", MIN_SEGMENT_BYTES));
+            }
+          });
+
+      this.flushInterval.ifPresent(
+          interval -> {
+            if (interval.isNegative()) {
+              throw new IllegalArgumentException("flushInterval must be a positive duration");
+            }
+          });
+    }
+  }
+}
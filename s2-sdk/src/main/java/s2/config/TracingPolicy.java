@@ -0,0 +1,54 @@
+package s2.config;
+
+import java.util.Optional;
+
+/**
+ * Policy for tracing the latency of records from being submitted for append to being read.
+ *
+ * <p>A fraction of appended batches, determined by {@link #sampleRate}, have a header named {@code
+ * s2-trace} added to their first record which is not a command record, holding the time the batch
+ * was submitted and a random trace ID. Clients with tracing enabled remove the header from records
+ * they read, and report the time elapsed since submission to {@link
+ * s2.metrics.Metrics#traceCompleted}. Clients without tracing enabled return the header like any
+ * other.
+ *
+ * <p>Latencies are computed from the wall clocks of the writing and reading hosts, so they are only
+ * as accurate as the clocks are synchronized.
+ */
+public class TracingPolicy {
+  /** Fraction of appended batches which are traced. */
+  public final double sampleRate;
+
+  private TracingPolicy(double sampleRate) {
+    this.sampleRate = sampleRate;
+  }
+
+  public static TracingPolicyBuilder newBuilder() {
+    return new TracingPolicyBuilder();
+  }
+
+  public static final class TracingPolicyBuilder {
+    private Optional<Double> sampleRate = Optional.empty();
+
+    TracingPolicyBuilder() {}
+
+    public TracingPolicyBuilder withSampleRate(double sampleRate) {
+      this.sampleRate = Optional.of(sampleRate);
+      return this;
+    }
+
+    public TracingPolicy build() {
+      validate();
+      return new TracingPolicy(this.sampleRate.orElse(0.01));
+    }
+
+    private void validate() {
+      this.sampleRate.ifPresent(
+          rate -> {
+            if (!(rate >= 0 && rate <= 1)) {
+              throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+            }
+          });
+    }
+  }
+}
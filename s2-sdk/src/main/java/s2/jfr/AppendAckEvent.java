@@ -0,0 +1,35 @@
+package s2.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** A batch was acknowledged as appended. */
+@Name("s2.AppendAck")
+@Label("Append Ack")
+@Description("A batch was acknowledged as appended.")
+@Category({"S2", "Append"})
+@Enabled(false)
+@StackTrace(false)
+public final class AppendAckEvent extends Event {
+  @Label("Stream")
+  public String stream;
+
+  @Label("Records")
+  public int records;
+
+  @Label("Metered Bytes")
+  @DataAmount
+  public long bytes;
+
+  @Label("Latency")
+  @Description("Time from the batch being submitted to its acknowledgement")
+  @Timespan
+  public long latency;
+}
@@ -0,0 +1,29 @@
+package s2.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A batch was sent on an append session. */
+@Name("s2.AppendSend")
+@Label("Append Send")
+@Description("A batch was sent on an append session.")
+@Category({"S2", "Append"})
+@Enabled(false)
+@StackTrace(false)
+public final class AppendSendEvent extends Event {
+  @Label("Stream")
+  public String stream;
+
+  @Label("Records")
+  public int records;
+
+  @Label("Metered Bytes")
+  @DataAmount
+  public long bytes;
+}
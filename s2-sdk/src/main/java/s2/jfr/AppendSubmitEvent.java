@@ -0,0 +1,33 @@
+package s2.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A batch was submitted to an append session, spanning any wait for buffer capacity or rate
+ * limiters.
+ */
+@Name("s2.AppendSubmit")
+@Label("Append Submit")
+@Description(
+    "A batch was submitted to an append session, spanning any wait for buffer capacity or rate limiters.")
+@Category({"S2", "Append"})
+@Enabled(false)
+@StackTrace(false)
+public final class AppendSubmitEvent extends Event {
+  @Label("Stream")
+  public String stream;
+
+  @Label("Records")
+  public int records;
+
+  @Label("Metered Bytes")
+  @DataAmount
+  public long bytes;
+}
@@ -0,0 +1,26 @@
+package s2.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** A read session received neither records nor heartbeats for too long. */
+@Name("s2.HeartbeatTimeout")
+@Label("Heartbeat Timeout")
+@Description("A read session received neither records nor heartbeats for too long.")
+@Category({"S2", "Session"})
+@Enabled(false)
+@StackTrace(false)
+public final class HeartbeatTimeoutEvent extends Event {
+  @Label("Stream")
+  public String stream;
+
+  @Label("Since Last Event")
+  @Timespan
+  public long sinceLastEvent;
+}
@@ -0,0 +1,30 @@
+package s2.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Batches which were inflight when an append session failed were resent on a new session. */
+@Name("s2.InflightRecovery")
+@Label("Inflight Recovery")
+@Description(
+    "Batches which were inflight when an append session failed were resent on a new session.")
+@Category({"S2", "Append"})
+@Enabled(false)
+@StackTrace(false)
+public final class InflightRecoveryEvent extends Event {
+  @Label("Stream")
+  public String stream;
+
+  @Label("Batches")
+  public int batches;
+
+  @Label("Metered Bytes")
+  @DataAmount
+  public long bytes;
+}
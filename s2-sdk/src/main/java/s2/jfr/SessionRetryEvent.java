@@ -0,0 +1,33 @@
+package s2.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** A session failed, and will be restarted after a delay. */
+@Name("s2.SessionRetry")
+@Label("Session Retry")
+@Description("A session failed, and will be restarted after a delay.")
+@Category({"S2", "Session"})
+@Enabled(false)
+@StackTrace(false)
+public final class SessionRetryEvent extends Event {
+  @Label("Stream")
+  public String stream;
+
+  @Label("Session")
+  @Description("Kind of session, append or read")
+  public String session;
+
+  @Label("Status")
+  public String status;
+
+  @Label("Delay")
+  @Timespan
+  public long delay;
+}
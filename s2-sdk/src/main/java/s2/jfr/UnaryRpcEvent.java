@@ -0,0 +1,24 @@
+package s2.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A unary RPC attempt, from the call starting to its status being received. */
+@Name("s2.UnaryRpc")
+@Label("Unary RPC")
+@Description("A unary RPC attempt, from the call starting to its status being received.")
+@Category({"S2", "RPC"})
+@Enabled(false)
+@StackTrace(false)
+public final class UnaryRpcEvent extends Event {
+  @Label("Method")
+  public String method;
+
+  @Label("Status")
+  public String status;
+}
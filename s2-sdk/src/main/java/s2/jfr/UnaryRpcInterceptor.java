@@ -0,0 +1,52 @@
+package s2.jfr;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * Interceptor which emits a {@link UnaryRpcEvent} for each unary call, when the event is enabled.
+ */
+public final class UnaryRpcInterceptor implements ClientInterceptor {
+
+  public static final UnaryRpcInterceptor INSTANCE = new UnaryRpcInterceptor();
+
+  private UnaryRpcInterceptor() {}
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    final UnaryRpcEvent event = new UnaryRpcEvent();
+    if (!event.isEnabled() || method.getType() != MethodDescriptor.MethodType.UNARY) {
+      return next.newCall(method, callOptions);
+    }
+    return new ForwardingClientCall.SimpleForwardingClientCall<>(
+        next.newCall(method, callOptions)) {
+      @Override
+      public void start(Listener<RespT> responseListener, Metadata headers) {
+        event.begin();
+        super.start(
+            new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(
+                responseListener) {
+              @Override
+              public void onClose(Status status, Metadata trailers) {
+                event.end();
+                if (event.shouldCommit()) {
+                  event.method = method.getFullMethodName();
+                  event.status = status.getCode().name();
+                  event.commit();
+                }
+                super.onClose(status, trailers);
+              }
+            },
+            headers);
+      }
+    };
+  }
+}
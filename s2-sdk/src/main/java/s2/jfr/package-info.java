@@ -0,0 +1,7 @@
+/**
+ * Java Flight Recorder events emitted by clients and sessions.
+ *
+ * <p>Every event is disabled by default. Enable them in a recording's settings by name, e.g. {@code
+ * jfr configure +s2.AppendAck#enabled=true}, or for the whole {@code S2} category.
+ */
+package s2.jfr;
@@ -0,0 +1,33 @@
+package s2.jmx;
+
+/** Live state of a {@link s2.client.ManagedAppendSession}. */
+public interface AppendSessionMXBean {
+  String getStream();
+
+  /** Batches sent, or being resent, which have not been acknowledged. */
+  int getInflightBatches();
+
+  /** Metered bytes submitted which have not been acknowledged. */
+  long getBufferedBytes();
+
+  /** Batches, acknowledgements and other notifications not yet processed by the session. */
+  int getPendingNotifications();
+
+  /** Milliseconds until the oldest inflight batch times out, or -1 if nothing is inflight. */
+  long getMillisUntilDeadline();
+
+  int getRemainingAttempts();
+
+  boolean isAcceptingAppends();
+
+  boolean isTerminated();
+
+  /**
+   * Restart the session's stream, resending inflight batches. Refused when {@link
+   * s2.config.AppendRetryPolicy#NO_SIDE_EFFECTS} is configured, as the batches may be duplicated.
+   */
+  void forceReconnect();
+
+  /** Stop accepting appends, and close the session once inflight batches are acknowledged. */
+  void close();
+}
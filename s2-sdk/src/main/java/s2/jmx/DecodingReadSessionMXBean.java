@@ -0,0 +1,22 @@
+package s2.jmx;
+
+/**
+ * Live state of a {@link s2.client.DecodingReadSession}. The underlying read session is registered
+ * separately.
+ */
+public interface DecodingReadSessionMXBean {
+  String getStream();
+
+  /** Batches and other items received but not yet consumed. */
+  int getBufferedItems();
+
+  /** Metered bytes received but not yet consumed. */
+  long getBufferedBytes();
+
+  /** Batches waiting for, or being decoded by, a worker. */
+  int getDecodingBatches();
+
+  boolean isClosed();
+
+  void close();
+}
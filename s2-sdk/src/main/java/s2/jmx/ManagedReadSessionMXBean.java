@@ -0,0 +1,19 @@
+package s2.jmx;
+
+/**
+ * Live state of a {@link s2.client.ManagedReadSession}. The underlying read session is registered
+ * separately.
+ */
+public interface ManagedReadSessionMXBean {
+  String getStream();
+
+  /** Batches and other items received but not yet consumed. */
+  int getBufferedItems();
+
+  /** Metered bytes received but not yet consumed. */
+  long getBufferedBytes();
+
+  boolean isClosed();
+
+  void close();
+}
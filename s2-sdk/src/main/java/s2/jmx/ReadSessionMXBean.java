@@ -0,0 +1,25 @@
+package s2.jmx;
+
+/** Live state of a {@link s2.client.ReadSession}. */
+public interface ReadSessionMXBean {
+  String getStream();
+
+  /** Where the session will resume reading from if restarted. */
+  String getNextStart();
+
+  long getConsumedRecords();
+
+  long getConsumedBytes();
+
+  int getRemainingAttempts();
+
+  /** Milliseconds since records or a heartbeat were last received. */
+  long getMillisSinceLastEvent();
+
+  boolean isTerminated();
+
+  /** Restart the session's stream from {@link #getNextStart()}. */
+  void forceReconnect();
+
+  void close();
+}
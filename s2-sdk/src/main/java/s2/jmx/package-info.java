@@ -0,0 +1,8 @@
+/**
+ * Management interfaces through which sessions expose their live state over JMX, when enabled by
+ * {@link s2.config.Config#jmx}.
+ *
+ * <p>Sessions are registered under the {@code s2} domain, with {@code type}, {@code basin}, {@code
+ * stream} and {@code id} keys, and unregistered once they terminate.
+ */
+package s2.jmx;
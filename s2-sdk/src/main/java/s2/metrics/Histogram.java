@@ -0,0 +1,98 @@
+package s2.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values, with buckets whose width grows with their magnitude.
+ *
+ * <p>Each power of two is split into {@value #SUB_BUCKETS} equal buckets, so any recorded value is
+ * reported with a relative error of at most {@code 1 / SUB_BUCKETS}, whatever its magnitude. The
+ * buckets are fixed up front, and recording is lock-free.
+ */
+public final class Histogram {
+
+  static final int SUB_BUCKET_BITS = 3;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private final AtomicLongArray counts =
+      new AtomicLongArray((Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Record a value.
+   *
+   * @param value the value, where negative values are recorded as zero
+   */
+  public void record(long value) {
+    final long clamped = Math.max(0, value);
+    counts.incrementAndGet(bucket(clamped));
+    count.increment();
+    sum.add(clamped);
+    max.accumulate(clamped);
+  }
+
+  public long count() {
+    return count.sum();
+  }
+
+  public long sum() {
+    return sum.sum();
+  }
+
+  public long max() {
+    return max.get();
+  }
+
+  public double mean() {
+    final long count = count();
+    return count == 0 ? 0 : (double) sum() / count;
+  }
+
+  /**
+   * Estimate the value at a percentile, as the largest value in the bucket it falls into.
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the estimate, or zero if nothing has been recorded
+   */
+  public long valueAtPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100");
+    }
+    final long total = count();
+    if (total == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highestValue(i), max());
+      }
+    }
+    return max();
+  }
+
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    final int shift = exponent - SUB_BUCKET_BITS;
+    final int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long highestValue(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    final int shift = bucket / SUB_BUCKETS - 1;
+    final long lowest = ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS)) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
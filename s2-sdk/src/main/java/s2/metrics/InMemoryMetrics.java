@@ -0,0 +1,277 @@
+package s2.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import s2.channel.CircuitBreaker;
+
+/**
+ * Metrics aggregated in memory across all streams, using counters and {@link Histogram}s, except
+ * for gauges of buffered bytes, which are kept per stream.
+ *
+ * <p>Intended to be polled periodically, e.g. by an exporter, or inspected directly in tests.
+ * Latencies are recorded in nanoseconds.
+ */
+public class InMemoryMetrics implements Metrics {
+
+  static final int RECENT_TRACES = 256;
+
+  private final Histogram appendLatencyNanos = new Histogram();
+  private final Histogram appendBatchRecords = new Histogram();
+  private final Histogram appendBatchBytes = new Histogram();
+  private final Histogram appendQueueNanos = new Histogram();
+  private final LongAdder appendedRecords = new LongAdder();
+  private final LongAdder appendedBytes = new LongAdder();
+  private final Map<String, Long> appendBufferBytes = new ConcurrentHashMap<>();
+  private final LongAdder retransmittedBatches = new LongAdder();
+  private final LongAdder appendReconnects = new LongAdder();
+  private final LongAdder readReconnects = new LongAdder();
+  private final LongAdder requestRetries = new LongAdder();
+  private final LongAdder readRecords = new LongAdder();
+  private final LongAdder readBytes = new LongAdder();
+  private final Histogram readLag = new Histogram();
+  private final Map<String, Long> readBufferBytes = new ConcurrentHashMap<>();
+  private final Map<String, MethodStats> methods = new ConcurrentHashMap<>();
+  private final Map<String, Histogram> endToEndLatencyNanos = new ConcurrentHashMap<>();
+  private final Map<String, CircuitBreaker.State> circuitBreakerStates = new ConcurrentHashMap<>();
+  private final LongAdder circuitBreakerRejections = new LongAdder();
+
+  // Most recent traces, as a ring buffer.
+  private final Trace[] recentTraces = new Trace[RECENT_TRACES];
+  private long traces = 0;
+
+  @Override
+  public void appendAcknowledged(String stream, int records, long meteredBytes, long latencyNanos) {
+    appendLatencyNanos.record(latencyNanos);
+    appendBatchRecords.record(records);
+    appendBatchBytes.record(meteredBytes);
+    appendedRecords.add(records);
+    appendedBytes.add(meteredBytes);
+  }
+
+  @Override
+  public void appendQueued(String stream, long waitNanos) {
+    appendQueueNanos.record(waitNanos);
+  }
+
+  @Override
+  public void appendBufferBytes(String stream, long bytes) {
+    appendBufferBytes.put(stream, bytes);
+  }
+
+  @Override
+  public void appendRetransmitted(String stream, int batches) {
+    retransmittedBatches.add(batches);
+  }
+
+  @Override
+  public void sessionReconnected(String stream, SessionType type) {
+    (type == SessionType.APPEND ? appendReconnects : readReconnects).increment();
+  }
+
+  @Override
+  public void requestRetried() {
+    requestRetries.increment();
+  }
+
+  @Override
+  public void recordsRead(String stream, int records, long meteredBytes) {
+    readRecords.add(records);
+    readBytes.add(meteredBytes);
+  }
+
+  @Override
+  public void readLag(String stream, long records) {
+    readLag.record(records);
+  }
+
+  @Override
+  public void readBufferBytes(String stream, long bytes) {
+    readBufferBytes.put(stream, bytes);
+  }
+
+  @Override
+  public void rpcCompleted(RpcStats stats) {
+    methods.computeIfAbsent(stats.method, method -> new MethodStats()).record(stats);
+  }
+
+  @Override
+  public void traceCompleted(Trace trace) {
+    endToEndLatencyNanos
+        .computeIfAbsent(trace.stream, stream -> new Histogram())
+        .record(trace.latencyNanos);
+    synchronized (recentTraces) {
+      recentTraces[(int) (traces++ % RECENT_TRACES)] = trace;
+    }
+  }
+
+  @Override
+  public void circuitBreakerStateChanged(String endpoint, CircuitBreaker.State state) {
+    circuitBreakerStates.put(endpoint, state);
+  }
+
+  @Override
+  public void circuitBreakerRejected(String endpoint) {
+    circuitBreakerRejections.increment();
+  }
+
+  /** Time from submitting a batch to its acknowledgement. */
+  public Histogram appendLatencyNanos() {
+    return appendLatencyNanos;
+  }
+
+  public Histogram appendBatchRecords() {
+    return appendBatchRecords;
+  }
+
+  public Histogram appendBatchBytes() {
+    return appendBatchBytes;
+  }
+
+  /** Time batches spent waiting for append session buffer capacity, or rate limiters. */
+  public Histogram appendQueueNanos() {
+    return appendQueueNanos;
+  }
+
+  public long appendedRecords() {
+    return appendedRecords.sum();
+  }
+
+  public long appendedBytes() {
+    return appendedBytes.sum();
+  }
+
+  /** Bytes most recently reported as buffered by an append session, keyed by stream. */
+  public Map<String, Long> appendBufferBytes() {
+    return appendBufferBytes;
+  }
+
+  public long retransmittedBatches() {
+    return retransmittedBatches.sum();
+  }
+
+  public long reconnects(SessionType type) {
+    return (type == SessionType.APPEND ? appendReconnects : readReconnects).sum();
+  }
+
+  public long requestRetries() {
+    return requestRetries.sum();
+  }
+
+  public long readRecords() {
+    return readRecords.sum();
+  }
+
+  public long readBytes() {
+    return readBytes.sum();
+  }
+
+  /** Records between read sessions and the tail, sampled after each batch. */
+  public Histogram readLag() {
+    return readLag;
+  }
+
+  /** Bytes most recently reported as buffered by a managed read session, keyed by stream. */
+  public Map<String, Long> readBufferBytes() {
+    return readBufferBytes;
+  }
+
+  /** Time from traced batches being submitted to being read, keyed by stream. */
+  public Map<String, Histogram> endToEndLatencyNanos() {
+    return endToEndLatencyNanos;
+  }
+
+  /** Up to the {@value #RECENT_TRACES} most recent traces, oldest first. */
+  public List<Trace> recentTraces() {
+    synchronized (recentTraces) {
+      final List<Trace> result = new ArrayList<>();
+      for (long i = Math.max(0, traces - RECENT_TRACES); i < traces; i++) {
+        result.add(recentTraces[(int) (i % RECENT_TRACES)]);
+      }
+      return result;
+    }
+  }
+
+  /** State most recently reported by each circuit breaker, keyed by endpoint. */
+  public Map<String, CircuitBreaker.State> circuitBreakerStates() {
+    return circuitBreakerStates;
+  }
+
+  public long circuitBreakerRejections() {
+    return circuitBreakerRejections.sum();
+  }
+
+  /** Statistics of completed RPCs, keyed by full method name. */
+  public Map<String, MethodStats> methods() {
+    return methods;
+  }
+
+  /** Statistics of the completed RPCs of one method. */
+  public static final class MethodStats {
+    private final Histogram latencyNanos = new Histogram();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder messagesReceived = new LongAdder();
+    private final LongAdder uncompressedBytesSent = new LongAdder();
+    private final LongAdder wireBytesSent = new LongAdder();
+    private final LongAdder uncompressedBytesReceived = new LongAdder();
+    private final LongAdder wireBytesReceived = new LongAdder();
+
+    void record(RpcStats stats) {
+      latencyNanos.record(stats.latencyNanos);
+      if (!stats.status.equals("OK")) {
+        failures.increment();
+      }
+      messagesSent.add(stats.messagesSent);
+      messagesReceived.add(stats.messagesReceived);
+      uncompressedBytesSent.add(stats.uncompressedBytesSent);
+      wireBytesSent.add(stats.wireBytesSent);
+      uncompressedBytesReceived.add(stats.uncompressedBytesReceived);
+      wireBytesReceived.add(stats.wireBytesReceived);
+    }
+
+    /** Latencies of completed calls, whose count is the number of calls. */
+    public Histogram latencyNanos() {
+      return latencyNanos;
+    }
+
+    /** Calls which completed with a status other than {@code OK}. */
+    public long failures() {
+      return failures.sum();
+    }
+
+    public long messagesSent() {
+      return messagesSent.sum();
+    }
+
+    public long messagesReceived() {
+      return messagesReceived.sum();
+    }
+
+    public long uncompressedBytesSent() {
+      return uncompressedBytesSent.sum();
+    }
+
+    public long wireBytesSent() {
+      return wireBytesSent.sum();
+    }
+
+    public long uncompressedBytesReceived() {
+      return uncompressedBytesReceived.sum();
+    }
+
+    public long wireBytesReceived() {
+      return wireBytesReceived.sum();
+    }
+
+    /** Ratio of wire to uncompressed bytes, in both directions, or 1 if nothing was transferred. */
+    public double compressionRatio() {
+      final long uncompressed = uncompressedBytesSent() + uncompressedBytesReceived();
+      return uncompressed == 0
+          ? 1
+          : (double) (wireBytesSent() + wireBytesReceived()) / uncompressed;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package s2.metrics;
+
+import s2.channel.CircuitBreaker;
+
+/**
+ * Receiver of metrics reported by clients and sessions.
+ *
+ * <p>Methods are called synchronously on the SDK's hot paths, including gRPC and session daemon
+ * threads, so implementations must be thread-safe and should not block. Every method does nothing
+ * by default, so adapters only need to implement the metrics they export.
+ *
+ * @see s2.config.Config#metrics
+ * @see InMemoryMetrics
+ */
+public interface Metrics {
+
+  /** Metrics which discard everything reported to them. */
+  Metrics NOOP = new Metrics() {};
+
+  enum SessionType {
+    APPEND,
+    READ
+  }
+
+  /**
+   * A batch of records was acknowledged as appended.
+   *
+   * @param stream the stream
+   * @param records number of records in the batch
+   * @param meteredBytes metered size of the batch
+   * @param latencyNanos time from the batch being submitted to its acknowledgement
+   */
+  default void appendAcknowledged(
+      String stream, int records, long meteredBytes, long latencyNanos) {}
+
+  /**
+   * A batch submitted to an append session waited for buffer capacity, or for rate limiters.
+   *
+   * @param stream the stream
+   * @param waitNanos time spent waiting
+   */
+  default void appendQueued(String stream, long waitNanos) {}
+
+  /**
+   * The amount of data buffered by an append session, awaiting acknowledgement, changed.
+   *
+   * @param stream the stream
+   * @param bytes metered bytes currently buffered
+   */
+  default void appendBufferBytes(String stream, long bytes) {}
+
+  /**
+   * Inflight batches were resent after an append session was restarted.
+   *
+   * @param stream the stream
+   * @param batches number of batches resent
+   */
+  default void appendRetransmitted(String stream, int batches) {}
+
+  /**
+   * A session is being restarted after a retryable failure.
+   *
+   * @param stream the stream
+   * @param type the kind of session
+   */
+  default void sessionReconnected(String stream, SessionType type) {}
+
+  /** A unary request is being retried. */
+  default void requestRetried() {}
+
+  /**
+   * A batch of records was read.
+   *
+   * @param stream the stream
+   * @param records number of records in the batch
+   * @param meteredBytes metered size of the batch
+   */
+  default void recordsRead(String stream, int records, long meteredBytes) {}
+
+  /**
+   * How far a read session is behind the most recently observed tail of the stream, after receiving
+   * a batch.
+   *
+   * @param stream the stream
+   * @param records number of records between the read position and the tail
+   */
+  default void readLag(String stream, long records) {}
+
+  /**
+   * The amount of data buffered by a managed read session, awaiting consumption, changed.
+   *
+   * @param stream the stream
+   * @param bytes metered bytes currently buffered
+   */
+  default void readBufferBytes(String stream, long bytes) {}
+
+  /**
+   * An RPC completed. Only reported when {@link s2.config.Config#wireMetrics} is enabled.
+   *
+   * @param stats the RPC's latency, message counts and sizes
+   */
+  default void rpcCompleted(RpcStats stats) {}
+
+  /**
+   * A traced record was read. Only reported when a {@link s2.config.TracingPolicy} is configured.
+   *
+   * @param trace the record's trace
+   */
+  default void traceCompleted(Trace trace) {}
+
+  /**
+   * The circuit breaker guarding an endpoint changed state. Only reported when a {@link
+   * s2.config.CircuitBreakerPolicy} is configured.
+   *
+   * @param endpoint the authority of the breaker's channel
+   * @param state the new state
+   */
+  default void circuitBreakerStateChanged(String endpoint, CircuitBreaker.State state) {}
+
+  /**
+   * A call was rejected by an open circuit breaker without being attempted.
+   *
+   * @param endpoint the authority of the breaker's channel
+   */
+  default void circuitBreakerRejected(String endpoint) {}
+}
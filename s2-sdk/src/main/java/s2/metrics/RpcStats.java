@@ -0,0 +1,46 @@
+package s2.metrics;
+
+/**
+ * Measurements of a completed RPC, as seen by the client's transport.
+ *
+ * <p>Uncompressed sizes are those of the serialized messages, while wire sizes are after any
+ * compression, so their ratio shows what compression saves.
+ */
+public final class RpcStats {
+  /** Full gRPC method name, e.g. {@code s2.v1alpha.StreamService/Append}. */
+  public final String method;
+
+  /** Name of the final gRPC status code, e.g. {@code OK}. */
+  public final String status;
+
+  /** Time from the call starting to its status being received. */
+  public final long latencyNanos;
+
+  public final long messagesSent;
+  public final long messagesReceived;
+  public final long uncompressedBytesSent;
+  public final long wireBytesSent;
+  public final long uncompressedBytesReceived;
+  public final long wireBytesReceived;
+
+  public RpcStats(
+      String method,
+      String status,
+      long latencyNanos,
+      long messagesSent,
+      long messagesReceived,
+      long uncompressedBytesSent,
+      long wireBytesSent,
+      long uncompressedBytesReceived,
+      long wireBytesReceived) {
+    this.method = method;
+    this.status = status;
+    this.latencyNanos = latencyNanos;
+    this.messagesSent = messagesSent;
+    this.messagesReceived = messagesReceived;
+    this.uncompressedBytesSent = uncompressedBytesSent;
+    this.wireBytesSent = wireBytesSent;
+    this.uncompressedBytesReceived = uncompressedBytesReceived;
+    this.wireBytesReceived = wireBytesReceived;
+  }
+}
@@ -0,0 +1,21 @@
+package s2.metrics;
+
+/** A traced record, read back after being appended. */
+public final class Trace {
+  public final String stream;
+
+  /** Random ID assigned when the record's batch was submitted. */
+  public final long traceId;
+
+  public final long seqNum;
+
+  /** Time from the record's batch being submitted to the record being read. */
+  public final long latencyNanos;
+
+  public Trace(String stream, long traceId, long seqNum, long latencyNanos) {
+    this.stream = stream;
+    this.traceId = traceId;
+    this.seqNum = seqNum;
+    this.latencyNanos = latencyNanos;
+  }
+}
@@ -0,0 +1,108 @@
+package s2.metrics;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Interceptor which reports an {@link RpcStats} for every call, including streaming calls, to
+ * {@link Metrics#rpcCompleted}.
+ *
+ * <p>Message counts and sizes are collected by a {@link ClientStreamTracer}, so they reflect what
+ * the transport actually sent and received, across any transparent retries of the call.
+ */
+public final class WireMetricsInterceptor implements ClientInterceptor {
+
+  private final Metrics metrics;
+
+  public WireMetricsInterceptor(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    final CallTracer tracer = new CallTracer();
+    return new ForwardingClientCall.SimpleForwardingClientCall<>(
+        next.newCall(method, callOptions.withStreamTracerFactory(tracer))) {
+      @Override
+      public void start(Listener<RespT> responseListener, Metadata headers) {
+        final long startNanos = System.nanoTime();
+        super.start(
+            new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(
+                responseListener) {
+              @Override
+              public void onClose(Status status, Metadata trailers) {
+                metrics.rpcCompleted(
+                    new RpcStats(
+                        method.getFullMethodName(),
+                        status.getCode().name(),
+                        System.nanoTime() - startNanos,
+                        tracer.messagesSent.get(),
+                        tracer.messagesReceived.get(),
+                        tracer.uncompressedBytesSent.get(),
+                        tracer.wireBytesSent.get(),
+                        tracer.uncompressedBytesReceived.get(),
+                        tracer.wireBytesReceived.get()));
+                super.onClose(status, trailers);
+              }
+            },
+            headers);
+      }
+    };
+  }
+
+  /** Totals for one call, shared by the tracers of every stream created for it. */
+  private static final class CallTracer extends ClientStreamTracer.Factory {
+    final AtomicLong messagesSent = new AtomicLong();
+    final AtomicLong messagesReceived = new AtomicLong();
+    final AtomicLong uncompressedBytesSent = new AtomicLong();
+    final AtomicLong wireBytesSent = new AtomicLong();
+    final AtomicLong uncompressedBytesReceived = new AtomicLong();
+    final AtomicLong wireBytesReceived = new AtomicLong();
+
+    @Override
+    public ClientStreamTracer newClientStreamTracer(
+        ClientStreamTracer.StreamInfo info, Metadata headers) {
+      return new ClientStreamTracer() {
+        @Override
+        public void outboundMessage(int seqNo) {
+          messagesSent.incrementAndGet();
+        }
+
+        @Override
+        public void inboundMessage(int seqNo) {
+          messagesReceived.incrementAndGet();
+        }
+
+        @Override
+        public void outboundUncompressedSize(long bytes) {
+          uncompressedBytesSent.addAndGet(bytes);
+        }
+
+        @Override
+        public void outboundWireSize(long bytes) {
+          wireBytesSent.addAndGet(bytes);
+        }
+
+        @Override
+        public void inboundUncompressedSize(long bytes) {
+          uncompressedBytesReceived.addAndGet(bytes);
+        }
+
+        @Override
+        public void inboundWireSize(long bytes) {
+          wireBytesReceived.addAndGet(bytes);
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,2 @@
+/** Interface through which clients report metrics, and a simple in-memory implementation. */
+package s2.metrics;
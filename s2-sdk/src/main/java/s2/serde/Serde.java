@@ -0,0 +1,99 @@
+package s2.serde;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import s2.types.Batch;
+import s2.types.SequencedRecord;
+
+/**
+ * Serializer and deserializer between values and record bodies.
+ *
+ * <p>Values are serialized into an {@link OutputStream} supplied by the session, which writes
+ * directly into a pooled buffer that becomes the record's body without being copied. Bodies are
+ * deserialized from the {@link ByteString} received, which can be read without copying through
+ * {@link ByteString#newInput} or {@link ByteString#asReadOnlyByteBuffer}.
+ *
+ * @param <T> type of the values
+ */
+public interface Serde<T> {
+
+  /**
+   * Write a value's serialized form.
+   *
+   * @param value the value
+   * @param out the stream to write to, which must not be retained or closed
+   * @throws IOException if the value could not be serialized
+   */
+  void serialize(T value, OutputStream out) throws IOException;
+
+  /**
+   * Read a value from a record body.
+   *
+   * @param body the body, which may be retained by the value
+   * @return the value
+   * @throws IllegalArgumentException if the body is not a serialized value
+   */
+  T deserialize(ByteString body);
+
+  /** Lazily deserialized values of a batch's records, in order. */
+  default Iterator<T> values(Batch batch) {
+    final Iterator<SequencedRecord> records = batch.sequencedRecordBatch.records.iterator();
+    return new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return records.hasNext();
+      }
+
+      @Override
+      public T next() {
+        return deserialize(records.next().body);
+      }
+    };
+  }
+
+  /** Strings, encoded as UTF-8. */
+  static Serde<String> utf8() {
+    return new Serde<>() {
+      @Override
+      public void serialize(String value, OutputStream out) throws IOException {
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+      }
+
+      @Override
+      public String deserialize(ByteString body) {
+        return body.toStringUtf8();
+      }
+    };
+  }
+
+  /**
+   * Protobuf messages.
+   *
+   * @param parser the message type's parser
+   * @param <M> the message type
+   * @return the serde
+   */
+  static <M extends MessageLite> Serde<M> protobuf(Parser<M> parser) {
+    return new Serde<>() {
+      @Override
+      public void serialize(M value, OutputStream out) throws IOException {
+        value.writeTo(out);
+      }
+
+      @Override
+      public M deserialize(ByteString body) {
+        try {
+          return parser.parseFrom(body);
+        } catch (InvalidProtocolBufferException e) {
+          throw new IllegalArgumentException("record body is not a valid message", e);
+        }
+      }
+    };
+  }
+}
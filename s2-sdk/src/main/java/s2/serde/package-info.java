@@ -0,0 +1,2 @@
+/** Conversion between typed values and record bodies, for typed append and read sessions. */
+package s2.serde;
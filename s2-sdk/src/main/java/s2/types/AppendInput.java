@@ -3,6 +3,7 @@ package s2.types;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class AppendInput implements MeteredBytes, Serializable {
   public final List<AppendRecord> records;
@@ -20,11 +21,43 @@ public class AppendInput implements MeteredBytes, Serializable {
     return new AppendInputBuilder();
   }
 
+  /**
+   * Copy of this input, which will only be appended if the stream's tail is at the provided
+   * sequence number.
+   *
+   * @param matchSeqNum the expected tail
+   * @return the copy
+   */
+  public AppendInput withMatchSeqNum(long matchSeqNum) {
+    return new AppendInput(records, Optional.of(matchSeqNum), fencingToken);
+  }
+
+  /**
+   * Copy of this input, with its records replaced.
+   *
+   * @param records the records
+   * @return the copy
+   */
+  public AppendInput withRecords(List<AppendRecord> records) {
+    return new AppendInput(records, matchSeqNum, fencingToken);
+  }
+
   @Override
   public long meteredBytes() {
     return this.records.stream().map(AppendRecord::meteredBytes).reduce(0L, Long::sum);
   }
 
+  public static AppendInput fromProto(s2.v1alpha.AppendInput appendInput) {
+    return new AppendInput(
+        appendInput.getRecordsList().stream()
+            .map(AppendRecord::fromProto)
+            .collect(Collectors.toList()),
+        appendInput.hasMatchSeqNum() ? Optional.of(appendInput.getMatchSeqNum()) : Optional.empty(),
+        appendInput.hasFencingToken()
+            ? Optional.of(appendInput.getFencingToken())
+            : Optional.empty());
+  }
+
   public s2.v1alpha.AppendInput toProto(String streamName) {
     var builder = s2.v1alpha.AppendInput.newBuilder();
     builder.setStream(streamName);
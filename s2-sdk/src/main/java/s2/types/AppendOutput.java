@@ -5,7 +5,7 @@ public class AppendOutput {
   public final StreamPosition end;
   public final StreamPosition tail;
 
-  AppendOutput(StreamPosition start, StreamPosition end, StreamPosition tail) {
+  public AppendOutput(StreamPosition start, StreamPosition end, StreamPosition tail) {
     this.start = start;
     this.end = end;
     this.tail = tail;
@@ -5,6 +5,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class AppendRecord implements MeteredBytes, Serializable {
 
@@ -28,6 +29,12 @@ public class AppendRecord implements MeteredBytes, Serializable {
         + this.body.size();
   }
 
+  public static AppendRecord fromProto(s2.v1alpha.AppendRecord appendRecord) {
+    return new AppendRecord(
+        appendRecord.getHeadersList().stream().map(Header::fromProto).collect(Collectors.toList()),
+        appendRecord.getBody());
+  }
+
   public s2.v1alpha.AppendRecord toProto() {
     return s2.v1alpha.AppendRecord.newBuilder()
         .addAllHeaders(() -> this.headers.stream().map(Header::toProto).iterator())
@@ -1,5 +1,6 @@
 package s2.types;
 
+import java.util.List;
 import java.util.Optional;
 
 public final class Batch implements ReadOutput, MeteredBytes {
@@ -10,10 +11,22 @@ public final class Batch implements ReadOutput, MeteredBytes {
     this.sequencedRecordBatch = sequencedRecordBatch;
   }
 
+  /**
+   * Copy of this batch, with its records replaced.
+   *
+   * @param records the records
+   * @return the copy
+   */
+  public Batch withRecords(List<SequencedRecord> records) {
+    return new Batch(new SequencedRecordBatch(records));
+  }
+
   public Optional<StreamPosition> firstPosition() {
-    return this.sequencedRecordBatch.records.stream()
-        .findFirst()
-        .map(sr -> new StreamPosition(sr.seqNum, sr.timestamp));
+    if (this.sequencedRecordBatch.records.isEmpty()) {
+      return Optional.empty();
+    }
+    var firstRecord = this.sequencedRecordBatch.records.get(0);
+    return Optional.of(new StreamPosition(firstRecord.seqNum, firstRecord.timestamp));
   }
 
   public Optional<StreamPosition> lastPosition() {
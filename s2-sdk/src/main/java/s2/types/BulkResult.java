@@ -0,0 +1,38 @@
+package s2.types;
+
+import java.util.Optional;
+
+/** Outcome of one item of a bulk operation. */
+public class BulkResult<I, R> {
+  /** The item this result is for. */
+  public final I input;
+
+  /** Result of the operation, if it succeeded. */
+  public final Optional<R> result;
+
+  /** Cause of failure, if the operation failed after exhausting its retries. */
+  public final Optional<Throwable> error;
+
+  private BulkResult(I input, Optional<R> result, Optional<Throwable> error) {
+    this.input = input;
+    this.result = result;
+    this.error = error;
+  }
+
+  public static <I, R> BulkResult<I, R> success(I input, R result) {
+    return new BulkResult<>(input, Optional.ofNullable(result), Optional.empty());
+  }
+
+  public static <I, R> BulkResult<I, R> failure(I input, Throwable error) {
+    return new BulkResult<>(input, Optional.empty(), Optional.of(error));
+  }
+
+  public boolean isSuccess() {
+    return error.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("BulkResult[input=%s, result=%s, error=%s]", input, result, error);
+  }
+}
@@ -0,0 +1,108 @@
+package s2.types;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Flyweight cursor over the records of a read batch, which reads them in place from the decoded
+ * response rather than materializing a {@link SequencedRecord} and {@link Header} objects for each.
+ *
+ * <p>A cursor starts before the first record, and {@link #next} advances it. Accessors describe the
+ * record the cursor is on. Values read from a cursor must not be assumed to stay valid beyond the
+ * batch they came from, except for the immutable {@link ByteString}s it returns.
+ */
+public final class RecordCursor {
+
+  private s2.v1alpha.SequencedRecordBatch batch =
+      s2.v1alpha.SequencedRecordBatch.getDefaultInstance();
+  private s2.v1alpha.SequencedRecord record;
+  private int index = -1;
+
+  RecordCursor() {}
+
+  /**
+   * Cursor positioned before the first record of a batch. Intended for the client, which hands
+   * cursors to callers of {@code StreamClient#cursorReadSession}.
+   *
+   * @param batch the batch
+   * @return a new cursor
+   */
+  public static RecordCursor fromProto(s2.v1alpha.SequencedRecordBatch batch) {
+    return new RecordCursor().reset(batch);
+  }
+
+  /** Position the cursor before the first record of another batch, so it can be reused. */
+  RecordCursor reset(s2.v1alpha.SequencedRecordBatch batch) {
+    this.batch = batch;
+    this.record = null;
+    this.index = -1;
+    return this;
+  }
+
+  /** Number of records in the batch. */
+  public int size() {
+    return batch.getRecordsCount();
+  }
+
+  /**
+   * Advance to the next record.
+   *
+   * @return whether there was a next record
+   */
+  public boolean next() {
+    if (index + 1 >= batch.getRecordsCount()) {
+      record = null;
+      return false;
+    }
+    record = batch.getRecords(++index);
+    return true;
+  }
+
+  public long seqNum() {
+    return current().getSeqNum();
+  }
+
+  public long timestamp() {
+    return current().getTimestamp();
+  }
+
+  public ByteString body() {
+    return current().getBody();
+  }
+
+  public int headerCount() {
+    return current().getHeadersCount();
+  }
+
+  public ByteString headerName(int i) {
+    return current().getHeaders(i).getName();
+  }
+
+  public ByteString headerValue(int i) {
+    return current().getHeaders(i).getValue();
+  }
+
+  /** Metered size of the whole batch, as {@link SequencedRecordBatch#meteredBytes} computes it. */
+  public long meteredBytes() {
+    return meteredBytes(batch);
+  }
+
+  /** Metered size of a batch in its protobuf form, without converting it. */
+  public static long meteredBytes(s2.v1alpha.SequencedRecordBatch batch) {
+    long bytes = 0;
+    for (int i = 0; i < batch.getRecordsCount(); i++) {
+      final s2.v1alpha.SequencedRecord r = batch.getRecords(i);
+      bytes += 8 + 2L * r.getHeadersCount() + r.getBody().size();
+      for (int h = 0; h < r.getHeadersCount(); h++) {
+        bytes += r.getHeaders(h).getName().size() + r.getHeaders(h).getValue().size();
+      }
+    }
+    return bytes;
+  }
+
+  private s2.v1alpha.SequencedRecord current() {
+    if (record == null) {
+      throw new IllegalStateException("cursor is not on a record");
+    }
+    return record;
+  }
+}
@@ -1,8 +1,8 @@
 package s2.types;
 
 import com.google.protobuf.ByteString;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class SequencedRecord implements MeteredBytes {
   public final long seqNum;
@@ -17,21 +17,44 @@ public class SequencedRecord implements MeteredBytes {
     this.timestamp = timestamp;
   }
 
+  /**
+   * Copy of this record, with its headers replaced.
+   *
+   * @param headers the headers
+   * @return the copy
+   */
+  public SequencedRecord withHeaders(List<Header> headers) {
+    return new SequencedRecord(seqNum, headers, body, timestamp);
+  }
+
+  /**
+   * Copy of this record, with its body replaced.
+   *
+   * @param body the body
+   * @return the copy
+   */
+  public SequencedRecord withBody(ByteString body) {
+    return new SequencedRecord(seqNum, headers, body, timestamp);
+  }
+
   public static SequencedRecord fromProto(s2.v1alpha.SequencedRecord sequencedRecord) {
+    final List<Header> headers = new ArrayList<>(sequencedRecord.getHeadersCount());
+    for (int i = 0; i < sequencedRecord.getHeadersCount(); i++) {
+      headers.add(Header.fromProto(sequencedRecord.getHeaders(i)));
+    }
     return new SequencedRecord(
         sequencedRecord.getSeqNum(),
-        sequencedRecord.getHeadersList().stream()
-            .map(Header::fromProto)
-            .collect(Collectors.toList()),
+        headers,
         sequencedRecord.getBody(),
         sequencedRecord.getTimestamp());
   }
 
   @Override
   public long meteredBytes() {
-    return 8
-        + (2L * this.headers.size())
-        + this.headers.stream().map(h -> h.name.size() + h.value.size()).reduce(0, Integer::sum)
-        + this.body.size();
+    long bytes = 8 + (2L * this.headers.size()) + this.body.size();
+    for (final Header header : this.headers) {
+      bytes += header.name.size() + header.value.size();
+    }
+    return bytes;
   }
 }
@@ -1,7 +1,7 @@
 package s2.types;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class SequencedRecordBatch implements MeteredBytes {
   public final List<SequencedRecord> records;
@@ -11,14 +11,19 @@ public class SequencedRecordBatch implements MeteredBytes {
   }
 
   public static SequencedRecordBatch fromProto(s2.v1alpha.SequencedRecordBatch batch) {
-    return new SequencedRecordBatch(
-        batch.getRecordsList().stream()
-            .map(SequencedRecord::fromProto)
-            .collect(Collectors.toList()));
+    final List<SequencedRecord> records = new ArrayList<>(batch.getRecordsCount());
+    for (int i = 0; i < batch.getRecordsCount(); i++) {
+      records.add(SequencedRecord.fromProto(batch.getRecords(i)));
+    }
+    return new SequencedRecordBatch(records);
   }
 
   @Override
   public long meteredBytes() {
-    return this.records.stream().map(SequencedRecord::meteredBytes).reduce(0L, Long::sum);
+    long bytes = 0;
+    for (final SequencedRecord record : this.records) {
+      bytes += record.meteredBytes();
+    }
+    return bytes;
   }
 }
@@ -2,11 +2,15 @@ package s2.auth;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import io.grpc.CallCredentials;
 import io.grpc.Metadata;
+import java.time.Instant;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -49,4 +53,69 @@ class BearerTokenCallCredentialsTest {
         .isInstanceOf(IllegalArgumentException.class)
         .hasMessageContaining("Token cannot be null or empty");
   }
+
+  @Test
+  void shouldApplyFixedTokenWithoutExecutor() {
+    var credentials = new BearerTokenCallCredentials("test-token");
+    Executor failingExecutor =
+        r -> {
+          throw new AssertionError("executor should not be used for a cached token");
+        };
+
+    credentials.applyRequestMetadata(null, failingExecutor, metadataApplier);
+    credentials.applyRequestMetadata(null, failingExecutor, metadataApplier);
+
+    var metadataCaptor = ArgumentCaptor.forClass(Metadata.class);
+    verify(metadataApplier, times(2)).apply(metadataCaptor.capture());
+    assertThat(metadataCaptor.getAllValues().get(0)).isSameAs(metadataCaptor.getAllValues().get(1));
+  }
+
+  @Test
+  void shouldFetchFromProviderOnceAndPickUpRotatedToken() {
+    var current = new AtomicReference<>("first-token");
+    var fetches = new AtomicInteger();
+    var credentials =
+        BearerTokenCallCredentials.fromProvider(
+            () -> {
+              fetches.incrementAndGet();
+              return Token.of(current.get());
+            });
+    Executor directExecutor = Runnable::run;
+
+    credentials.applyRequestMetadata(null, directExecutor, metadataApplier);
+    credentials.applyRequestMetadata(null, directExecutor, metadataApplier);
+    assertThat(fetches.get()).isEqualTo(1);
+
+    current.set("second-token");
+    credentials.refresh();
+    credentials.applyRequestMetadata(null, directExecutor, metadataApplier);
+    assertThat(fetches.get()).isEqualTo(2);
+
+    var metadataCaptor = ArgumentCaptor.forClass(Metadata.class);
+    verify(metadataApplier, times(3)).apply(metadataCaptor.capture());
+    var authHeader = Metadata.Key.of("Authorization", Metadata.ASCII_STRING_MARSHALLER);
+    assertThat(metadataCaptor.getAllValues().get(1).get(authHeader))
+        .isEqualTo("Bearer first-token");
+    assertThat(metadataCaptor.getAllValues().get(2).get(authHeader))
+        .isEqualTo("Bearer second-token");
+  }
+
+  @Test
+  void shouldNotRefetchExpiredTokenWithinMinimumInterval() {
+    var fetches = new AtomicInteger();
+    var credentials =
+        BearerTokenCallCredentials.fromProvider(
+            () ->
+                Token.expiringAt(
+                    "token-" + fetches.incrementAndGet(), Instant.now().minusSeconds(1)));
+    Executor directExecutor = Runnable::run;
+
+    credentials.applyRequestMetadata(null, directExecutor, metadataApplier);
+    credentials.applyRequestMetadata(null, directExecutor, metadataApplier);
+    assertThat(fetches.get()).isEqualTo(1);
+
+    credentials.refresh();
+    credentials.applyRequestMetadata(null, directExecutor, metadataApplier);
+    assertThat(fetches.get()).isEqualTo(2);
+  }
 }
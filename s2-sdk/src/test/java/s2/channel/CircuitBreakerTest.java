@@ -0,0 +1,104 @@
+package s2.channel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import s2.channel.CircuitBreaker.Outcome;
+import s2.channel.CircuitBreaker.State;
+import s2.config.CircuitBreakerPolicy;
+import s2.metrics.InMemoryMetrics;
+import s2.metrics.Metrics;
+
+public class CircuitBreakerTest {
+
+  private static void complete(CircuitBreaker breaker, Outcome outcome) {
+    breaker.onComplete(breaker.tryAcquire(), outcome, 0);
+  }
+
+  @Test
+  public void testOpensOnFailureRateAndRecoversAfterProbes() throws Exception {
+    var metrics = new InMemoryMetrics();
+    var breaker =
+        new CircuitBreaker(
+            CircuitBreakerPolicy.newBuilder()
+                .withWindowSize(10)
+                .withMinimumCalls(4)
+                .withOpenDuration(Duration.ofMillis(20))
+                .withHalfOpenProbes(2)
+                .build(),
+            "endpoint",
+            metrics);
+
+    complete(breaker, Outcome.SUCCESS);
+    complete(breaker, Outcome.FAILURE);
+    complete(breaker, Outcome.SUCCESS);
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+    complete(breaker, Outcome.FAILURE);
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+    assertThat(metrics.circuitBreakerStates()).containsEntry("endpoint", State.OPEN);
+    assertThat(breaker.tryAcquire()).isEqualTo(CircuitBreaker.REJECTED);
+
+    Thread.sleep(30);
+    var first = breaker.tryAcquire();
+    var second = breaker.tryAcquire();
+    assertThat(breaker.tryAcquire()).isEqualTo(CircuitBreaker.REJECTED);
+    breaker.onComplete(first, Outcome.SUCCESS, 0);
+    assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+    breaker.onComplete(second, Outcome.SUCCESS, 0);
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+    assertThat(breaker.rejectedCalls()).isEqualTo(2);
+    assertThat(metrics.circuitBreakerStates()).containsEntry("endpoint", State.CLOSED);
+    assertThat(metrics.circuitBreakerRejections()).isEqualTo(2);
+  }
+
+  @Test
+  public void testFailedProbeReopensAndStaleOutcomesAreIgnored() throws Exception {
+    var breaker =
+        new CircuitBreaker(
+            CircuitBreakerPolicy.newBuilder()
+                .withWindowSize(2)
+                .withMinimumCalls(2)
+                .withOpenDuration(Duration.ofMillis(20))
+                .build(),
+            "endpoint",
+            Metrics.NOOP);
+
+    var stale = breaker.tryAcquire();
+    complete(breaker, Outcome.FAILURE);
+    complete(breaker, Outcome.FAILURE);
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+
+    Thread.sleep(30);
+    var probe = breaker.tryAcquire();
+    // A call admitted before the breaker opened does not count as a probe.
+    breaker.onComplete(stale, Outcome.SUCCESS, 0);
+    breaker.onComplete(probe, Outcome.FAILURE, 0);
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+  }
+
+  @Test
+  public void testSlowCancelledProbeDoesNotReopen() throws Exception {
+    var breaker =
+        new CircuitBreaker(
+            CircuitBreakerPolicy.newBuilder()
+                .withWindowSize(1)
+                .withMinimumCalls(1)
+                .withSlowCallDuration(Duration.ofMillis(10))
+                .withOpenDuration(Duration.ofMillis(20))
+                .withHalfOpenProbes(1)
+                .build(),
+            "endpoint",
+            Metrics.NOOP);
+
+    complete(breaker, Outcome.FAILURE);
+    Thread.sleep(30);
+    var cancelled = breaker.tryAcquire();
+    breaker.onComplete(cancelled, Outcome.IGNORED, Duration.ofSeconds(1).toNanos());
+    assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+
+    // The cancelled probe's slot is free for another.
+    complete(breaker, Outcome.SUCCESS);
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+  }
+}
@@ -0,0 +1,36 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import s2.config.CompressionPolicy;
+
+public class AdaptiveCompressionTest {
+
+  @Test
+  public void testBacksOffAndProbesIncompressibleData() {
+    var compression =
+        new AdaptiveCompression(
+            CompressionPolicy.newBuilder()
+                .withMinMessageBytes(1024)
+                .withMaxCompressionRatio(0.9)
+                .build());
+
+    assertThat(compression.shouldCompress(100)).isFalse();
+    assertThat(compression.shouldCompress(4096)).isTrue();
+
+    // Incompressible messages grow slightly when compressed.
+    IntStream.range(0, 50).forEach(i -> compression.observe(4106, 4096));
+    assertThat(compression.ratio()).isGreaterThan(0.9);
+    var compressed =
+        IntStream.range(0, AdaptiveCompression.PROBE_INTERVAL * 4)
+            .filter(i -> compression.shouldCompress(4096))
+            .count();
+    assertThat(compressed).isEqualTo(4);
+
+    // Once probes show the data is compressible again, every message is compressed.
+    IntStream.range(0, 50).forEach(i -> compression.observe(1024, 4096));
+    assertThat(compression.shouldCompress(4096)).isTrue();
+  }
+}
@@ -0,0 +1,203 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.grpc.Context;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import s2.channel.AutoClosableManagedChannel;
+import s2.config.Config;
+import s2.v1alpha.CheckTailRequest;
+import s2.v1alpha.CheckTailResponse;
+import s2.v1alpha.StreamServiceGrpc.StreamServiceImplBase;
+
+public class BaseClientTest {
+  private static final Duration RETRY_DELAY = Duration.ofMillis(100);
+
+  // Absolute deadline of each check tail call the server received, in nanoTime.
+  private final List<Long> deadlines = new CopyOnWriteArrayList<>();
+  private final BlockingQueue<StreamObserver<CheckTailResponse>> calls =
+      new LinkedBlockingQueue<>();
+  private final CountDownLatch cancelled = new CountDownLatch(1);
+  private Server server;
+  private ManagedChannel streamChannel;
+  private ManagedChannel channel;
+  private ScheduledExecutorService executor;
+  private BasinClient client;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    server =
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(
+                new StreamServiceImplBase() {
+                  @Override
+                  public void checkTail(
+                      CheckTailRequest request,
+                      StreamObserver<CheckTailResponse> responseObserver) {
+                    deadlines.add(
+                        System.nanoTime()
+                            + Context.current().getDeadline().timeRemaining(TimeUnit.NANOSECONDS));
+                    ((ServerCallStreamObserver<CheckTailResponse>) responseObserver)
+                        .setOnCancelHandler(cancelled::countDown);
+                    calls.add(responseObserver);
+                  }
+                })
+            .build()
+            .start();
+    streamChannel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+
+    channel = InProcessChannelBuilder.forName("unused").build();
+    executor = Executors.newSingleThreadScheduledExecutor();
+    client =
+        BasinClient.newBuilder(
+                Config.newBuilder("fake-token").withRetryDelay(RETRY_DELAY).build(), "test-basin")
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .withExecutor(executor)
+            .build();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    channel.shutdownNow();
+    streamChannel.shutdownNow();
+    server.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  private StreamClient streamClient(Duration retryDelay, long requestTimeoutMillis) {
+    return StreamClient.newBuilder(
+            Config.newBuilder("fake-token")
+                .withMaxRetries(2)
+                .withRetryDelay(retryDelay)
+                .withRequestTimeout(requestTimeoutMillis, ChronoUnit.MILLIS)
+                .build(),
+            "test-basin",
+            "stream")
+        .withChannel(() -> new AutoClosableManagedChannel(streamChannel) {})
+        .withExecutor(executor)
+        .build();
+  }
+
+  private StreamObserver<CheckTailResponse> nextCall() throws InterruptedException {
+    final StreamObserver<CheckTailResponse> call = calls.poll(5, TimeUnit.SECONDS);
+    assertThat(call).isNotNull();
+    return call;
+  }
+
+  @Test
+  public void testEveryAttemptCarriesTheSameDeadline() throws Exception {
+    final var tail = streamClient(RETRY_DELAY, 5000).checkTailInner();
+    nextCall().onError(Status.UNAVAILABLE.asRuntimeException());
+    nextCall().onError(Status.UNAVAILABLE.asRuntimeException());
+    final var last = nextCall();
+    last.onNext(CheckTailResponse.newBuilder().setNextSeqNum(7).build());
+    last.onCompleted();
+
+    assertThat(tail.get(5, TimeUnit.SECONDS).seqNum).isEqualTo(7);
+    assertThat(deadlines).hasSize(3);
+    // Attempts started two retry delays apart, but all end at the deadline of the first.
+    final long spread =
+        deadlines.stream().mapToLong(d -> d).max().getAsLong()
+            - deadlines.stream().mapToLong(d -> d).min().getAsLong();
+    assertThat(spread).isLessThan(RETRY_DELAY.toNanos() / 2);
+  }
+
+  @Test
+  public void testNoRetryIsScheduledPastTheDeadline() throws Exception {
+    final var tail = streamClient(Duration.ofSeconds(1), 300).checkTailInner();
+    nextCall().onError(Status.UNAVAILABLE.asRuntimeException());
+
+    assertThatThrownBy(() -> tail.get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .satisfies(
+            e ->
+                assertThat(Status.fromThrowable(e.getCause()).getCode())
+                    .isEqualTo(Status.Code.UNAVAILABLE));
+    assertThat(calls.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    assertThat(deadlines).hasSize(1);
+  }
+
+  @Test
+  public void testCancellingCancelsTheInflightCall() throws Exception {
+    final var tail = streamClient(RETRY_DELAY, 5000).checkTailInner();
+    nextCall();
+    tail.cancel(true);
+
+    assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void testCancellingCancelsAPendingRetry() throws Exception {
+    final var tail = streamClient(RETRY_DELAY, 5000).checkTailInner();
+    nextCall().onError(Status.UNAVAILABLE.asRuntimeException());
+    tail.cancel(true);
+
+    assertThat(calls.poll(RETRY_DELAY.multipliedBy(3).toMillis(), TimeUnit.MILLISECONDS)).isNull();
+    assertThat(deadlines).hasSize(1);
+  }
+
+  @Test
+  public void testPushbackTakesPrecedence() {
+    assertThat(client.retryDelay(withPushback(Status.UNAVAILABLE, "250"), 0))
+        .hasValue(Duration.ofMillis(250));
+    assertThat(client.retryDelay(withPushback(Status.RESOURCE_EXHAUSTED, " 0 "), 5))
+        .hasValue(Duration.ZERO);
+  }
+
+  @Test
+  public void testNegativePushbackIsNotRetried() {
+    assertThat(client.retryDelay(withPushback(Status.UNAVAILABLE, "-1"), 0)).isEmpty();
+  }
+
+  @Test
+  public void testMalformedPushbackIsNotRetried() {
+    assertThat(client.retryDelay(withPushback(Status.UNAVAILABLE, "soon"), 0)).isEmpty();
+    assertThat(client.retryDelay(withPushback(Status.UNAVAILABLE, ""), 0)).isEmpty();
+  }
+
+  @Test
+  public void testDelayWithoutPushback() {
+    assertThat(client.retryDelay(Status.UNAVAILABLE.asRuntimeException(), 3)).hasValue(RETRY_DELAY);
+
+    for (var attempt = 0; attempt < 3; attempt++) {
+      final Optional<Duration> delay =
+          client.retryDelay(Status.RESOURCE_EXHAUSTED.asRuntimeException(), attempt);
+      // Four times the retry delay, doubled per attempt, with up to half of it jittered away.
+      final Duration ceiling = RETRY_DELAY.multipliedBy(4L << attempt);
+      assertThat(delay)
+          .hasValueSatisfying(d -> assertThat(d).isBetween(ceiling.dividedBy(2), ceiling));
+    }
+  }
+
+  private static Throwable withPushback(Status status, String pushback) {
+    final Metadata trailers = new Metadata();
+    trailers.put(
+        Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER), pushback);
+    return status.asRuntimeException(trailers);
+  }
+}
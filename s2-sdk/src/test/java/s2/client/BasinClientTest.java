@@ -0,0 +1,168 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import s2.channel.AutoClosableManagedChannel;
+import s2.config.Config;
+import s2.types.ListStreamsRequest;
+import s2.v1alpha.BasinServiceGrpc.BasinServiceImplBase;
+import s2.v1alpha.CheckTailRequest;
+import s2.v1alpha.CheckTailResponse;
+import s2.v1alpha.DeleteStreamRequest;
+import s2.v1alpha.DeleteStreamResponse;
+import s2.v1alpha.ListStreamsResponse;
+import s2.v1alpha.StreamInfo;
+import s2.v1alpha.StreamServiceGrpc.StreamServiceImplBase;
+
+public class BasinClientTest {
+  private static final List<String> STREAMS = List.of("s0", "s1", "s2", "s3", "s4", "s5");
+
+  private final AtomicInteger listStreamsCalls = new AtomicInteger();
+  private final BlockingQueue<StreamObserver<CheckTailResponse>> pendingCheckTails =
+      new LinkedBlockingQueue<>();
+  private Server server;
+  private ManagedChannel channel;
+  private BasinClient client;
+  private ScheduledExecutorService executor;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    server =
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(
+                new BasinServiceImplBase() {
+                  @Override
+                  public void listStreams(
+                      s2.v1alpha.ListStreamsRequest request,
+                      StreamObserver<ListStreamsResponse> responseObserver) {
+                    listStreamsCalls.incrementAndGet();
+                    var matching =
+                        STREAMS.stream()
+                            .filter(name -> name.startsWith(request.getPrefix()))
+                            .filter(name -> name.compareTo(request.getStartAfter()) > 0)
+                            .collect(Collectors.toList());
+                    var limit = request.hasLimit() ? request.getLimit() : matching.size();
+                    var response =
+                        ListStreamsResponse.newBuilder().setHasMore(matching.size() > limit);
+                    matching.stream()
+                        .limit(limit)
+                        .forEach(
+                            name -> response.addStreams(StreamInfo.newBuilder().setName(name)));
+                    responseObserver.onNext(response.build());
+                    responseObserver.onCompleted();
+                  }
+
+                  @Override
+                  public void deleteStream(
+                      DeleteStreamRequest request,
+                      StreamObserver<DeleteStreamResponse> responseObserver) {
+                    responseObserver.onNext(DeleteStreamResponse.getDefaultInstance());
+                    responseObserver.onCompleted();
+                  }
+                })
+            .addService(
+                new StreamServiceImplBase() {
+                  @Override
+                  public void checkTail(
+                      CheckTailRequest request,
+                      StreamObserver<CheckTailResponse> responseObserver) {
+                    pendingCheckTails.add(responseObserver);
+                  }
+                })
+            .build()
+            .start();
+
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    executor = Executors.newSingleThreadScheduledExecutor();
+    client =
+        BasinClient.newBuilder(
+                Config.newBuilder("fake-token").withMetadataCacheTtl(Duration.ofMinutes(1)).build(),
+                "test-basin")
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .withExecutor(executor)
+            .build();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    channel.shutdownNow();
+    server.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testListStreamsIsCachedUntilInvalidated() throws Exception {
+    var request = ListStreamsRequest.newBuilder().withPrefix("s").build();
+
+    var first = client.listStreams(request).get(5, TimeUnit.SECONDS);
+    var second = client.listStreams(request).get(5, TimeUnit.SECONDS);
+    assertThat(second.elems).isEqualTo(first.elems);
+    assertThat(listStreamsCalls.get()).isEqualTo(1);
+
+    client
+        .listStreams(ListStreamsRequest.newBuilder().withPrefix("s1").build())
+        .get(5, TimeUnit.SECONDS);
+    assertThat(listStreamsCalls.get()).isEqualTo(2);
+
+    client.deleteStream("s0").get(5, TimeUnit.SECONDS);
+    client.listStreams(request).get(5, TimeUnit.SECONDS);
+    assertThat(listStreamsCalls.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void testCheckTailsQueuesNextPageBeforeCurrentOneCompletes() throws Exception {
+    var results = new ConcurrentHashMap<String, Long>();
+    var done =
+        client.checkTails(
+            ListStreamsRequest.newBuilder().withPrefix("s").withLimit(2).build(),
+            4,
+            1000,
+            result -> results.put(result.input, result.result.get().seqNum));
+
+    // The first page's checks are still outstanding, yet the second page's have started.
+    var started = new ArrayList<StreamObserver<CheckTailResponse>>();
+    for (var i = 0; i < 4; i++) {
+      started.add(pendingCheckTails.poll(5, TimeUnit.SECONDS));
+    }
+    assertThat(started).doesNotContainNull();
+    assertThat(done.isDone()).isFalse();
+
+    var seqNum = 0L;
+    for (var check : started) {
+      respond(check, seqNum++);
+    }
+    while (seqNum < STREAMS.size()) {
+      var check = pendingCheckTails.poll(5, TimeUnit.SECONDS);
+      assertThat(check).isNotNull();
+      respond(check, seqNum++);
+    }
+    done.get(5, TimeUnit.SECONDS);
+    assertThat(results).containsOnlyKeys(STREAMS);
+  }
+
+  private static void respond(StreamObserver<CheckTailResponse> check, long seqNum) {
+    check.onNext(CheckTailResponse.newBuilder().setNextSeqNum(seqNum).build());
+    check.onCompleted();
+  }
+}
@@ -0,0 +1,32 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+import s2.serde.Serde;
+import s2.v1alpha.Header;
+
+public class BufferPoolTest {
+
+  @Test
+  public void testSerializedValueRoundTripsThroughReusedBuffer() throws Exception {
+    var pool = new BufferPool(1);
+    var serde = Serde.protobuf(Header.parser());
+    var value =
+        Header.newBuilder()
+            .setName(ByteString.copyFromUtf8("k"))
+            .setValue(ByteString.copyFrom(new byte[4 * BufferPool.INITIAL_BYTES]))
+            .build();
+
+    var buffer = pool.acquire();
+    serde.serialize(value, buffer);
+    assertThat(serde.deserialize(buffer.wrap())).isEqualTo(value);
+    pool.release(buffer);
+
+    var reused = pool.acquire();
+    assertThat(reused).isSameAs(buffer);
+    Serde.utf8().serialize("short", reused);
+    assertThat(Serde.utf8().deserialize(reused.wrap())).isEqualTo("short");
+  }
+}
@@ -0,0 +1,59 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class ConcurrencyLimiterTest {
+
+  @Test
+  public void testLimitsTasksInFlight() {
+    var limiter = new ConcurrencyLimiter(2);
+    List<SettableFuture<Integer>> started = new ArrayList<>();
+
+    var results =
+        IntStream.range(0, 5)
+            .mapToObj(
+                i ->
+                    limiter.submit(
+                        () -> {
+                          var future = SettableFuture.<Integer>create();
+                          started.add(future);
+                          return future;
+                        }))
+            .collect(Collectors.toList());
+    assertThat(started).hasSize(2);
+
+    started.get(0).set(0);
+    assertThat(results.get(0).isDone()).isTrue();
+    assertThat(started).hasSize(3);
+
+    started.get(1).setException(new RuntimeException("boom"));
+    started.get(2).set(2);
+    assertThat(started).hasSize(5);
+  }
+
+  @Test
+  public void testBulkReportsEachOutcome() throws Exception {
+    var results =
+        BaseClient.bulk(
+                List.of(1, 2, 3),
+                1,
+                i ->
+                    i == 2
+                        ? Futures.immediateFailedFuture(new RuntimeException("boom"))
+                        : Futures.immediateFuture(i * 10))
+            .get();
+
+    assertThat(results).extracting(r -> r.input).containsExactly(1, 2, 3);
+    assertThat(results.get(0).result).contains(10);
+    assertThat(results.get(1).isSuccess()).isFalse();
+    assertThat(results.get(2).result).contains(30);
+  }
+}
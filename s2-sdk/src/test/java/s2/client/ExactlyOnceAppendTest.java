@@ -0,0 +1,193 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import s2.channel.AutoClosableManagedChannel;
+import s2.config.AppendRetryPolicy;
+import s2.config.Config;
+import s2.types.AppendInput;
+import s2.types.AppendOutput;
+import s2.types.AppendRecord;
+import s2.v1alpha.AppendRequest;
+import s2.v1alpha.AppendResponse;
+import s2.v1alpha.StreamService.MockAppendSessionStreamService;
+
+public class ExactlyOnceAppendTest {
+
+  /** Failure injected into the next append the service receives. */
+  private enum Fault {
+    /** The append lands, but the response is lost. */
+    AFTER_LANDING,
+    /** The append fails without landing. */
+    BEFORE_LANDING,
+    /** Another writer appends one record at the batch's position, and the append fails. */
+    OTHER_WRITER
+  }
+
+  private final Queue<Fault> faults = new ConcurrentLinkedQueue<>();
+  private MockAppendSessionStreamService service;
+  private Server server;
+  private ManagedChannel channel;
+  private StreamClient client;
+  private ScheduledExecutorService executor;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    service =
+        new MockAppendSessionStreamService() {
+          @Override
+          public void append(
+              AppendRequest request, StreamObserver<AppendResponse> responseObserver) {
+            try {
+              final s2.v1alpha.AppendOutput output = apply(request.getInput());
+              responseObserver.onNext(AppendResponse.newBuilder().setOutput(output).build());
+              responseObserver.onCompleted();
+            } catch (StatusRuntimeException e) {
+              responseObserver.onError(e);
+            }
+          }
+
+          @Override
+          protected s2.v1alpha.AppendOutput apply(s2.v1alpha.AppendInput input) {
+            synchronized (log) {
+              final Fault fault = faults.poll();
+              if (fault == Fault.OTHER_WRITER) {
+                log.add("other");
+              }
+              if (fault == Fault.OTHER_WRITER || fault == Fault.BEFORE_LANDING) {
+                throw Status.UNAVAILABLE.asRuntimeException();
+              }
+              final s2.v1alpha.AppendOutput output = super.apply(input);
+              if (fault == Fault.AFTER_LANDING) {
+                throw Status.UNAVAILABLE.asRuntimeException();
+              }
+              return output;
+            }
+          }
+        };
+    server = service.start(serverName);
+
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    // A single thread, which a managed session's daemon occupies while it runs.
+    executor = Executors.newSingleThreadScheduledExecutor();
+    client =
+        StreamClient.newBuilder(
+                Config.newBuilder("fake-token")
+                    .withAppendRetryPolicy(AppendRetryPolicy.EXACTLY_ONCE)
+                    .withRetryDelay(Duration.ofMillis(1))
+                    .build(),
+                "test-basin",
+                "stream")
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .withExecutor(executor)
+            .build();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    channel.shutdownNow();
+    server.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  private static AppendInput batch(String... bodies) {
+    final List<AppendRecord> records = new ArrayList<>();
+    for (final String body : bodies) {
+      records.add(AppendRecord.newBuilder().withBody(body.getBytes()).build());
+    }
+    return AppendInput.newBuilder().withRecords(records).build();
+  }
+
+  @Test
+  public void testUnaryAppendWhichLandedIsNotResent() throws Exception {
+    faults.add(Fault.AFTER_LANDING);
+    final AppendOutput output = client.append(batch("a", "b")).get(5, TimeUnit.SECONDS);
+
+    assertThat(output.start.seqNum).isEqualTo(0);
+    assertThat(output.end.seqNum).isEqualTo(2);
+    assertThat(service.appended()).containsExactly("a", "b");
+  }
+
+  @Test
+  public void testUnaryAppendWhichDidNotLandIsResent() throws Exception {
+    faults.add(Fault.BEFORE_LANDING);
+    final AppendOutput output = client.append(batch("a", "b")).get(5, TimeUnit.SECONDS);
+
+    assertThat(output.end.seqNum).isEqualTo(2);
+    assertThat(service.appended()).containsExactly("a", "b");
+  }
+
+  @Test
+  public void testUnaryAppendFailsWhenAnotherWriterAppended() {
+    faults.add(Fault.OTHER_WRITER);
+
+    assertThatThrownBy(() -> client.append(batch("a", "b")).get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .satisfies(
+            e ->
+                assertThat(Status.fromThrowable(e.getCause()).getCode())
+                    .isEqualTo(Status.Code.FAILED_PRECONDITION));
+    assertThat(service.appended()).containsExactly("other");
+  }
+
+  @Test
+  public void testManagedBatchWhichLandedIsNotResent() throws Exception {
+    faults.add(Fault.AFTER_LANDING);
+    final var session = client.managedAppendSession();
+    final var first = session.submit(batch("a", "b"), Duration.ofSeconds(1));
+    assertThat(first.get(5, TimeUnit.SECONDS).end.seqNum).isEqualTo(2);
+
+    final var second = session.submit(batch("c"), Duration.ofSeconds(1));
+    assertThat(second.get(5, TimeUnit.SECONDS).end.seqNum).isEqualTo(3);
+    session.closeGracefully().get(5, TimeUnit.SECONDS);
+
+    assertThat(service.appended()).containsExactly("a", "b", "c");
+  }
+
+  @Test
+  public void testManagedBatchWhichDidNotLandIsResent() throws Exception {
+    faults.add(Fault.BEFORE_LANDING);
+    final var session = client.managedAppendSession();
+    final var output = session.submit(batch("a", "b"), Duration.ofSeconds(1));
+    assertThat(output.get(5, TimeUnit.SECONDS).end.seqNum).isEqualTo(2);
+    session.closeGracefully().get(5, TimeUnit.SECONDS);
+
+    assertThat(service.appended()).containsExactly("a", "b");
+  }
+
+  @Test
+  public void testManagedBatchFailsWhenAnotherWriterAppended() throws Exception {
+    faults.add(Fault.OTHER_WRITER);
+    final var session = client.managedAppendSession();
+    final var output = session.submit(batch("a", "b"), Duration.ofSeconds(1));
+
+    assertThatThrownBy(() -> output.get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .satisfies(
+            e ->
+                assertThat(Status.fromThrowable(e.getCause()).getCode())
+                    .isEqualTo(Status.Code.FAILED_PRECONDITION));
+    assertThat(service.appended()).containsExactly("other");
+  }
+}
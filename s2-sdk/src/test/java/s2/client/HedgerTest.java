@@ -0,0 +1,127 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import s2.config.HedgingPolicy;
+
+public class HedgerTest {
+  private ScheduledExecutorService executor;
+
+  @BeforeEach
+  public void setUp() {
+    executor = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testHedgeWinsAndPrimaryIsCancelled() throws Exception {
+    var policy = HedgingPolicy.newBuilder().withMaxDelay(Duration.ofMillis(10)).build();
+    var hedger = new Hedger(policy, new Hedger.Budget(policy.budgetRatio), executor);
+    List<SettableFuture<String>> attempts = new ArrayList<>();
+
+    var result =
+        hedger.hedged(
+            () -> {
+              var attempt = SettableFuture.<String>create();
+              synchronized (attempts) {
+                attempts.add(attempt);
+              }
+              if (attempts.size() == 2) {
+                attempt.set("hedge");
+              }
+              return attempt;
+            });
+
+    assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("hedge");
+    assertThat(attempts).hasSize(2);
+    // Losing attempts are cancelled by a listener on the result, which may still be running when
+    // get() returns, so wait for the primary to complete.
+    assertThatThrownBy(() -> attempts.get(0).get(5, TimeUnit.SECONDS))
+        .isInstanceOf(CancellationException.class);
+  }
+
+  @Test
+  public void testBudgetLimitsHedges() {
+    var budget = new Hedger.Budget(0.1);
+    var acquired = 0;
+    for (var i = 0; i < 100; i++) {
+      budget.onRequest();
+      if (budget.tryAcquire()) {
+        acquired++;
+      }
+    }
+    // Initial burst allowance, plus one hedge per ten requests.
+    assertThat(acquired).isEqualTo(19);
+  }
+
+  @Test
+  public void testFastResponseIsNotHedged() throws Exception {
+    var policy = HedgingPolicy.newBuilder().withMaxDelay(Duration.ofMillis(10)).build();
+    var hedger = new Hedger(policy, new Hedger.Budget(policy.budgetRatio), executor);
+    var calls = new int[] {0};
+
+    var result =
+        hedger.hedged(
+            () -> {
+              calls[0]++;
+              return Futures.immediateFuture("primary");
+            });
+
+    assertThat(result.get()).isEqualTo("primary");
+    Thread.sleep(50);
+    assertThat(calls[0]).isEqualTo(1);
+  }
+
+  @Test
+  public void testLatencyOfWinningHedgeIncludesDelay() throws Exception {
+    var policy =
+        HedgingPolicy.newBuilder()
+            .withMinDelay(Duration.ZERO)
+            .withMaxDelay(Duration.ofMillis(20))
+            .withBudgetRatio(1)
+            .build();
+    var hedger = new Hedger(policy, new Hedger.Budget(policy.budgetRatio), executor);
+
+    for (var i = 0; i < Hedger.RECOMPUTE_INTERVAL; i++) {
+      var calls = new int[] {0};
+      var result =
+          hedger.hedged(
+              () ->
+                  ++calls[0] == 1
+                      ? SettableFuture.<String>create()
+                      : Futures.immediateFuture("hedge"));
+      assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("hedge");
+    }
+
+    // Only hedges won, but each did so after the hedging delay, which must not collapse to zero.
+    assertThat(hedger.delayNanos()).isEqualTo(Duration.ofMillis(20).toNanos());
+  }
+
+  @Test
+  public void testMinDelayMustNotExceedMaxDelay() {
+    assertThatThrownBy(
+            () ->
+                HedgingPolicy.newBuilder()
+                    .withMinDelay(Duration.ofSeconds(1))
+                    .withMaxDelay(Duration.ofMillis(10))
+                    .build())
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
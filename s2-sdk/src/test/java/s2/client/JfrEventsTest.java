@@ -0,0 +1,121 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import s2.channel.AutoClosableManagedChannel;
+import s2.config.Config;
+import s2.types.AppendInput;
+import s2.types.AppendRecord;
+import s2.v1alpha.StreamService.MockAppendSessionStreamService;
+
+public class JfrEventsTest {
+  private Server server;
+  private ManagedChannel channel;
+  private StreamClient client;
+  private ScheduledExecutorService executor;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    server = new MockAppendSessionStreamService().start(serverName);
+
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    executor = Executors.newScheduledThreadPool(2);
+    client =
+        StreamClient.newBuilder(Config.newBuilder("fake-token").build(), "test-basin", "stream")
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .withExecutor(executor)
+            .build();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    channel.shutdownNow();
+    server.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testEventsAreCommittedWhenEnabled(@TempDir Path directory) throws Exception {
+    final Path dump = directory.resolve("recording.jfr");
+    try (var recording = new Recording()) {
+      recording.enable("s2.AppendSubmit");
+      recording.enable("s2.AppendSend");
+      recording.enable("s2.AppendAck");
+      recording.enable("s2.UnaryRpc");
+      recording.start();
+
+      client.checkTail().get(5, TimeUnit.SECONDS);
+      var session = client.managedAppendSession();
+      session
+          .submit(
+              AppendInput.newBuilder()
+                  .withRecords(
+                      List.of(
+                          AppendRecord.newBuilder().withBody(new byte[10]).build(),
+                          AppendRecord.newBuilder().withBody(new byte[10]).build()))
+                  .build(),
+              Duration.ofSeconds(1))
+          .get(5, TimeUnit.SECONDS);
+      session.closeGracefully().get(5, TimeUnit.SECONDS);
+
+      recording.stop();
+      recording.dump(dump);
+    }
+
+    final Map<String, List<RecordedEvent>> events =
+        RecordingFile.readAllEvents(dump).stream()
+            .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+
+    assertThat(events.get("s2.UnaryRpc"))
+        .singleElement()
+        .satisfies(
+            event -> {
+              assertThat(event.getString("method")).isEqualTo("s2.v1alpha.StreamService/CheckTail");
+              assertThat(event.getString("status")).isEqualTo("OK");
+            });
+    for (var name : List.of("s2.AppendSubmit", "s2.AppendSend", "s2.AppendAck")) {
+      assertThat(events.get(name))
+          .as(name)
+          .singleElement()
+          .satisfies(
+              event -> {
+                assertThat(event.getString("stream")).isEqualTo("stream");
+                assertThat(event.getInt("records")).isEqualTo(2);
+              });
+    }
+  }
+
+  @Test
+  public void testEventsAreNotCommittedByDefault(@TempDir Path directory) throws Exception {
+    final Path dump = directory.resolve("recording.jfr");
+    try (var recording = new Recording()) {
+      recording.start();
+      client.checkTail().get(5, TimeUnit.SECONDS);
+      recording.stop();
+      recording.dump(dump);
+    }
+
+    assertThat(RecordingFile.readAllEvents(dump))
+        .noneMatch(event -> event.getEventType().getName().startsWith("s2."));
+  }
+}
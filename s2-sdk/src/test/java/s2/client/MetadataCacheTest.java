@@ -0,0 +1,57 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class MetadataCacheTest {
+
+  @Test
+  public void testConcurrentLookupsShareOneLoad() throws Exception {
+    var cache = new MetadataCache<String, String>(Duration.ofMinutes(1), 16);
+    var loads = new AtomicInteger();
+    var load = SettableFuture.<String>create();
+
+    var first =
+        cache.get(
+            "stream",
+            () -> {
+              loads.incrementAndGet();
+              return load;
+            });
+    var second =
+        cache.get(
+            "stream",
+            () -> {
+              loads.incrementAndGet();
+              return load;
+            });
+    load.set("config");
+
+    assertThat(first.get()).isEqualTo("config");
+    assertThat(second.get()).isEqualTo("config");
+    assertThat(cache.get("stream", () -> Futures.immediateFuture("other")).get())
+        .isEqualTo("config");
+    assertThat(loads.get()).isEqualTo(1);
+
+    cache.invalidate("stream");
+    assertThat(cache.get("stream", () -> Futures.immediateFuture("other")).get())
+        .isEqualTo("other");
+  }
+
+  @Test
+  public void testFailedLoadsAreNotCached() throws Exception {
+    var cache = new MetadataCache<String, String>(Duration.ofMinutes(1), 16);
+
+    var failed =
+        cache.get("stream", () -> Futures.immediateFailedFuture(new RuntimeException("boom")));
+    assertThat(failed.isDone()).isTrue();
+
+    assertThat(cache.get("stream", () -> Futures.immediateFuture("config")).get())
+        .isEqualTo("config");
+  }
+}
@@ -0,0 +1,219 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import s2.channel.AutoClosableManagedChannel;
+import s2.config.Config;
+import s2.types.AppendOutput;
+import s2.types.AppendRecord;
+import s2.v1alpha.AppendRequest;
+import s2.v1alpha.AppendResponse;
+import s2.v1alpha.CheckTailRequest;
+import s2.v1alpha.CheckTailResponse;
+import s2.v1alpha.StreamServiceGrpc.StreamServiceImplBase;
+
+public class MultiWriterAppenderTest {
+  private static final int MAX_RETRIES = 2;
+
+  private final List<String> log = new ArrayList<>();
+  private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+  private final BlockingQueue<Runnable> heldResponses = new LinkedBlockingQueue<>();
+  private volatile boolean holdResponses = false;
+  private volatile boolean otherWriter = false;
+  private volatile String rejection = null;
+
+  private Server server;
+  private ManagedChannel channel;
+  private StreamClient client;
+  private ScheduledExecutorService executor;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    server =
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(
+                new StreamServiceImplBase() {
+                  @Override
+                  public void append(
+                      AppendRequest request, StreamObserver<AppendResponse> responseObserver) {
+                    final s2.v1alpha.AppendInput input = request.getInput();
+                    batchSizes.add(input.getRecordsCount());
+                    final Runnable respond;
+                    synchronized (log) {
+                      if (otherWriter) {
+                        log.add("other");
+                      }
+                      if (rejection != null) {
+                        respond =
+                            () ->
+                                responseObserver.onError(
+                                    Status.FAILED_PRECONDITION
+                                        .withDescription(rejection)
+                                        .asRuntimeException());
+                      } else if (input.getMatchSeqNum() != log.size()) {
+                        respond =
+                            () ->
+                                responseObserver.onError(
+                                    Status.FAILED_PRECONDITION
+                                        .withDescription("sequence number mismatch")
+                                        .asRuntimeException());
+                      } else {
+                        final long start = log.size();
+                        input
+                            .getRecordsList()
+                            .forEach(record -> log.add(record.getBody().toStringUtf8()));
+                        final AppendResponse response =
+                            AppendResponse.newBuilder()
+                                .setOutput(
+                                    s2.v1alpha.AppendOutput.newBuilder()
+                                        .setStartSeqNum(start)
+                                        .setEndSeqNum(log.size())
+                                        .setNextSeqNum(log.size()))
+                                .build();
+                        respond =
+                            () -> {
+                              responseObserver.onNext(response);
+                              responseObserver.onCompleted();
+                            };
+                      }
+                    }
+                    if (holdResponses) {
+                      heldResponses.add(respond);
+                    } else {
+                      respond.run();
+                    }
+                  }
+
+                  @Override
+                  public void checkTail(
+                      CheckTailRequest request,
+                      StreamObserver<CheckTailResponse> responseObserver) {
+                    synchronized (log) {
+                      responseObserver.onNext(
+                          CheckTailResponse.newBuilder().setNextSeqNum(log.size()).build());
+                    }
+                    responseObserver.onCompleted();
+                  }
+                })
+            .build()
+            .start();
+
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    executor = Executors.newSingleThreadScheduledExecutor();
+    client =
+        StreamClient.newBuilder(
+                Config.newBuilder("fake-token").withMaxRetries(MAX_RETRIES).build(),
+                "test-basin",
+                "stream")
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .withExecutor(executor)
+            .build();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    channel.shutdownNow();
+    server.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  private static List<AppendRecord> records(String... bodies) {
+    final List<AppendRecord> records = new ArrayList<>();
+    for (final String body : bodies) {
+      records.add(AppendRecord.newBuilder().withBody(body.getBytes()).build());
+    }
+    return records;
+  }
+
+  private List<String> log() {
+    synchronized (log) {
+      return new ArrayList<>(log);
+    }
+  }
+
+  @Test
+  public void testSubmissionsQueuedBehindAnAppendAreCoalesced() throws Exception {
+    final var appender = client.multiWriterAppender();
+    holdResponses = true;
+    final var first = appender.submit(records("a"));
+    final Runnable firstResponse = heldResponses.poll(5, TimeUnit.SECONDS);
+    assertThat(firstResponse).isNotNull();
+
+    final var second = appender.submit(records("b"));
+    final var third = appender.submit(records("c", "d"));
+    holdResponses = false;
+    firstResponse.run();
+
+    final AppendOutput thirdOutput = third.get(5, TimeUnit.SECONDS);
+    assertThat(first.get(5, TimeUnit.SECONDS).end.seqNum).isEqualTo(1);
+    assertThat(second.get(5, TimeUnit.SECONDS).start.seqNum).isEqualTo(1);
+    assertThat(thirdOutput.start.seqNum).isEqualTo(2);
+    assertThat(thirdOutput.end.seqNum).isEqualTo(4);
+    assertThat(batchSizes).containsExactly(1, 3);
+    assertThat(log()).containsExactly("a", "b", "c", "d");
+    appender.closeGracefully().get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testConflictingBatchIsRequeuedAfterRefreshingTail() throws Exception {
+    final var appender = client.multiWriterAppender();
+    appender.submit(records("a")).get(5, TimeUnit.SECONDS);
+    synchronized (log) {
+      log.add("other");
+    }
+
+    final AppendOutput output = appender.submit(records("b")).get(5, TimeUnit.SECONDS);
+    assertThat(output.start.seqNum).isEqualTo(2);
+    assertThat(batchSizes).hasSize(3);
+    assertThat(log()).containsExactly("a", "other", "b");
+  }
+
+  @Test
+  public void testGivesUpAfterMaxRetriesConflicts() {
+    otherWriter = true;
+    final var appender = client.multiWriterAppender();
+
+    assertThatThrownBy(() -> appender.submit(records("a")).get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .satisfies(
+            e ->
+                assertThat(Status.fromThrowable(e.getCause()).getCode())
+                    .isEqualTo(Status.Code.FAILED_PRECONDITION));
+    assertThat(batchSizes).hasSize(MAX_RETRIES + 1);
+  }
+
+  @Test
+  public void testOtherFailedPreconditionsAreNotRetried() {
+    rejection = "fencing token mismatch";
+    final var appender = client.multiWriterAppender();
+
+    assertThatThrownBy(() -> appender.submit(records("a")).get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .satisfies(
+            e ->
+                assertThat(Status.fromThrowable(e.getCause()).getDescription())
+                    .isEqualTo("fencing token mismatch"));
+    assertThat(batchSizes).hasSize(1);
+  }
+}
@@ -0,0 +1,133 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import s2.channel.AutoClosableManagedChannel;
+import s2.config.Config;
+import s2.types.AppendInput;
+import s2.types.AppendOutput;
+import s2.types.AppendRecord;
+import s2.v1alpha.StreamService.MockAppendSessionStreamService;
+
+public class OrderedAppendPipelineTest {
+  private final MockAppendSessionStreamService service = new MockAppendSessionStreamService();
+  private Server server;
+  private ManagedChannel channel;
+  private StreamClient client;
+  private ScheduledExecutorService executor;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    server = service.start(serverName);
+
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    executor = Executors.newSingleThreadScheduledExecutor();
+    client =
+        StreamClient.newBuilder(Config.newBuilder("fake-token").build(), "test-basin", "stream")
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .withExecutor(executor)
+            .build();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    channel.shutdownNow();
+    server.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testAppendsInSubmissionOrder() throws Exception {
+    var pipeline =
+        client.<Integer>orderedAppendPipeline(
+            item -> {
+              // Finish encoding out of order.
+              try {
+                TimeUnit.MICROSECONDS.sleep(ThreadLocalRandom.current().nextInt(2000));
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+              if (item == 7) {
+                throw new IllegalArgumentException("unencodable");
+              }
+              return AppendInput.newBuilder()
+                  .withRecords(
+                      List.of(
+                          AppendRecord.newBuilder().withBody(item.toString().getBytes()).build()))
+                  .build();
+            },
+            4);
+
+    var outputs = new ArrayList<ListenableFuture<AppendOutput>>();
+    for (int i = 0; i < 100; i++) {
+      outputs.add(pipeline.submit(i));
+    }
+    pipeline.closeGracefully().get(10, TimeUnit.SECONDS);
+
+    var expected =
+        IntStream.range(0, 100)
+            .filter(i -> i != 7)
+            .mapToObj(Integer::toString)
+            .collect(Collectors.toList());
+    assertThat(service.appended()).containsExactlyElementsOf(expected);
+    assertThat(outputs.get(8).get().start.seqNum).isEqualTo(7);
+    assertThatThrownBy(() -> outputs.get(7).get())
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void testItemsAfterOneWhichCouldNotBeSubmittedFail() throws Exception {
+    // Admits 100 bytes at once, then 100 bytes a second, which the second item cannot wait for.
+    final var limited =
+        StreamClient.newBuilder(
+                Config.newBuilder("fake-token").withRequestTimeout(100, ChronoUnit.MILLIS).build(),
+                "test-basin",
+                "stream")
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .withExecutor(executor)
+            .withRateLimiter(RateLimiter.newBuilder().withBytesPerSecond(100).build())
+            .build();
+    final var pipeline =
+        limited.<String>orderedAppendPipeline(
+            body ->
+                AppendInput.newBuilder()
+                    .withRecords(
+                        List.of(AppendRecord.newBuilder().withBody(body.getBytes()).build()))
+                    .build(),
+            2);
+
+    final var first = pipeline.submit("a".repeat(50));
+    final var second = pipeline.submit("b".repeat(500));
+    final var third = pipeline.submit("c");
+    pipeline.closeGracefully().get(10, TimeUnit.SECONDS);
+
+    assertThat(first.get().start.seqNum).isEqualTo(0);
+    assertThatThrownBy(second::get).isInstanceOf(ExecutionException.class);
+    // Small enough to be admitted, but appending it would put it where the second item belongs.
+    assertThatThrownBy(third::get)
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(IllegalStateException.class);
+    assertThat(service.appended()).containsExactly("a".repeat(50));
+  }
+}
@@ -0,0 +1,93 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import s2.types.Paginated;
+
+public class PrefetchingIteratorTest {
+
+  private static Paginated<String> page(boolean hasMore, String... elems) {
+    return new Paginated<>(hasMore, List.of(elems));
+  }
+
+  @Test
+  public void testIteratesAllPages() {
+    Function<String, ListenableFuture<Paginated<String>>> fetch =
+        startAfter -> {
+          switch (startAfter) {
+            case "":
+              return Futures.immediateFuture(page(true, "a", "b"));
+            case "b":
+              return Futures.immediateFuture(page(true, "c"));
+            default:
+              return Futures.immediateFuture(page(false));
+          }
+        };
+
+    var elems =
+        PrefetchingIterator.stream(new PrefetchingIterator<>(fetch, s -> s, "", 2))
+            .collect(Collectors.toList());
+
+    assertThat(elems).containsExactly("a", "b", "c");
+  }
+
+  @Test
+  public void testPrefetchesAheadOfConsumer() {
+    List<String> requested = new ArrayList<>();
+    List<SettableFuture<Paginated<String>>> responses = new ArrayList<>();
+    Function<String, ListenableFuture<Paginated<String>>> fetch =
+        startAfter -> {
+          requested.add(startAfter);
+          var response = SettableFuture.<Paginated<String>>create();
+          responses.add(response);
+          return response;
+        };
+
+    var iterator = new PrefetchingIterator<>(fetch, s -> s, "", 1);
+    assertThat(requested).containsExactly("");
+
+    responses.get(0).set(page(true, "a"));
+    // The next page is requested before the first one is consumed.
+    assertThat(requested).containsExactly("", "a");
+
+    responses.get(1).set(page(true, "b"));
+    // Without consumption, no more than one page is fetched ahead.
+    assertThat(requested).containsExactly("", "a");
+
+    assertThat(iterator.next()).isEqualTo("a");
+    assertThat(requested).containsExactly("", "a", "b");
+
+    iterator.close();
+    assertThat(responses.get(2).isCancelled()).isTrue();
+    assertThat(iterator.hasNext()).isFalse();
+  }
+
+  @Test
+  public void testWithoutPrefetchingFetchesEachPageOnceTheLastIsTaken() {
+    List<String> requested = new ArrayList<>();
+    Function<String, ListenableFuture<Paginated<String>>> fetch =
+        startAfter -> {
+          requested.add(startAfter);
+          return Futures.immediateFuture(
+              startAfter.equals("b") ? page(false, "c") : page(true, startAfter + "b"));
+        };
+
+    var iterator = new PrefetchingIterator<>(fetch, s -> s, "", 0);
+    assertThat(requested).containsExactly("");
+    assertThat(iterator.next()).isEqualTo("b");
+    assertThat(requested).containsExactly("", "b");
+
+    var rest = new ArrayList<String>();
+    iterator.forEachRemaining(rest::add);
+    assertThat(rest).containsExactly("c");
+    assertThat(requested).containsExactly("", "b");
+  }
+}
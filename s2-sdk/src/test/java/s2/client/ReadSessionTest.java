@@ -1,21 +1,32 @@
 package s2.client;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 
 import io.grpc.ManagedChannel;
 import io.grpc.Server;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import javax.management.JMX;
+import javax.management.ObjectName;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import s2.channel.AutoClosableManagedChannel;
 import s2.config.Config;
+import s2.config.TracingPolicy;
+import s2.jmx.DecodingReadSessionMXBean;
 import s2.types.Batch;
 import s2.types.ReadLimit;
 import s2.types.ReadOutput;
@@ -87,4 +98,178 @@ public class ReadSessionTest {
     IntStream.range(0, flattenedRecords.size())
         .forEach(i -> assertThat(flattenedRecords.get(i).seqNum).isEqualTo(i));
   }
+
+  @Test
+  public void testManagedReadSessionWithBufferSmallerThanABatch() throws Exception {
+    ReadSessionRequest request =
+        ReadSessionRequest.newBuilder()
+            .withStart(Start.seqNum(0))
+            .withReadLimit(ReadLimit.count(25))
+            .build();
+
+    // Every batch is larger than the buffer, and so waits for it to empty rather than forever.
+    var session = client.managedReadSession(request, 4);
+    var records = 0;
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!session.isClosed() && System.nanoTime() < deadline) {
+      var output = session.get(Duration.ofSeconds(1));
+      if (output.isPresent() && output.get() instanceof Batch) {
+        records += ((Batch) output.get()).sequencedRecordBatch.records.size();
+      }
+    }
+    assertThat(records).isEqualTo(25);
+  }
+
+  @Test
+  public void testCursorReadSession() throws Exception {
+    ReadSessionRequest request =
+        ReadSessionRequest.newBuilder()
+            .withStart(Start.seqNum(0))
+            .withReadLimit(ReadLimit.count(25))
+            .build();
+
+    var seqNums = new ArrayList<Long>();
+    var bodies = new ArrayList<String>();
+    var readSession =
+        client.cursorReadSession(
+            request,
+            cursor -> {
+              while (cursor.next()) {
+                seqNums.add(cursor.seqNum());
+                bodies.add(cursor.body().toStringUtf8());
+              }
+            },
+            err -> {
+              throw new RuntimeException(err.getMessage());
+            });
+
+    readSession.awaitCompletion().get();
+    assertThat(seqNums).isEqualTo(LongStream.range(0, 25).boxed().collect(Collectors.toList()));
+    assertThat(bodies.get(24)).isEqualTo("fake 24");
+  }
+
+  @Test
+  public void testCursorReadSessionRejectsDecodingClients() {
+    var tracingClient =
+        StreamClient.newBuilder(
+                Config.newBuilder("fake-token")
+                    .withTracingPolicy(TracingPolicy.newBuilder().withSampleRate(1).build())
+                    .build(),
+                "test-basin",
+                "test-stream")
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .withExecutor(executor)
+            .build();
+    ReadSessionRequest request = ReadSessionRequest.newBuilder().build();
+
+    assertThatThrownBy(() -> tracingClient.cursorReadSession(request, cursor -> {}, err -> {}))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void testDecodingReadSessionPreservesOrder() throws Exception {
+    ReadSessionRequest request =
+        ReadSessionRequest.newBuilder()
+            .withStart(Start.seqNum(0))
+            .withReadLimit(ReadLimit.count(25))
+            .build();
+
+    var session =
+        client.decodingReadSession(
+            request,
+            1024 * 1024,
+            batch -> {
+              // Finish decoding out of order.
+              try {
+                TimeUnit.MICROSECONDS.sleep(ThreadLocalRandom.current().nextInt(2000));
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+              return batch.sequencedRecordBatch.records.get(0).body.toStringUtf8();
+            },
+            4);
+
+    var decoded = new ArrayList<String>();
+    while (!session.isClosed()) {
+      session.get(Duration.ofMillis(100)).ifPresent(decoded::add);
+    }
+    session.close();
+
+    assertThat(decoded)
+        .isEqualTo(IntStream.range(0, 25).mapToObj(i -> "fake " + i).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testClosingDecodingReadSessionCancelsPendingDecoding() throws Exception {
+    var jmxClient =
+        StreamClient.newBuilder(
+                Config.newBuilder("fake-token").withJmx(true).withMaxRetries(3).build(),
+                "test-basin",
+                "decoding-stream")
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .withExecutor(executor)
+            .build();
+    var started = new CountDownLatch(1);
+    var session =
+        jmxClient.decodingReadSession(
+            ReadSessionRequest.newBuilder()
+                .withStart(Start.seqNum(0))
+                .withReadLimit(ReadLimit.count(25))
+                .build(),
+            1024 * 1024,
+            batch -> {
+              // The only worker is stuck on the first batch, so later ones wait to be decoded.
+              started.countDown();
+              try {
+                new CountDownLatch(1).await();
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+              return "decoded";
+            },
+            1);
+
+    var platform = ManagementFactory.getPlatformMBeanServer();
+    var names =
+        platform.queryNames(
+            new ObjectName(
+                "s2:type=DecodingReadSession,stream=" + ObjectName.quote("decoding-stream") + ",*"),
+            null);
+    assertThat(names.size()).isEqualTo(1);
+    var mbean =
+        JMX.newMXBeanProxy(platform, names.iterator().next(), DecodingReadSessionMXBean.class);
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (mbean.getBufferedItems() < 3 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(mbean.getBufferedItems()).isGreaterThanOrEqualTo(3);
+    assertThat(mbean.getDecodingBatches()).isGreaterThanOrEqualTo(3);
+
+    session.close();
+
+    // Every buffered value is taken without waiting on decoding which will never run.
+    var consumer = Executors.newSingleThreadExecutor();
+    try {
+      var failed =
+          consumer
+              .submit(
+                  () -> {
+                    var count = 0;
+                    while (session.hasNext()) {
+                      try {
+                        session.get();
+                      } catch (RuntimeException e) {
+                        count++;
+                      }
+                    }
+                    return count;
+                  })
+              .get(5, TimeUnit.SECONDS);
+      assertThat(failed).isGreaterThanOrEqualTo(3);
+    } finally {
+      consumer.shutdownNow();
+    }
+    assertThat(platform.isRegistered(names.iterator().next())).isFalse();
+  }
 }
@@ -0,0 +1,171 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import s2.channel.AutoClosableManagedChannel;
+import s2.config.Config;
+import s2.jmx.AppendSessionMXBean;
+import s2.types.AppendInput;
+import s2.types.AppendRecord;
+import s2.types.ReadSessionRequest;
+import s2.v1alpha.ReadSessionResponse;
+import s2.v1alpha.StreamService.MockAppendSessionStreamService;
+
+public class SessionMBeansTest {
+  private static final MBeanServer PLATFORM = ManagementFactory.getPlatformMBeanServer();
+
+  private final BlockingQueue<StreamObserver<ReadSessionResponse>> pendingReads =
+      new LinkedBlockingQueue<>();
+  private MockAppendSessionStreamService service;
+  private String stream;
+  private Server server;
+  private ManagedChannel channel;
+  private StreamClient client;
+  private ScheduledExecutorService executor;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    service =
+        new MockAppendSessionStreamService() {
+          @Override
+          public void readSession(
+              s2.v1alpha.ReadSessionRequest request,
+              StreamObserver<ReadSessionResponse> responseObserver) {
+            pendingReads.add(responseObserver);
+          }
+        };
+    server = service.start(serverName);
+
+    // Named after the server, so that sessions left registered by other tests are not matched.
+    stream = serverName;
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    executor = Executors.newScheduledThreadPool(2);
+    client =
+        StreamClient.newBuilder(
+                Config.newBuilder("fake-token")
+                    .withJmx(true)
+                    .withMaxRetries(0)
+                    .withRetryDelay(Duration.ofMillis(1))
+                    .build(),
+                "test-basin",
+                stream)
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .withExecutor(executor)
+            .build();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    channel.shutdownNow();
+    server.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  private Set<ObjectName> registered(String type) throws Exception {
+    return PLATFORM.queryNames(
+        new ObjectName(String.format("s2:type=%s,stream=%s,*", type, ObjectName.quote(stream))),
+        null);
+  }
+
+  private static AppendInput batch() {
+    return AppendInput.newBuilder()
+        .withRecords(List.of(AppendRecord.newBuilder().withBody(new byte[10]).build()))
+        .build();
+  }
+
+  @Test
+  public void testAppendSessionIsUnregisteredOnceClosed() throws Exception {
+    final var session = client.managedAppendSession();
+    final Set<ObjectName> names = registered("AppendSession");
+    assertThat(names).hasSize(1);
+    final AppendSessionMXBean mbean =
+        JMX.newMXBeanProxy(PLATFORM, names.iterator().next(), AppendSessionMXBean.class);
+    assertThat(mbean.getStream()).isEqualTo(stream);
+    assertThat(mbean.isAcceptingAppends()).isTrue();
+
+    session.submit(batch(), Duration.ofSeconds(1)).get(5, TimeUnit.SECONDS);
+    assertThat(mbean.getInflightBatches()).isEqualTo(0);
+
+    session.closeGracefully().get(5, TimeUnit.SECONDS);
+    executor.submit(() -> {}).get(5, TimeUnit.SECONDS);
+    assertThat(registered("AppendSession")).isEmpty();
+  }
+
+  @Test
+  public void testForcedReconnectsDoNotOutliveTheRestart() throws Exception {
+    final var session = client.managedAppendSession();
+    final AppendSessionMXBean mbean =
+        JMX.newMXBeanProxy(
+            PLATFORM, registered("AppendSession").iterator().next(), AppendSessionMXBean.class);
+    session.submit(batch(), Duration.ofSeconds(1)).get(5, TimeUnit.SECONDS);
+
+    // Without retries left, an injected failure reaching the restarted session would end it.
+    mbean.forceReconnect();
+    mbean.forceReconnect();
+    session.submit(batch(), Duration.ofSeconds(1)).get(5, TimeUnit.SECONDS);
+
+    assertThat(mbean.isTerminated()).isFalse();
+    assertThat(service.sessions.get()).isGreaterThan(1);
+    session.closeGracefully().get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testLateFailuresFromTheCancelledStreamAreDropped() throws Exception {
+    final var session = client.managedAppendSession();
+    final AppendSessionMXBean mbean =
+        JMX.newMXBeanProxy(
+            PLATFORM, registered("AppendSession").iterator().next(), AppendSessionMXBean.class);
+    session.submit(batch(), Duration.ofSeconds(1)).get(5, TimeUnit.SECONDS);
+    mbean.forceReconnect();
+    session.submit(batch(), Duration.ofSeconds(1)).get(5, TimeUnit.SECONDS);
+
+    // The first stream's own cancellation, delivered after the restarted session is running.
+    session.notificationQueue.add(session.new Error(1, Status.CANCELLED.asRuntimeException()));
+    session.submit(batch(), Duration.ofSeconds(1)).get(5, TimeUnit.SECONDS);
+
+    assertThat(mbean.isTerminated()).isFalse();
+    session.closeGracefully().get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testManagedReadSessionIsUnregisteredWhenItEndsWithoutClose() throws Exception {
+    final var session =
+        client.managedReadSession(ReadSessionRequest.newBuilder().build(), 1024 * 1024);
+    final var read = pendingReads.poll(5, TimeUnit.SECONDS);
+    assertThat(read).isNotNull();
+    assertThat(registered("ManagedReadSession")).hasSize(1);
+
+    // The read session fails permanently, which ends the managed session without it being closed.
+    read.onError(Status.INVALID_ARGUMENT.asRuntimeException());
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (!registered("ManagedReadSession").isEmpty() && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(registered("ManagedReadSession")).isEmpty();
+    assertThat(registered("ReadSession")).isEmpty();
+    // The failure is still waiting to be consumed.
+    assertThat(session.hasNext()).isTrue();
+  }
+}
@@ -0,0 +1,117 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import s2.channel.AutoClosableManagedChannel;
+import s2.config.Config;
+import s2.metrics.InMemoryMetrics;
+import s2.metrics.Metrics;
+import s2.types.AppendInput;
+import s2.types.AppendRecord;
+import s2.types.Batch;
+import s2.types.ReadLimit;
+import s2.types.ReadSessionRequest;
+import s2.types.Start;
+import s2.v1alpha.ReadSessionResponse;
+import s2.v1alpha.StreamService.MockAppendSessionStreamService;
+import s2.v1alpha.StreamService.MockReadSessionStreamService;
+
+public class SessionMetricsTest {
+  private final InMemoryMetrics metrics = new InMemoryMetrics();
+  private Server server;
+  private ManagedChannel channel;
+  private StreamClient client;
+  private ScheduledExecutorService executor;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    final var reads = new MockReadSessionStreamService();
+    String serverName = InProcessServerBuilder.generateName();
+    server =
+        new MockAppendSessionStreamService() {
+          @Override
+          public void readSession(
+              s2.v1alpha.ReadSessionRequest request,
+              StreamObserver<ReadSessionResponse> responseObserver) {
+            reads.readSession(request, responseObserver);
+          }
+        }.start(serverName);
+
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    executor = Executors.newScheduledThreadPool(2);
+    client =
+        StreamClient.newBuilder(
+                Config.newBuilder("fake-token").withMaxRetries(3).withMetrics(metrics).build(),
+                "test-basin",
+                "test-stream")
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .withExecutor(executor)
+            .build();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    channel.shutdownNow();
+    server.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testManagedAppendSessionReportsMetrics() throws Exception {
+    var session = client.managedAppendSession();
+    for (var i = 0; i < 3; i++) {
+      session
+          .submit(
+              AppendInput.newBuilder()
+                  .withRecords(List.of(AppendRecord.newBuilder().withBody(new byte[10]).build()))
+                  .build(),
+              Duration.ofSeconds(1))
+          .get(5, TimeUnit.SECONDS);
+    }
+    session.closeGracefully().get(5, TimeUnit.SECONDS);
+
+    assertThat(metrics.appendedRecords()).isEqualTo(3);
+    assertThat(metrics.appendLatencyNanos().count()).isEqualTo(3);
+    assertThat(metrics.appendQueueNanos().count()).isEqualTo(3);
+    // Every batch was acknowledged, so nothing is left buffered.
+    assertThat(metrics.appendBufferBytes()).containsEntry("test-stream", 0L);
+  }
+
+  @Test
+  public void testReadSessionReportsMetrics() throws Exception {
+    var session =
+        client.managedReadSession(
+            ReadSessionRequest.newBuilder()
+                .withStart(Start.seqNum(0))
+                .withReadLimit(ReadLimit.count(25))
+                .build(),
+            1024 * 1024);
+    var records = 0;
+    while (!session.isClosed()) {
+      var output = session.get(Duration.ofSeconds(5));
+      if (output.isPresent() && output.get() instanceof Batch) {
+        records += ((Batch) output.get()).sequencedRecordBatch.records.size();
+      }
+    }
+
+    assertThat(records).isEqualTo(25);
+    assertThat(metrics.readRecords()).isEqualTo(25);
+    assertThat(metrics.readLag().count()).isEqualTo(25);
+    assertThat(metrics.readBufferBytes()).containsKey("test-stream");
+    // The mock service fails the first message of the session.
+    assertThat(metrics.reconnects(Metrics.SessionType.READ)).isGreaterThanOrEqualTo(1);
+  }
+}
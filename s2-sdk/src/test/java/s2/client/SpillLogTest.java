@@ -0,0 +1,88 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import s2.config.SpillLogConfig;
+
+public class SpillLogTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(1);
+
+  private static SpillLogConfig config(Path directory) {
+    return SpillLogConfig.newBuilder(directory).withSegmentBytes(2 * 1024 * 1024).build();
+  }
+
+  private static byte[] entry(int size, char c) {
+    return String.valueOf(c).repeat(size).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testRecoversUnacknowledgedEntries(@TempDir Path directory) throws Exception {
+    try (var log = SpillLog.open(config(directory))) {
+      // Three entries per segment, so the log spans several segments.
+      for (char c = 'a'; c <= 'g'; c++) {
+        log.append(entry(600 * 1024, c)).get();
+      }
+      assertThat(log.next(TIMEOUT).get().index).isEqualTo(0);
+      for (int i = 1; i < 4; i++) {
+        assertThat(log.next(TIMEOUT).get().bytes[0]).isEqualTo((byte) ('a' + i));
+      }
+      log.acknowledge(3);
+      assertThat(log.unacknowledged()).isEqualTo(3);
+      // The first segment held only acknowledged entries.
+      assertThat(segments(directory)).hasSize(2);
+    }
+
+    try (var log = SpillLog.open(config(directory))) {
+      assertThat(log.unacknowledged()).isEqualTo(3);
+      var next = log.next(TIMEOUT).get();
+      assertThat(next.index).isEqualTo(4);
+      assertThat(next.bytes[0]).isEqualTo((byte) 'e');
+
+      log.rewind();
+      assertThat(log.next(TIMEOUT).get().index).isEqualTo(4);
+      log.append(entry(10, 'h')).get();
+    }
+  }
+
+  @Test
+  public void testDiscardsTornEntry(@TempDir Path directory) throws Exception {
+    try (var log = SpillLog.open(config(directory))) {
+      log.append(entry(10, 'a')).get();
+      log.append(entry(10, 'b')).get();
+    }
+    try (var file = new RandomAccessFile(segments(directory).get(0).toFile(), "rw")) {
+      // Corrupt the body of the second entry.
+      file.seek(2 * SpillLog.HEADER_BYTES + 10 + 5);
+      file.write('x');
+    }
+
+    try (var log = SpillLog.open(config(directory))) {
+      assertThat(log.unacknowledged()).isEqualTo(1);
+      log.append(entry(10, 'c')).get();
+      assertThat(log.next(TIMEOUT).get().bytes[0]).isEqualTo((byte) 'a');
+      var next = log.next(TIMEOUT).get();
+      assertThat(next.index).isEqualTo(1);
+      assertThat(next.bytes[0]).isEqualTo((byte) 'c');
+      assertThat(log.next(Duration.ZERO)).isEmpty();
+    }
+  }
+
+  private static List<Path> segments(Path directory) throws Exception {
+    try (var files = Files.list(directory)) {
+      return files
+          .filter(path -> path.getFileName().toString().startsWith("segment-"))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import s2.channel.AutoClosableManagedChannel;
+import s2.config.Config;
+import s2.config.SpillLogConfig;
+import s2.types.AppendInput;
+import s2.types.AppendRecord;
+
+public class SpillingAppenderTest {
+  private ManagedChannel channel;
+  private ScheduledExecutorService executor;
+  private StreamClient client;
+
+  @BeforeEach
+  public void setUp() {
+    channel = InProcessChannelBuilder.forName("unused").build();
+    executor = Executors.newScheduledThreadPool(2);
+    client =
+        StreamClient.newBuilder(Config.newBuilder("fake-token").build(), "test-basin", "stream")
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .withExecutor(executor)
+            .build();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    channel.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testDrainerFailureIsSurfaced(@TempDir Path directory) throws Exception {
+    var config = SpillLogConfig.newBuilder(directory).build();
+    try (var log = SpillLog.open(config)) {
+      // A truncated varint, which is not a valid append input.
+      log.append(new byte[] {(byte) 0xff}).get();
+    }
+
+    var appender = client.spillingAppender(config);
+    assertThatThrownBy(() -> appender.awaitCompletion().get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasRootCauseInstanceOf(InvalidProtocolBufferException.class);
+    assertThatThrownBy(
+            () ->
+                appender.submit(
+                    AppendInput.newBuilder()
+                        .withRecords(
+                            List.of(AppendRecord.newBuilder().withBody(new byte[1]).build()))
+                        .build()))
+        .isInstanceOf(IllegalStateException.class);
+    appender.close();
+    assertThat(appender.unacknowledged()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,117 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import s2.channel.AutoClosableManagedChannel;
+import s2.config.Config;
+import s2.types.StreamPosition;
+import s2.v1alpha.CheckTailRequest;
+import s2.v1alpha.CheckTailResponse;
+import s2.v1alpha.StreamServiceGrpc.StreamServiceImplBase;
+
+public class TailCacheTest {
+  private final AtomicInteger calls = new AtomicInteger();
+  private final BlockingQueue<StreamObserver<CheckTailResponse>> pending =
+      new LinkedBlockingQueue<>();
+  private Server server;
+  private ManagedChannel channel;
+  private StreamClient client;
+  private ScheduledExecutorService executor;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    server =
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(
+                new StreamServiceImplBase() {
+                  @Override
+                  public void checkTail(
+                      CheckTailRequest request,
+                      StreamObserver<CheckTailResponse> responseObserver) {
+                    calls.incrementAndGet();
+                    pending.add(responseObserver);
+                  }
+                })
+            .build()
+            .start();
+
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    executor = Executors.newSingleThreadScheduledExecutor();
+    client =
+        StreamClient.newBuilder(Config.newBuilder("fake-token").build(), "test-basin", "stream")
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .withExecutor(executor)
+            .build();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    channel.shutdownNow();
+    server.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testObservationsExpireAfterMaxStaleness() throws Exception {
+    var cache = new TailCache();
+    assertThat(cache.get(Long.MAX_VALUE)).isEmpty();
+
+    cache.observe(new StreamPosition(10, 100));
+    assertThat(cache.get(Duration.ofMinutes(1).toNanos()))
+        .hasValueSatisfying(position -> assertThat(position.seqNum).isEqualTo(10));
+
+    Thread.sleep(20);
+    assertThat(cache.get(Duration.ofMillis(10).toNanos())).isEmpty();
+    assertThat(cache.get(Duration.ofMinutes(1).toNanos())).isPresent();
+  }
+
+  @Test
+  public void testObservationsNeverRegress() {
+    var cache = new TailCache();
+    cache.observe(new StreamPosition(10, 100));
+    cache.observe(new StreamPosition(5, 50));
+
+    assertThat(cache.get(Long.MAX_VALUE))
+        .hasValueSatisfying(position -> assertThat(position.seqNum).isEqualTo(10));
+  }
+
+  @Test
+  public void testConcurrentCheckTailsShareOneRpc() throws Exception {
+    var first = client.checkTail();
+    var second = client.checkTail();
+    second.cancel(true);
+
+    var call = pending.poll(5, TimeUnit.SECONDS);
+    assertThat(call).isNotNull();
+    call.onNext(CheckTailResponse.newBuilder().setNextSeqNum(42).build());
+    call.onCompleted();
+    assertThat(first.get(5, TimeUnit.SECONDS).seqNum).isEqualTo(42);
+
+    // Answered from the observation made by the shared check, without another RPC.
+    assertThat(client.checkTail(Duration.ofMinutes(1)).get(5, TimeUnit.SECONDS).seqNum)
+        .isEqualTo(42);
+
+    // Once the shared check has completed, a new one is issued.
+    client.checkTail();
+    assertThat(pending.poll(5, TimeUnit.SECONDS)).isNotNull();
+    assertThat(pending).isEmpty();
+    assertThat(calls.get()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,104 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import s2.channel.AutoClosableManagedChannel;
+import s2.config.Config;
+import s2.types.AppendInput;
+import s2.types.AppendRecord;
+import s2.v1alpha.StreamService.MockAppendSessionStreamService;
+
+public class TokenBucketTest {
+
+  @Test
+  public void testReservationsBeyondCapacityWait() {
+    var bucket = new TokenBucket(10, 1);
+
+    assertThat(bucket.reserve(1)).isZero();
+    // A token of debt takes 100ms to repay at 10 tokens/sec, less any time since the first.
+    assertThat(bucket.reserve(1))
+        .isBetween(TimeUnit.MILLISECONDS.toNanos(50), TimeUnit.MILLISECONDS.toNanos(100));
+  }
+
+  @Test
+  public void testTryReserveTakesNothingWhenWaitIsTooLong() {
+    var bucket = new TokenBucket(1000, 100);
+
+    assertThat(bucket.tryReserve(200, TimeUnit.MILLISECONDS.toNanos(10))).isEqualTo(-1);
+    assertThat(bucket.tryReserve(100, 0)).isZero();
+  }
+
+  @Test
+  public void testTryReserveRefundsAcrossLimiters() {
+    var generous = RateLimiter.newBuilder().withBytesPerSecond(1_000_000).build();
+    var strict = RateLimiter.newBuilder().withRecordsPerSecond(10).build();
+    var limiters = List.of(generous, strict);
+
+    assertThat(RateLimiter.tryReserve(limiters, 500_000, 100, 0)).isEqualTo(-1);
+    // The byte reservation made before the record limit was hit has been returned.
+    assertThat(RateLimiter.tryReserve(limiters, 1_000_000, 10, 0)).isZero();
+  }
+
+  @Test
+  public void testInterruptedSubmitHoldsNoCapacity() throws Exception {
+    final String serverName = InProcessServerBuilder.generateName();
+    final Server server = new MockAppendSessionStreamService().start(serverName);
+    final ManagedChannel channel =
+        InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+    final var limiter = RateLimiter.newBuilder().withBytesPerSecond(100).build();
+    try {
+      final var client =
+          StreamClient.newBuilder(Config.newBuilder("fake-token").build(), "test-basin", "stream")
+              .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+              .withExecutor(executor)
+              .withRateLimiter(limiter)
+              .build();
+      final var session = client.managedAppendSession();
+      // Metered at 100 bytes, so the second batch waits a second for the limiter.
+      final AppendInput batch =
+          AppendInput.newBuilder()
+              .withRecords(List.of(AppendRecord.newBuilder().withBody(new byte[92]).build()))
+              .build();
+      session.submit(batch, Duration.ofSeconds(5)).get(5, TimeUnit.SECONDS);
+
+      final AtomicReference<Throwable> failure = new AtomicReference<>();
+      final Thread producer =
+          new Thread(
+              () -> {
+                try {
+                  session.submit(batch, Duration.ofSeconds(5));
+                } catch (Throwable t) {
+                  failure.set(t);
+                }
+              });
+      producer.start();
+      Thread.sleep(200);
+      producer.interrupt();
+      producer.join(5000);
+
+      assertThat(failure.get()).isInstanceOf(InterruptedException.class);
+      assertThat(session.remainingBufferCapacityBytes())
+          .isEqualTo(client.config.maxAppendInflightBytes);
+      // The interrupted batch's reservation was returned, so only the first one is still owed.
+      assertThat(RateLimiter.tryReserve(List.of(limiter), 100, 1, TimeUnit.SECONDS.toNanos(5)))
+          .isBetween(0L, TimeUnit.SECONDS.toNanos(1));
+      session.closeGracefully().get(5, TimeUnit.SECONDS);
+    } finally {
+      channel.shutdownNow();
+      server.shutdownNow();
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.protobuf.ByteString;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import s2.channel.AutoClosableManagedChannel;
+import s2.config.Config;
+import s2.config.TracingPolicy;
+import s2.metrics.InMemoryMetrics;
+import s2.types.AppendInput;
+import s2.types.AppendRecord;
+import s2.types.Batch;
+import s2.types.Header;
+import s2.types.ReadOutput;
+
+public class TracingTest {
+  private static final Header FENCE =
+      new Header(ByteString.EMPTY, ByteString.copyFromUtf8("fencing-token"));
+
+  /** The batch as it would be read back, starting at sequence number 10. */
+  private static ReadOutput asRead(AppendInput input) {
+    var proto = s2.v1alpha.SequencedRecordBatch.newBuilder();
+    for (int i = 0; i < input.records.size(); i++) {
+      var record = input.records.get(i).toProto();
+      proto.addRecords(
+          s2.v1alpha.SequencedRecord.newBuilder()
+              .setSeqNum(10 + i)
+              .addAllHeaders(record.getHeadersList())
+              .setBody(record.getBody()));
+    }
+    return ReadOutput.fromProto(s2.v1alpha.ReadOutput.newBuilder().setBatch(proto).build());
+  }
+
+  private static AppendInput batch(AppendRecord... records) {
+    return AppendInput.newBuilder().withRecords(List.of(records)).build();
+  }
+
+  private static AppendRecord record(String body) {
+    return AppendRecord.newBuilder().withBody(ByteString.copyFromUtf8(body)).build();
+  }
+
+  private static AppendRecord fence() {
+    return AppendRecord.newBuilder().withHeaders(List.of(FENCE)).build();
+  }
+
+  private static Tracing tracing(double sampleRate) {
+    return new Tracing(TracingPolicy.newBuilder().withSampleRate(sampleRate).build());
+  }
+
+  @Test
+  public void testStampedHeaderIsStrippedOnRead() {
+    var tracing = new Tracing(TracingPolicy.newBuilder().withSampleRate(1).build());
+    var userHeader = new Header(ByteString.copyFromUtf8("k"), ByteString.copyFromUtf8("v"));
+    var input =
+        AppendInput.newBuilder()
+            .withRecords(
+                List.of(
+                    AppendRecord.newBuilder()
+                        .withHeaders(List.of(userHeader))
+                        .withBody(ByteString.copyFromUtf8("a"))
+                        .build(),
+                    AppendRecord.newBuilder().withBody(ByteString.copyFromUtf8("b")).build()))
+            .build();
+
+    var stamped = tracing.stamp(input);
+    assertThat(stamped.records.get(0).headers).hasSize(2);
+    assertThat(stamped.records.get(1).headers).isEmpty();
+
+    var read = asRead(stamped);
+
+    var metrics = new InMemoryMetrics();
+    var stripped = (Batch) tracing.strip("stream", read, metrics);
+
+    var records = stripped.sequencedRecordBatch.records;
+    assertThat(records.get(0).headers).hasSize(1);
+    assertThat(records.get(0).headers.get(0).name).isEqualTo(userHeader.name);
+    assertThat(metrics.recentTraces()).hasSize(1);
+    assertThat(metrics.recentTraces().get(0).seqNum).isEqualTo(10);
+    assertThat(metrics.endToEndLatencyNanos().get("stream").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void testNothingIsStampedAtSampleRateZero() {
+    var tracing = tracing(0);
+    for (int i = 0; i < 1000; i++) {
+      var input = batch(record("a"));
+      assertThat(tracing.stamp(input)).isSameAs(input);
+    }
+  }
+
+  @Test
+  public void testEveryBatchIsStampedAtSampleRateOne() {
+    var tracing = tracing(1);
+    for (int i = 0; i < 1000; i++) {
+      var stamped = tracing.stamp(batch(record("a")));
+      assertThat(stamped.records.get(0).headers)
+          .singleElement()
+          .satisfies(header -> assertThat(header.name).isEqualTo(Tracing.HEADER_NAME));
+    }
+  }
+
+  @Test
+  public void testCommandRecordsAreNotStamped() {
+    var tracing = tracing(1);
+    var commands = batch(fence(), fence());
+    assertThat(tracing.stamp(commands)).isSameAs(commands);
+
+    var stamped = tracing.stamp(batch(fence(), record("a")));
+    assertThat(stamped.records.get(0).headers).containsExactly(FENCE);
+    assertThat(stamped.records.get(1).headers)
+        .singleElement()
+        .satisfies(header -> assertThat(header.name).isEqualTo(Tracing.HEADER_NAME));
+  }
+
+  @Test
+  public void testClientWithoutTracingReturnsTheHeader() {
+    var read = asRead(tracing(1).stamp(batch(record("a"))));
+    var channel = InProcessChannelBuilder.forName("unused").build();
+    var metrics = new InMemoryMetrics();
+    try (var client =
+        StreamClient.newBuilder(
+                Config.newBuilder("fake-token").withMetrics(metrics).build(),
+                "test-basin",
+                "stream")
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .build()) {
+      var records = ((Batch) client.decoded(read)).sequencedRecordBatch.records;
+      assertThat(records.get(0).headers)
+          .singleElement()
+          .satisfies(header -> assertThat(header.name).isEqualTo(Tracing.HEADER_NAME));
+      assertThat(metrics.recentTraces()).isEmpty();
+    } finally {
+      channel.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package s2.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import s2.channel.AutoClosableManagedChannel;
+import s2.config.Config;
+import s2.serde.Serde;
+import s2.v1alpha.AppendSessionRequest;
+import s2.v1alpha.StreamService.MockAppendSessionStreamService;
+
+public class TypedAppendSessionTest {
+  private final BlockingQueue<AppendSessionRequest> received = new LinkedBlockingQueue<>();
+  private final List<Runnable> heldAcks = new ArrayList<>();
+  private Server server;
+  private ManagedChannel channel;
+  private StreamClient client;
+  private ScheduledExecutorService executor;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    server =
+        new MockAppendSessionStreamService() {
+          @Override
+          protected void acknowledge(AppendSessionRequest request, Runnable ack) {
+            synchronized (heldAcks) {
+              heldAcks.add(ack);
+            }
+            received.add(request);
+          }
+        }.start(serverName);
+
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    executor = Executors.newScheduledThreadPool(2);
+    client =
+        StreamClient.newBuilder(Config.newBuilder("fake-token").build(), "test-basin", "stream")
+            .withChannel(() -> new AutoClosableManagedChannel(channel) {})
+            .withExecutor(executor)
+            .build();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    channel.shutdownNow();
+    server.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  private void releaseAcks() {
+    synchronized (heldAcks) {
+      heldAcks.forEach(Runnable::run);
+      heldAcks.clear();
+    }
+  }
+
+  @Test
+  public void testCancellingOutputDoesNotReleaseBuffersInUse() throws Exception {
+    final var session = client.typedAppendSession(Serde.utf8());
+    final var first = session.submit("first", Duration.ofSeconds(1));
+    final AppendSessionRequest sent = received.poll(5, TimeUnit.SECONDS);
+    assertThat(sent).isNotNull();
+    assertThat(first.cancel(true)).isTrue();
+
+    // Serialized into a pooled buffer, which must not be the one the first record still uses.
+    final var second = session.submit("second", Duration.ofSeconds(1));
+    assertThat(received.poll(5, TimeUnit.SECONDS)).isNotNull();
+    assertThat(sent.getInput().getRecords(0).getBody().toStringUtf8()).isEqualTo("first");
+
+    releaseAcks();
+    assertThat(second.get(5, TimeUnit.SECONDS).start.seqNum).isEqualTo(1);
+    session.closeGracefully().get(5, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,54 @@
+package s2.codec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.protobuf.ByteString;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DictionaryStoreTest {
+
+  // Different contents with the same Adler-32 checksum.
+  private static final RecordDictionary DICTIONARY =
+      RecordDictionary.of(ByteString.copyFrom(new byte[] {1, 2, 1}));
+  private static final RecordDictionary COLLIDING =
+      RecordDictionary.of(ByteString.copyFrom(new byte[] {2, 0, 2}));
+
+  @Test
+  public void testCollidingDictionaryIsRefused(@TempDir Path directory) {
+    assertThat(COLLIDING.id).isEqualTo(DICTIONARY.id);
+
+    for (var store :
+        new DictionaryStore[] {DictionaryStore.inMemory(), DictionaryStore.directory(directory)}) {
+      store.put(DICTIONARY);
+      store.put(DICTIONARY);
+      assertThatThrownBy(() -> store.put(COLLIDING)).isInstanceOf(IllegalStateException.class);
+      assertThat(store.get(DICTIONARY.id)).hasValue(DICTIONARY);
+    }
+
+    // Including when the dictionary was put by another store sharing the directory.
+    assertThatThrownBy(() -> DictionaryStore.directory(directory).put(COLLIDING))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void testMissingDictionaryIsNotLookedForOnEveryGet(@TempDir Path directory)
+      throws Exception {
+    var store = DictionaryStore.directory(directory);
+    assertThat(store.get(DICTIONARY.id)).isEmpty();
+
+    // Put by another store sharing the directory, which this one does not look for again yet.
+    DictionaryStore.directory(directory).put(DICTIONARY);
+    try (var files = Files.list(directory)) {
+      assertThat(files).hasSize(1);
+    }
+    assertThat(store.get(DICTIONARY.id)).isEmpty();
+
+    // Putting it through this store makes it available at once.
+    store.put(DICTIONARY);
+    assertThat(store.get(DICTIONARY.id)).hasValue(DICTIONARY);
+  }
+}
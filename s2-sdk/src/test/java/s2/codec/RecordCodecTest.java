@@ -0,0 +1,89 @@
+package s2.codec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.protobuf.ByteString;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import org.junit.jupiter.api.Test;
+import s2.types.AppendRecord;
+import s2.types.SequencedRecord;
+
+public class RecordCodecTest {
+
+  private static ByteString body(Random random) {
+    return ByteString.copyFromUtf8(
+        String.format(
+            "{\"timestamp\":%d,\"level\":\"INFO\",\"service\":\"checkout\","
+                + "\"message\":\"order placed\",\"user_id\":%d,\"amount_cents\":%d}",
+            1700000000000L + random.nextInt(1_000_000),
+            random.nextInt(100_000),
+            random.nextInt(10_000)));
+  }
+
+  private static SequencedRecord read(AppendRecord record) {
+    return SequencedRecord.fromProto(
+        s2.v1alpha.SequencedRecord.newBuilder()
+            .addAllHeaders(record.toProto().getHeadersList())
+            .setBody(record.body)
+            .build());
+  }
+
+  @Test
+  public void testDictionaryRoundTrip() {
+    var random = new Random(0);
+    var samples = IntStream.range(0, 200).mapToObj(i -> body(random)).collect(Collectors.toList());
+    var dictionary = RecordDictionary.train(samples, 4 * 1024);
+    var withDictionary =
+        RecordCodec.newBuilder(DictionaryStore.inMemory()).withDictionary(dictionary).build();
+    var withoutDictionary = RecordCodec.newBuilder(DictionaryStore.inMemory()).build();
+
+    var record = AppendRecord.newBuilder().withBody(body(random)).build();
+    var compressed = withDictionary.encode(record);
+    assertThat(compressed.meteredBytes() * 2).isLessThan(record.meteredBytes());
+    assertThat(compressed.meteredBytes())
+        .isLessThan(withoutDictionary.encode(record).meteredBytes());
+
+    var decoded = withDictionary.decode(read(compressed));
+    assertThat(decoded.body).isEqualTo(record.body);
+    assertThat(decoded.headers).isEmpty();
+
+    // Without the dictionary, the record is returned as read.
+    var undecodable = read(compressed);
+    assertThat(withoutDictionary.decode(undecodable)).isSameAs(undecodable);
+  }
+
+  @Test
+  public void testIncompressibleBodyIsUnchanged() {
+    var bytes = new byte[256];
+    new Random(0).nextBytes(bytes);
+    var record = AppendRecord.newBuilder().withBody(bytes).build();
+    var codec = RecordCodec.newBuilder(DictionaryStore.inMemory()).build();
+    assertThat(codec.encode(record)).isSameAs(record);
+    assertThat(codec.decode(read(record)).body).isEqualTo(record.body);
+  }
+
+  @Test
+  public void testBodyInflatingPastRecordLimitIsReturnedAsRead() {
+    var deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    deflater.setInput(new byte[RecordCodec.MAX_BODY_BYTES + 1]);
+    deflater.finish();
+    var compressed = new byte[64 * 1024];
+    var length = deflater.deflate(compressed);
+    assertThat(deflater.finished()).isTrue();
+
+    var record =
+        SequencedRecord.fromProto(
+            s2.v1alpha.SequencedRecord.newBuilder()
+                .addHeaders(
+                    s2.v1alpha.Header.newBuilder()
+                        .setName(RecordCodec.HEADER_NAME)
+                        .setValue(ByteString.copyFrom(new byte[] {RecordCodec.FORMAT_DEFLATE})))
+                .setBody(ByteString.copyFrom(compressed, 0, length))
+                .build());
+    var codec = RecordCodec.newBuilder(DictionaryStore.inMemory()).build();
+    assertThat(codec.decode(record)).isSameAs(record);
+  }
+}
@@ -0,0 +1,34 @@
+package s2.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class HistogramTest {
+
+  @Test
+  public void testBucketsCoverEveryValue() {
+    for (long value : new long[] {0, 7, 8, 15, 16, 1000, 123_456_789, Long.MAX_VALUE}) {
+      int bucket = Histogram.bucket(value);
+      assertThat(Histogram.highestValue(bucket)).isGreaterThanOrEqualTo(value);
+      if (bucket > 0) {
+        assertThat(Histogram.highestValue(bucket - 1)).isLessThan(value);
+      }
+    }
+  }
+
+  @Test
+  public void testPercentilesWithinRelativeError() {
+    var histogram = new Histogram();
+    for (long value = 1; value <= 10_000; value++) {
+      histogram.record(value);
+    }
+
+    assertThat(histogram.count()).isEqualTo(10_000);
+    assertThat(histogram.max()).isEqualTo(10_000);
+    assertThat(histogram.mean()).isEqualTo(5000.5);
+    assertThat(histogram.valueAtPercentile(50)).isBetween(5000L, 5000L + 5000 / 8);
+    assertThat(histogram.valueAtPercentile(99)).isBetween(9900L, 10_000L);
+    assertThat(histogram.valueAtPercentile(100)).isEqualTo(10_000);
+  }
+}
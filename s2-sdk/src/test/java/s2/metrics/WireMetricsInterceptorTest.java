@@ -0,0 +1,130 @@
+package s2.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.protobuf.ByteString;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import s2.v1alpha.AppendInput;
+import s2.v1alpha.AppendOutput;
+import s2.v1alpha.AppendRecord;
+import s2.v1alpha.AppendRequest;
+import s2.v1alpha.AppendResponse;
+import s2.v1alpha.CheckTailRequest;
+import s2.v1alpha.CheckTailResponse;
+import s2.v1alpha.StreamServiceGrpc;
+import s2.v1alpha.StreamServiceGrpc.StreamServiceBlockingStub;
+import s2.v1alpha.StreamServiceGrpc.StreamServiceImplBase;
+
+public class WireMetricsInterceptorTest {
+  private final InMemoryMetrics metrics = new InMemoryMetrics();
+  private Server server;
+  private ManagedChannel channel;
+  private StreamServiceBlockingStub stub;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    // Served over loopback, as the in-process transport does not report message sizes.
+    server =
+        NettyServerBuilder.forAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+            .directExecutor()
+            .addService(
+                new StreamServiceImplBase() {
+                  @Override
+                  public void append(
+                      AppendRequest request, StreamObserver<AppendResponse> responseObserver) {
+                    final int records = request.getInput().getRecordsCount();
+                    responseObserver.onNext(
+                        AppendResponse.newBuilder()
+                            .setOutput(
+                                AppendOutput.newBuilder()
+                                    .setEndSeqNum(records)
+                                    .setNextSeqNum(records))
+                            .build());
+                    responseObserver.onCompleted();
+                  }
+
+                  @Override
+                  public void checkTail(
+                      CheckTailRequest request,
+                      StreamObserver<CheckTailResponse> responseObserver) {
+                    responseObserver.onError(Status.NOT_FOUND.asRuntimeException());
+                  }
+                })
+            .build()
+            .start();
+
+    channel =
+        NettyChannelBuilder.forAddress(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()))
+            .usePlaintext()
+            .directExecutor()
+            .build();
+    stub =
+        StreamServiceGrpc.newBlockingStub(
+            ClientInterceptors.intercept(channel, new WireMetricsInterceptor(metrics)));
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    channel.shutdownNow();
+    server.shutdownNow();
+  }
+
+  private static AppendRequest request() {
+    return AppendRequest.newBuilder()
+        .setInput(
+            AppendInput.newBuilder()
+                .setStream("stream")
+                .addRecords(AppendRecord.newBuilder().setBody(ByteString.copyFromUtf8("record"))))
+        .build();
+  }
+
+  @Test
+  public void testBytesAreCountedPerMethod() {
+    final AppendRequest request = request();
+    final long responseBytes =
+        stub.append(request).getSerializedSize() + stub.append(request).getSerializedSize();
+
+    final InMemoryMetrics.MethodStats append =
+        metrics.methods().get(StreamServiceGrpc.getAppendMethod().getFullMethodName());
+    assertThat(append.latencyNanos().count()).isEqualTo(2);
+    assertThat(append.failures()).isEqualTo(0);
+    assertThat(append.messagesSent()).isEqualTo(2);
+    assertThat(append.messagesReceived()).isEqualTo(2);
+    assertThat(append.uncompressedBytesSent()).isEqualTo(2L * request.getSerializedSize());
+    assertThat(append.uncompressedBytesReceived()).isEqualTo(responseBytes);
+    // Uncompressed, so each message goes on the wire as serialized.
+    assertThat(append.wireBytesSent()).isEqualTo(append.uncompressedBytesSent());
+    assertThat(append.wireBytesReceived()).isEqualTo(append.uncompressedBytesReceived());
+    assertThat(append.compressionRatio()).isEqualTo(1);
+    assertThat(metrics.methods())
+        .doesNotContainKey(StreamServiceGrpc.getCheckTailMethod().getFullMethodName());
+  }
+
+  @Test
+  public void testFailedCallsAreCounted() {
+    assertThatThrownBy(() -> stub.checkTail(CheckTailRequest.newBuilder().build()))
+        .isInstanceOf(StatusRuntimeException.class);
+
+    final InMemoryMetrics.MethodStats checkTail =
+        metrics.methods().get(StreamServiceGrpc.getCheckTailMethod().getFullMethodName());
+    assertThat(checkTail.latencyNanos().count()).isEqualTo(1);
+    assertThat(checkTail.failures()).isEqualTo(1);
+    assertThat(checkTail.messagesSent()).isEqualTo(1);
+    assertThat(checkTail.messagesReceived()).isEqualTo(0);
+    assertThat(checkTail.wireBytesReceived()).isEqualTo(0);
+  }
+}
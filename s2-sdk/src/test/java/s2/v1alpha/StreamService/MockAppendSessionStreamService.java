@@ -0,0 +1,119 @@
+package s2.v1alpha.StreamService;
+
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import s2.v1alpha.AppendInput;
+import s2.v1alpha.AppendOutput;
+import s2.v1alpha.AppendSessionRequest;
+import s2.v1alpha.AppendSessionResponse;
+import s2.v1alpha.CheckTailRequest;
+import s2.v1alpha.CheckTailResponse;
+import s2.v1alpha.StreamServiceGrpc.StreamServiceImplBase;
+
+/**
+ * Stream service which appends the bodies of every record it receives over append sessions to an
+ * in-memory log, and acknowledges each batch as it arrives. Subclasses may inject failures in
+ * {@link #apply}, or delay acknowledgements in {@link #acknowledge}.
+ */
+public class MockAppendSessionStreamService extends StreamServiceImplBase {
+  public final AtomicInteger sessions = new AtomicInteger(0);
+
+  /** Bodies of the appended records, in order. Guarded by itself. */
+  protected final List<String> log = new ArrayList<>();
+
+  /** Start an in-process server for this service. */
+  public Server start(String serverName) throws IOException {
+    return InProcessServerBuilder.forName(serverName)
+        .directExecutor()
+        .addService(this)
+        .build()
+        .start();
+  }
+
+  public List<String> appended() {
+    synchronized (log) {
+      return new ArrayList<>(log);
+    }
+  }
+
+  /**
+   * Append a batch to the log.
+   *
+   * @throws StatusRuntimeException to fail the session, which is then ignored until the client ends
+   *     it
+   */
+  protected AppendOutput apply(AppendInput input) {
+    synchronized (log) {
+      if (input.hasMatchSeqNum() && input.getMatchSeqNum() != log.size()) {
+        throw Status.FAILED_PRECONDITION.asRuntimeException();
+      }
+      final long start = log.size();
+      input.getRecordsList().forEach(record -> log.add(record.getBody().toStringUtf8()));
+      return AppendOutput.newBuilder()
+          .setStartSeqNum(start)
+          .setEndSeqNum(log.size())
+          .setNextSeqNum(log.size())
+          .build();
+    }
+  }
+
+  /** Send the acknowledgement of an appended batch, which by default is done immediately. */
+  protected void acknowledge(AppendSessionRequest request, Runnable ack) {
+    ack.run();
+  }
+
+  @Override
+  public StreamObserver<AppendSessionRequest> appendSession(
+      StreamObserver<AppendSessionResponse> responseObserver) {
+    sessions.incrementAndGet();
+    return new StreamObserver<>() {
+      private boolean failed = false;
+
+      @Override
+      public void onNext(AppendSessionRequest request) {
+        if (failed) {
+          return;
+        }
+        final AppendOutput output;
+        try {
+          output = apply(request.getInput());
+        } catch (StatusRuntimeException e) {
+          failed = true;
+          responseObserver.onError(e);
+          return;
+        }
+        acknowledge(
+            request,
+            () ->
+                responseObserver.onNext(
+                    AppendSessionResponse.newBuilder().setOutput(output).build()));
+      }
+
+      @Override
+      public void onError(Throwable t) {}
+
+      @Override
+      public void onCompleted() {
+        if (!failed) {
+          responseObserver.onCompleted();
+        }
+      }
+    };
+  }
+
+  @Override
+  public void checkTail(
+      CheckTailRequest request, StreamObserver<CheckTailResponse> responseObserver) {
+    synchronized (log) {
+      responseObserver.onNext(CheckTailResponse.newBuilder().setNextSeqNum(log.size()).build());
+    }
+    responseObserver.onCompleted();
+  }
+}